@@ -0,0 +1,307 @@
+package rockets.dataaccess;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheStats;
+import rockets.model.Entity;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A DAO decorator that keeps loaded entities in memory, so that loading the
+ * same entity by id again does not go to the database. Each entity class
+ * has a cache of its own, configured by a Guava {@link CacheBuilderSpec}
+ * such as {@code "maximumSize=1000,expireAfterWrite=10m"}: size bounds evict
+ * the least recently used entities, and expiry bounds how stale a cached
+ * entity can get.
+ * <p>
+ * Entities are cached as loaded, together with their related entities, and
+ * the same instance is returned to every caller. Saving or deleting an
+ * entity through this DAO drops it from the cache, along with the entities
+ * saved with it and the cached entities that hold any of them, so the next
+ * load reads them again. Relationships that are still deferred to be fetched
+ * on first access are not followed, so dropping entities never fetches them.
+ */
+public class CachingDAO implements DAO {
+    public static final String DEFAULT_SPEC = "maximumSize=1000,expireAfterWrite=10m";
+
+    private final DAO dao;
+
+    private final String defaultSpec;
+
+    private final Ticker ticker;
+
+    private final Map<Class<?>, String> specs = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Cache<Long, Entity>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * The cached entities that hold each entity, by class and id, such as
+     * the launches of a cached rocket.
+     */
+    private final Map<List<Object>, Set<List<Object>>> holders = new ConcurrentHashMap<>();
+
+    /**
+     * The entities each cached entity holds, to take it out of
+     * {@link #holders} when it leaves the cache.
+     */
+    private final Map<List<Object>, Set<List<Object>>> held = new ConcurrentHashMap<>();
+
+    /**
+     * Counts invalidations, so that a load that raced with one does not
+     * leave what it read before the change in the cache.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CachingDAO(DAO dao) {
+        this(dao, DEFAULT_SPEC);
+    }
+
+    /**
+     * @param dao         the DAO to read through to.
+     * @param defaultSpec the cache specification of classes without one of their own.
+     */
+    public CachingDAO(DAO dao, String defaultSpec) {
+        this(dao, defaultSpec, Ticker.systemTicker());
+    }
+
+    CachingDAO(DAO dao, String defaultSpec, Ticker ticker) {
+        CacheBuilderSpec.parse(defaultSpec);
+        this.dao = dao;
+        this.defaultSpec = defaultSpec;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Configures the cache of one entity class, replacing any entities
+     * cached for it so far.
+     *
+     * @param clazz the entity class.
+     * @param spec  the cache specification.
+     * @return this DAO.
+     */
+    public CachingDAO configure(Class<? extends Entity> clazz, String spec) {
+        CacheBuilderSpec.parse(spec);
+        specs.put(clazz, spec);
+        invalidations.incrementAndGet();
+        Cache<Long, Entity> replaced = caches.remove(clazz);
+        if (replaced != null)
+            replaced.invalidateAll();
+        return this;
+    }
+
+    private Cache<Long, Entity> cacheOf(Class<?> clazz) {
+        return caches.computeIfAbsent(clazz, c -> CacheBuilder.from(specs.getOrDefault(c, defaultSpec))
+                .ticker(ticker)
+                .recordStats()
+                .<Long, Entity>removalListener(removal -> forget(ref(c, removal.getKey())))
+                .build());
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        Cache<Long, Entity> cache = cacheOf(clazz);
+        Entity cached = cache.getIfPresent(id);
+        if (clazz.isInstance(cached))
+            return clazz.cast(cached);
+        long seen = invalidations.get();
+        T entity = dao.load(clazz, id);
+        if (entity != null)
+            cache(cache, id, entity, seen);
+        return entity;
+    }
+
+    /**
+     * Caches a loaded entity, unless something was invalidated since the
+     * load began, in which case the entity may be stale. An invalidation
+     * counts before it drops entries, so it either drops this entry or is
+     * seen here.
+     */
+    private void cache(Cache<Long, Entity> cache, Long id, Entity entity, long seen) {
+        cache.put(id, entity);
+        List<Object> holder = ref(entity.getClass(), id);
+        Set<List<Object>> refs = ConcurrentHashMap.newKeySet();
+        for (Entity related : EntityGraph.reachable(Collections.singleton(entity))) {
+            if (related != entity && related.getId() != null)
+                refs.add(ref(related.getClass(), related.getId()));
+        }
+        held.put(holder, refs);
+        for (List<Object> ref : refs) {
+            holders.computeIfAbsent(ref, r -> ConcurrentHashMap.newKeySet()).add(holder);
+        }
+        if (invalidations.get() != seen)
+            cache.invalidate(id);
+    }
+
+    private void forget(List<Object> holder) {
+        Set<List<Object>> refs = held.remove(holder);
+        if (refs == null)
+            return;
+        for (List<Object> ref : refs) {
+            holders.computeIfPresent(ref, (r, entities) -> {
+                entities.remove(holder);
+                return entities.isEmpty() ? null : entities;
+            });
+        }
+    }
+
+    private static List<Object> ref(Class<?> clazz, Long id) {
+        return Arrays.asList(clazz, id);
+    }
+
+    /**
+     * Loads the entity at a depth of its own, bypassing the cache, which
+     * holds entities as loaded by {@link #load(Class, Long)}.
+     */
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id, int depth) {
+        return dao.load(clazz, id, depth);
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        T saved = dao.createOrUpdate(entity);
+        invalidateGraph(Collections.singleton(saved));
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        Collection<T> saved = dao.createOrUpdateAll(entities);
+        invalidateGraph(saved);
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return dao.loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, int depth) {
+        return dao.loadAll(clazz, depth);
+    }
+
+    /**
+     * Takes the cached entities from the cache and loads the others with a
+     * single call to the wrapped DAO.
+     */
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        Cache<Long, Entity> cache = cacheOf(clazz);
+        Map<Long, T> found = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : ids) {
+            Entity cached = cache.getIfPresent(id);
+            if (clazz.isInstance(cached))
+                found.put(id, clazz.cast(cached));
+            else
+                missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            long seen = invalidations.get();
+            for (T entity : dao.loadAll(clazz, missing)) {
+                if (entity != null) {
+                    cache(cache, entity.getId(), entity, seen);
+                    found.put(entity.getId(), entity);
+                }
+            }
+        }
+        List<T> entities = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            entities.add(found.get(id));
+        }
+        return entities;
+    }
+
+    /**
+     * Loads the entities at a depth of their own, bypassing the cache.
+     */
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids, int depth) {
+        return dao.loadAll(clazz, ids, depth);
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query) {
+        return dao.find(query);
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query, int depth) {
+        return dao.find(query, depth);
+    }
+
+    @Override
+    public <T extends Entity> Iterator<T> iterate(Class<T> clazz, int pageSize, int depth) {
+        return dao.iterate(clazz, pageSize, depth);
+    }
+
+    @Override
+    public Long findIdByNaturalKey(Entity entity) {
+        return dao.findIdByNaturalKey(entity);
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        Long id = entity.getId();
+        dao.delete(entity);
+        if (id != null) {
+            invalidations.incrementAndGet();
+            invalidate(entity.getClass(), id);
+        }
+    }
+
+    /**
+     * Drops saved entities from the cache along with the entities reachable
+     * from them, which were saved with them, and the entities holding any of
+     * them.
+     */
+    private void invalidateGraph(Collection<? extends Entity> saved) {
+        invalidations.incrementAndGet();
+        for (Entity entity : EntityGraph.reachable(saved)) {
+            if (entity.getId() != null)
+                invalidate(entity.getClass(), entity.getId());
+        }
+    }
+
+    private void invalidate(Class<?> clazz, Long id) {
+        cacheOf(clazz).invalidate(id);
+        Set<List<Object>> holding = holders.remove(ref(clazz, id));
+        if (holding == null)
+            return;
+        for (List<Object> holder : holding) {
+            cacheOf((Class<?>) holder.get(0)).invalidate(holder.get(1));
+        }
+    }
+
+    /**
+     * Drops every cached entity.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        caches.values().forEach(Cache::invalidateAll);
+    }
+
+    /**
+     * Returns the hit and miss counts of the cache of one entity class.
+     */
+    public CacheStats stats(Class<? extends Entity> clazz) {
+        return cacheOf(clazz).stats();
+    }
+
+    /**
+     * Returns the hit and miss counts summed over all entity classes.
+     */
+    public CacheStats stats() {
+        CacheStats total = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (Cache<Long, Entity> cache : caches.values()) {
+            total = total.plus(cache.stats());
+        }
+        return total;
+    }
+}
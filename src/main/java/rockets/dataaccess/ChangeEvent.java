@@ -0,0 +1,90 @@
+package rockets.dataaccess;
+
+import rockets.model.Entity;
+
+import java.util.List;
+
+/**
+ * A write made through an {@link ObservableDAO}, as published by a
+ * {@link ChangePublisher}. Events of one publisher are numbered in the order
+ * the writes were made.
+ */
+public final class ChangeEvent {
+    public enum Type {
+        /**
+         * An entity without an id was saved. Like every save, it may have
+         * updated a stored entity with the same natural key, so consumers
+         * should apply creates and updates alike, by id.
+         */
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    private final long sequence;
+
+    private final Type type;
+
+    private final Class<? extends Entity> entityType;
+
+    private final Long id;
+
+    private final List<Object> naturalKey;
+
+    private final Entity entity;
+
+    ChangeEvent(long sequence, Type type, Entity entity, Long id) {
+        this.sequence = sequence;
+        this.type = type;
+        this.entityType = entity.getClass();
+        this.id = id;
+        this.naturalKey = NaturalKeys.keyOf(entity);
+        this.entity = entity;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Class<? extends Entity> getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Returns the id of the entity; for a delete, the id it had before it was deleted.
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the natural key of the entity when the write was made, or null if it has none.
+     *
+     * @see NaturalKeys#keyOf(Entity)
+     */
+    public List<Object> getNaturalKey() {
+        return naturalKey;
+    }
+
+    /**
+     * Returns the written entity itself, which may have changed since.
+     */
+    public Entity getEntity() {
+        return entity;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", entityType=" + entityType.getSimpleName() +
+                ", id=" + id +
+                ", naturalKey=" + naturalKey +
+                '}';
+    }
+}
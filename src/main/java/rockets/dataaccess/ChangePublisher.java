@@ -0,0 +1,262 @@
+package rockets.dataaccess;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.model.Entity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Turns the writes made through an {@link ObservableDAO} into a stream of
+ * {@link ChangeEvent}s, so that caches, indexes and miner views can follow
+ * the data incrementally instead of reloading it. Attach it with
+ * {@link ObservableDAO#addListener(DAOListener)}.
+ * <p>
+ * Every subscriber gets every event, in the order the writes were reported,
+ * so the events of one entity always arrive in order. Each subscription has
+ * a bounded buffer and a thread of its own, which hands the buffered events
+ * to the subscriber in batches. When a buffer is full, writes block until the
+ * subscriber has caught up, so a slow subscriber slows writers down rather
+ * than losing events or filling the heap. Writes a subscriber makes itself,
+ * from within {@link ChangeSubscriber#onChanges(List)}, never block on its
+ * own buffer, since it is the one that has to empty it. A batch a subscriber
+ * fails on is reported back to it through
+ * {@link ChangeSubscriber#onFailure(List, RuntimeException)}.
+ */
+public class ChangePublisher implements DAOListener, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ChangePublisher.class);
+
+    private final ThreadFactory threads = new ThreadFactoryBuilder()
+            .setNameFormat("change-events-%d").setDaemon(true).build();
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Held while an event is numbered and buffered, so every subscriber
+     * buffers events in sequence order. Buffering under it never blocks;
+     * writers wait for room in full buffers once it is released.
+     */
+    private final Object publishLock = new Object();
+
+    private long sequence;
+
+    private volatile boolean closed;
+
+    /**
+     * Subscribes to the events published from now on.
+     *
+     * @param subscriber   the subscriber.
+     * @param capacity     the number of events buffered before writers block.
+     * @param maxBatchSize the largest number of events handed over at once.
+     * @return the subscription, which can be cancelled.
+     */
+    public Subscription subscribe(ChangeSubscriber subscriber, int capacity, int maxBatchSize) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("batch size must be positive");
+        if (closed)
+            throw new IllegalStateException("change publisher is closed");
+        Subscription subscription = new Subscription(subscriber, capacity, maxBatchSize);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    @Override
+    public void entitySaved(Entity entity) {
+        entitySaved(entity, false);
+    }
+
+    @Override
+    public void entitySaved(Entity entity, boolean created) {
+        publish(created ? ChangeEvent.Type.CREATE : ChangeEvent.Type.UPDATE, entity, entity.getId());
+    }
+
+    @Override
+    public void entityDeleted(Entity entity, Long id) {
+        publish(ChangeEvent.Type.DELETE, entity, id);
+    }
+
+    private void publish(ChangeEvent.Type type, Entity entity, Long id) {
+        if (closed)
+            return;
+        List<Subscription> full = new ArrayList<>(0);
+        synchronized (publishLock) {
+            ChangeEvent event = new ChangeEvent(++sequence, type, entity, id);
+            for (Subscription subscription : subscriptions) {
+                if (subscription.add(event))
+                    full.add(subscription);
+            }
+        }
+        for (Subscription subscription : full) {
+            subscription.awaitRoom();
+        }
+    }
+
+    /**
+     * Stops publishing, hands every buffered event to its subscriber and
+     * waits for the subscription threads to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.finish();
+        }
+        for (Subscription subscription : subscriptions) {
+            try {
+                subscription.thread.join(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * The buffer and delivery thread of one subscriber.
+     */
+    public final class Subscription {
+        private final ChangeSubscriber subscriber;
+
+        private final int capacity;
+
+        private final int maxBatchSize;
+
+        private final Deque<ChangeEvent> buffer = new ArrayDeque<>();
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition notEmpty = lock.newCondition();
+
+        private final Condition notFull = lock.newCondition();
+
+        private final Thread thread;
+
+        private boolean finishing;
+
+        private boolean cancelled;
+
+        private Subscription(ChangeSubscriber subscriber, int capacity, int maxBatchSize) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+            this.maxBatchSize = maxBatchSize;
+            this.thread = threads.newThread(this::deliver);
+        }
+
+        /**
+         * Buffers an event without blocking.
+         *
+         * @return whether the buffer is now full and the writer should wait
+         * for room, which the subscriber's own writes never do.
+         */
+        private boolean add(ChangeEvent event) {
+            lock.lock();
+            try {
+                if (cancelled)
+                    return false;
+                buffer.add(event);
+                notEmpty.signal();
+                return buffer.size() >= capacity && Thread.currentThread() != thread;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void awaitRoom() {
+            lock.lock();
+            try {
+                while (buffer.size() >= capacity && !cancelled) {
+                    notFull.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void deliver() {
+            while (true) {
+                List<ChangeEvent> batch;
+                lock.lock();
+                try {
+                    while (buffer.isEmpty() && !finishing && !cancelled) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    if (cancelled || buffer.isEmpty())
+                        return;
+                    batch = new ArrayList<>(Math.min(buffer.size(), maxBatchSize));
+                    while (batch.size() < maxBatchSize && !buffer.isEmpty()) {
+                        batch.add(buffer.poll());
+                    }
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    subscriber.onChanges(batch);
+                } catch (RuntimeException e) {
+                    // one failing batch must not stop the stream
+                    logger.warn("change subscriber failed on events " + batch.get(0).getSequence() +
+                            " to " + batch.get(batch.size() - 1).getSequence(), e);
+                    try {
+                        subscriber.onFailure(batch, e);
+                    } catch (RuntimeException again) {
+                        logger.warn("change subscriber cancelled after failing to handle dropped events", again);
+                        cancel();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void finish() {
+            lock.lock();
+            try {
+                finishing = true;
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Stops delivery to the subscriber. Buffered events are dropped and
+         * writers blocked on this subscription carry on.
+         */
+        public void cancel() {
+            subscriptions.remove(this);
+            lock.lock();
+            try {
+                cancelled = true;
+                buffer.clear();
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns the number of events waiting to be handed to the subscriber.
+         */
+        public int getBuffered() {
+            lock.lock();
+            try {
+                return buffer.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package rockets.dataaccess;
+
+import java.util.List;
+
+/**
+ * Receives the writes published by a {@link ChangePublisher}, in batches.
+ */
+public interface ChangeSubscriber {
+    /**
+     * Called with the next events, in the order they were published. Calls
+     * for one subscription are made one at a time, on a thread of its own.
+     *
+     * @param events at least one event.
+     */
+    void onChanges(List<ChangeEvent> events);
+
+    /**
+     * Called when {@link #onChanges(List)} threw, with the events of that
+     * call, which are not handed over again. A subscriber that keeps derived
+     * state can use it to note the gap and rebuild. The subscription is
+     * cancelled if this throws too.
+     *
+     * @param events  the events that were dropped.
+     * @param failure what onChanges threw.
+     */
+    default void onFailure(List<ChangeEvent> events, RuntimeException failure) {
+    }
+}
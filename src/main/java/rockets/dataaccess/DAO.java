@@ -2,14 +2,189 @@ package rockets.dataaccess;
 
 import rockets.model.Entity;
 
-import java.util.Collection;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface DAO {
+    /**
+     * The page size used by callers that have no reason to choose another.
+     */
+    int DEFAULT_PAGE_SIZE = 500;
+
     <T extends Entity> T load(Class<T> clazz, Long id);
 
+    /**
+     * Loads an entity together with the entities up to a number of
+     * relationships away. DAOs that cannot limit the depth load as
+     * {@link #load(Class, Long)} does.
+     *
+     * @param clazz the entity class.
+     * @param id    the entity id.
+     * @param depth how many relationships away related entities are loaded.
+     * @return the entity, or null if there is none with the id.
+     */
+    default <T extends Entity> T load(Class<T> clazz, Long id, int depth) {
+        return load(clazz, id);
+    }
+
     <T extends Entity> T createOrUpdate(T entity);
 
     <T extends Entity> Collection<T> loadAll(Class<T> clazz);
 
+    /**
+     * Loads all entities of a class together with the entities up to a
+     * number of relationships away. DAOs that cannot limit the depth load as
+     * {@link #loadAll(Class)} does.
+     *
+     * @param clazz the entity class.
+     * @param depth how many relationships away related entities are loaded.
+     * @return the entities.
+     */
+    default <T extends Entity> Collection<T> loadAll(Class<T> clazz, int depth) {
+        return loadAll(clazz);
+    }
+
+    /**
+     * Loads the entities of a class with the given ids, in the order of the
+     * ids. DAOs that cannot load many entities at once load them one at a
+     * time.
+     *
+     * @param clazz the entity class.
+     * @param ids   the entity ids.
+     * @return one entity per id, in the same order; null for an id without an entity.
+     */
+    default <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        List<T> entities = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            entities.add(load(clazz, id));
+        }
+        return entities;
+    }
+
+    /**
+     * Loads the entities of a class with the given ids, in the order of the
+     * ids, together with the entities up to a number of relationships away.
+     *
+     * @param clazz the entity class.
+     * @param ids   the entity ids.
+     * @param depth how many relationships away related entities are loaded.
+     * @return one entity per id, in the same order; null for an id without an entity.
+     * @see #loadAll(Class, Collection)
+     */
+    default <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids, int depth) {
+        List<T> entities = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            entities.add(load(clazz, id, depth));
+        }
+        return entities;
+    }
+
+    /**
+     * Finds the entities that meet a query. DAOs that cannot filter when
+     * they read load all entities of the class and filter them afterwards.
+     *
+     * @param query the query.
+     * @return the matching entities.
+     */
+    default <T extends Entity> List<T> find(Query<T> query) {
+        return query.filter(loadAll(query.getEntityType()));
+    }
+
+    /**
+     * Finds the entities that meet a query, together with the entities up to
+     * a number of relationships away.
+     *
+     * @param query the query.
+     * @param depth how many relationships away related entities are loaded.
+     * @return the matching entities.
+     * @see #find(Query)
+     */
+    default <T extends Entity> List<T> find(Query<T> query, int depth) {
+        return query.filter(loadAll(query.getEntityType(), depth));
+    }
+
+    /**
+     * Creates or updates many entities at once. DAOs that cannot write in
+     * bulk save them one at a time.
+     *
+     * @param entities the entities.
+     * @return the entities, with their ids set.
+     */
+    default <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        for (T entity : entities) {
+            createOrUpdate(entity);
+        }
+        return entities;
+    }
+
     <T extends Entity> void delete(T entity);
+
+    /**
+     * Returns the id of the stored entity with the same natural key as the
+     * given one (see {@link NaturalKeys}), which saving the given entity
+     * would update instead of creating another. DAOs that cannot look keys up
+     * directly find the entity with a query on the key properties.
+     *
+     * @param entity an entity, stored or not.
+     * @return the id, or null if there is no such entity or the entity has no natural key.
+     */
+    default Long findIdByNaturalKey(Entity entity) {
+        Query<Entity> query = NaturalKeys.query(entity);
+        if (query == null)
+            return null;
+        List<Entity> found = find(query);
+        return found.isEmpty() ? null : found.get(0).getId();
+    }
+
+    /**
+     * Iterates over all entities of a class, loading them a page at a time
+     * so that only the current page needs to be held in memory. DAOs that
+     * cannot page fall back to {@link #loadAll(Class)}.
+     *
+     * @param clazz    the entity class.
+     * @param pageSize the number of entities loaded at a time.
+     * @param depth    how many relationships away related entities are loaded.
+     * @return the entities, in a stable order.
+     */
+    default <T extends Entity> Iterator<T> iterate(Class<T> clazz, int pageSize, int depth) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("page size must be positive");
+        Collection<T> entities = loadAll(clazz);
+        return entities == null ? Collections.emptyIterator() : entities.iterator();
+    }
+
+    /**
+     * Streams all entities of a class, loading them a page at a time.
+     *
+     * @see #iterate(Class, int, int)
+     */
+    default <T extends Entity> Stream<T> stream(Class<T> clazz, int pageSize, int depth) {
+        Iterator<T> iterator = iterate(clazz, pageSize, depth);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Hands all entities of a class to a callback, one page at a time.
+     *
+     * @param clazz        the entity class.
+     * @param pageSize     the maximum number of entities per page.
+     * @param depth        how many relationships away related entities are loaded.
+     * @param pageConsumer called with every page, in order.
+     * @see #iterate(Class, int, int)
+     */
+    default <T extends Entity> void loadAll(Class<T> clazz, int pageSize, int depth, Consumer<List<T>> pageConsumer) {
+        Iterator<T> iterator = iterate(clazz, pageSize, depth);
+        List<T> page = new ArrayList<>(pageSize);
+        while (iterator.hasNext()) {
+            page.add(iterator.next());
+            if (page.size() == pageSize) {
+                pageConsumer.accept(page);
+                page = new ArrayList<>(pageSize);
+            }
+        }
+        if (!page.isEmpty())
+            pageConsumer.accept(page);
+    }
 }
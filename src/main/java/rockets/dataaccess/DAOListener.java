@@ -0,0 +1,36 @@
+package rockets.dataaccess;
+
+import rockets.model.Entity;
+
+/**
+ * Receives the writes made through an {@link ObservableDAO}, after they have
+ * been applied by the underlying DAO.
+ */
+public interface DAOListener {
+    /**
+     * Called after an entity has been created or updated.
+     *
+     * @param entity the saved entity, with its id assigned.
+     */
+    void entitySaved(Entity entity);
+
+    /**
+     * Called after an entity has been created or updated, telling the two
+     * apart. An entity without an id that has the natural key of a stored
+     * entity updates that entity.
+     *
+     * @param entity  the saved entity, with its id assigned.
+     * @param created whether the save created the entity.
+     */
+    default void entitySaved(Entity entity, boolean created) {
+        entitySaved(entity);
+    }
+
+    /**
+     * Called after an entity has been deleted.
+     *
+     * @param entity the deleted entity.
+     * @param id     the id the entity had before it was deleted.
+     */
+    void entityDeleted(Entity entity, Long id);
+}
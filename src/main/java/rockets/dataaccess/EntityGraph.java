@@ -0,0 +1,65 @@
+package rockets.dataaccess;
+
+import rockets.model.*;
+
+import java.util.*;
+
+/**
+ * Walks the entities reachable from other entities through their
+ * relationships, which is how far a save cascades. Relationships that are
+ * still deferred to be fetched on first access are not followed: nothing in
+ * them can have changed since they were never loaded, and following them
+ * would fetch them.
+ */
+final class EntityGraph {
+    private EntityGraph() {
+    }
+
+    /**
+     * Returns the given entities followed by the entities reachable from
+     * them, each instance once, nearest first.
+     */
+    static List<Entity> reachable(Collection<? extends Entity> entities) {
+        List<Entity> reachable = new ArrayList<>();
+        Set<Entity> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Entity> pending = new ArrayDeque<>();
+        for (Entity entity : entities) {
+            if (entity != null && seen.add(entity))
+                pending.add(entity);
+        }
+        while (!pending.isEmpty()) {
+            Entity entity = pending.poll();
+            reachable.add(entity);
+            for (Entity related : related(entity)) {
+                if (related != null && seen.add(related))
+                    pending.add(related);
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Returns the entities an entity has loaded relationships to.
+     */
+    static List<Entity> related(Entity entity) {
+        List<Entity> related = new ArrayList<>();
+        if (entity instanceof Launch) {
+            Launch launch = (Launch) entity;
+            related.add(launch.getLaunchVehicle());
+            related.add(launch.getLaunchServiceProvider());
+            if (launch.isPayloadLoaded() && launch.getPayload() != null)
+                related.addAll(launch.getPayload());
+        } else if (entity instanceof Rocket) {
+            related.add(((Rocket) entity).getManufacturer());
+        } else if (entity instanceof LaunchServiceProvider) {
+            LaunchServiceProvider provider = (LaunchServiceProvider) entity;
+            if (provider.isRocketsLoaded() && provider.getRockets() != null)
+                related.addAll(provider.getRockets());
+        } else if (entity instanceof RocketFamily) {
+            List<Rocket> rockets = ((RocketFamily) entity).getRocketList();
+            if (rockets != null)
+                related.addAll(rockets);
+        }
+        return related;
+    }
+}
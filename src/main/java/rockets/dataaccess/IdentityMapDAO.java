@@ -0,0 +1,241 @@
+package rockets.dataaccess;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * A DAO decorator for the span of one request, such as resolving the ids
+ * handed to one service call. Every entity is loaded at most once: loading it
+ * again returns the instance loaded first, and loading many ids through
+ * {@link #loadAll(Class, Collection)} fetches only the ids not loaded yet,
+ * with a single call to the wrapped DAO. Ids without an entity are
+ * remembered too. Loading an entity deeper than before fetches it again,
+ * but what was fetched is merged into the instance loaded first, which
+ * stays the one returned.
+ * <p>
+ * Unlike {@link CachingDAO}, nothing is evicted and nothing expires, so an
+ * identity map is meant to be dropped when its request ends. It is not safe
+ * to share between threads. Saving or deleting an entity through it forgets
+ * the entity, and other reads go to the wrapped DAO as they are.
+ */
+public class IdentityMapDAO implements DAO {
+    /**
+     * An entity, or the absence of one, as loaded at a depth.
+     */
+    private static final class Loaded {
+        private final Entity entity;
+
+        private final int depth;
+
+        private Loaded(Entity entity, int depth) {
+            this.entity = entity;
+            this.depth = depth;
+        }
+    }
+
+    private final DAO dao;
+
+    private final int depth;
+
+    private final Map<Class<?>, Map<Long, Loaded>> loaded = new HashMap<>();
+
+    /**
+     * @param dao   the DAO to read through to.
+     * @param depth the depth entities are loaded at when none is asked for.
+     */
+    public IdentityMapDAO(DAO dao, int depth) {
+        this.dao = dao;
+        this.depth = depth;
+    }
+
+    private Map<Long, Loaded> loadedOf(Class<?> clazz) {
+        return loaded.computeIfAbsent(clazz, c -> new HashMap<>());
+    }
+
+    /**
+     * Returns whether something loaded at one depth holds everything a load
+     * at another depth would. A negative depth loads everything reachable.
+     */
+    private static boolean covers(int loadedDepth, int depth) {
+        return loadedDepth < 0 || (depth >= 0 && loadedDepth >= depth);
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        return load(clazz, id, depth);
+    }
+
+    /**
+     * Returns the entity loaded before, after merging a deeper load into it
+     * if it was loaded less deep.
+     */
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id, int depth) {
+        Map<Long, Loaded> entities = loadedOf(clazz);
+        Loaded known = entities.get(id);
+        if (known != null && covers(known.depth, depth))
+            return clazz.cast(known.entity);
+        return clazz.cast(remember(entities, id, known, dao.load(clazz, id, depth), depth));
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return loadAll(clazz, ids, depth);
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids, int depth) {
+        Map<Long, Loaded> entities = loadedOf(clazz);
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : ids) {
+            Loaded known = entities.get(id);
+            if (known == null || !covers(known.depth, depth))
+                missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            Iterator<T> fetched = dao.loadAll(clazz, missing, depth).iterator();
+            for (Long id : missing) {
+                remember(entities, id, entities.get(id), fetched.next(), depth);
+            }
+        }
+        List<T> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            result.add(clazz.cast(entities.get(id).entity));
+        }
+        return result;
+    }
+
+    /**
+     * Records what a load fetched. An entity that was already loaded keeps
+     * its instance, into which the fetched one is merged.
+     *
+     * @return the instance to hand out.
+     */
+    private static Entity remember(Map<Long, Loaded> entities, Long id, Loaded known, Entity fetched, int depth) {
+        Entity entity = fetched;
+        if (known != null && known.entity != null && fetched != null && known.entity.getClass() == fetched.getClass()) {
+            merge(fetched, known.entity);
+            entity = known.entity;
+        }
+        entities.put(id, new Loaded(entity, depth));
+        return entity;
+    }
+
+    /**
+     * Copies the fields a deeper load filled in onto the instance loaded
+     * first. Relationships the deeper load deferred are left as they are,
+     * and the ones it fetched replace any the first instance still deferred,
+     * so they are not fetched again.
+     */
+    private static void merge(Entity deeper, Entity known) {
+        for (Field field : FieldUtils.getAllFieldsList(known.getClass())) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers))
+                continue;
+            if (isDeferred(deeper, field.getName()))
+                continue;
+            try {
+                Object value = FieldUtils.readField(field, deeper, true);
+                if (value != null) {
+                    FieldUtils.writeField(field, known, value, true);
+                    stopDeferring(known, field.getName());
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("cannot merge field " + field.getName(), e);
+            }
+        }
+    }
+
+    private static boolean isDeferred(Entity entity, String field) {
+        if (entity instanceof Launch && "payloads".equals(field))
+            return !((Launch) entity).isPayloadLoaded();
+        if (entity instanceof LaunchServiceProvider && "rockets".equals(field))
+            return !((LaunchServiceProvider) entity).isRocketsLoaded();
+        return false;
+    }
+
+    private static void stopDeferring(Entity entity, String field) {
+        if (entity instanceof Launch && "payloads".equals(field))
+            ((Launch) entity).setPayloadLoader(null);
+        else if (entity instanceof LaunchServiceProvider && "rockets".equals(field))
+            ((LaunchServiceProvider) entity).setRocketLoader(null);
+    }
+
+    /**
+     * Returns the number of ids of a class loaded so far, with or without an entity.
+     */
+    public int size(Class<? extends Entity> clazz) {
+        Map<Long, Loaded> entities = loaded.get(clazz);
+        return entities == null ? 0 : entities.size();
+    }
+
+    /**
+     * Forgets every loaded entity.
+     */
+    public void clear() {
+        loaded.clear();
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        T saved = dao.createOrUpdate(entity);
+        forget(saved);
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        Collection<T> saved = dao.createOrUpdateAll(entities);
+        saved.forEach(this::forget);
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return dao.loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, int depth) {
+        return dao.loadAll(clazz, depth);
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query) {
+        return dao.find(query);
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query, int depth) {
+        return dao.find(query, depth);
+    }
+
+    @Override
+    public <T extends Entity> Iterator<T> iterate(Class<T> clazz, int pageSize, int depth) {
+        return dao.iterate(clazz, pageSize, depth);
+    }
+
+    @Override
+    public Long findIdByNaturalKey(Entity entity) {
+        return dao.findIdByNaturalKey(entity);
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        Long id = entity.getId();
+        dao.delete(entity);
+        if (id != null)
+            loadedOf(entity.getClass()).remove(id);
+    }
+
+    private void forget(Entity entity) {
+        if (entity.getId() != null)
+            loadedOf(entity.getClass()).remove(entity.getId());
+    }
+}
@@ -0,0 +1,358 @@
+package rockets.dataaccess;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Payload;
+import rockets.model.Rocket;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.apache.commons.lang3.Validate.notBlank;
+
+/**
+ * Imports launches from CSV, together with their rockets, providers and
+ * payloads. Each row describes one launch:
+ * <pre>
+ * launchDate,launchSite,orbit,function,price,launchOutcome,
+ * rocket,rocketCountry,
+ * manufacturer,manufacturerYearFounded,manufacturerCountry,
+ * provider,providerYearFounded,providerCountry,
+ * payloads
+ * </pre>
+ * where {@code launchDate} is an ISO date, {@code launchOutcome} is FAILED
+ * or SUCCESSFUL and {@code payloads} is a list of {@code name:type} pairs
+ * separated by semicolons, possibly empty. Columns are matched by the header
+ * row, so their order does not matter.
+ * <p>
+ * The file is read as a stream: records are handed to a pool of threads in
+ * chunks of one batch, which build and validate the entities through the
+ * model setters, and each chunk is written with one call to
+ * {@link DAO#createOrUpdateAll(Collection)} once it is built. A row that
+ * fails validation is rejected and reported, and the import carries on.
+ * Providers and rockets are kept in memory by natural key (see
+ * {@link NaturalKeys}), so every launch of the same rocket shares one
+ * instance, which is only written once; when rows disagree on the other
+ * details of a rocket or provider, the first row wins.
+ * <p>
+ * Chunks written before a failed write stay written: the import then stops
+ * with an {@link ImportException} that reports how far it got.
+ */
+public class LaunchCsvImporter {
+    private static final Logger logger = LoggerFactory.getLogger(LaunchCsvImporter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Rejected rows kept in a report; any further ones are only counted.
+     */
+    static final int MAX_REJECTIONS = 1000;
+
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT
+            .withFirstRecordAsHeader()
+            .withIgnoreSurroundingSpaces()
+            .withIgnoreEmptyLines();
+
+    private final DAO dao;
+
+    private final int threads;
+
+    private final int batchSize;
+
+    private final Map<List<Object>, LaunchServiceProvider> providers = new ConcurrentHashMap<>();
+
+    private final Map<List<Object>, Rocket> rockets = new ConcurrentHashMap<>();
+
+    public LaunchCsvImporter(DAO dao) {
+        this(dao, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param dao       the DAO to write to.
+     * @param threads   the number of threads that build entities from rows.
+     * @param batchSize the number of rows written per call to the DAO.
+     */
+    public LaunchCsvImporter(DAO dao, int threads, int batchSize) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive");
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batch size must be positive");
+        this.dao = dao;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    public Report importFrom(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader);
+        }
+    }
+
+    /**
+     * Imports every row of the CSV read from the reader, which is left open.
+     *
+     * @return the number of rows read, imported and rejected.
+     * @throws IOException     if the CSV cannot be read or has no header row.
+     * @throws ImportException if a chunk cannot be built or written, with
+     *                         the rows imported before it.
+     */
+    public Report importFrom(Reader reader) throws IOException {
+        long start = System.nanoTime();
+        Report report = new Report();
+        ExecutorService workers = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("csv-import-%d").setDaemon(true).build());
+        // chunks are written in file order, with a bounded number being built ahead
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        try {
+            CSVParser parser = FORMAT.parse(reader);
+            List<CSVRecord> records = new ArrayList<>(batchSize);
+            for (CSVRecord record : parser) {
+                records.add(record);
+                if (records.size() == batchSize) {
+                    submit(workers, inFlight, records);
+                    records = new ArrayList<>(batchSize);
+                    while (inFlight.size() > 2 * threads) {
+                        write(inFlight.poll(), report);
+                    }
+                }
+            }
+            if (!records.isEmpty())
+                submit(workers, inFlight, records);
+            while (!inFlight.isEmpty()) {
+                write(inFlight.poll(), report);
+            }
+        } catch (RuntimeException e) {
+            report.elapsedNanos = System.nanoTime() - start;
+            throw new ImportException(report, e);
+        } finally {
+            inFlight.forEach(chunk -> chunk.cancel(true));
+            workers.shutdownNow();
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        logger.info("imported {} of {} rows ({} rejected) at {} rows/s",
+                report.imported, report.rowsRead, report.rejected, Math.round(report.rowsPerSecond()));
+        return report;
+    }
+
+    private void submit(ExecutorService workers, Deque<Future<Chunk>> inFlight, List<CSVRecord> records) {
+        inFlight.add(workers.submit(() -> build(records)));
+    }
+
+    private void write(Future<Chunk> future, Report report) {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("import interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        if (!chunk.launches.isEmpty())
+            dao.createOrUpdateAll(chunk.launches);
+        report.add(chunk);
+    }
+
+    private Chunk build(List<CSVRecord> records) {
+        Chunk chunk = new Chunk(records.size());
+        for (CSVRecord record : records) {
+            try {
+                chunk.launches.add(launchOf(record));
+            } catch (IllegalArgumentException | NullPointerException | DateTimeException e) {
+                chunk.rejections.add(new Rejection(record.getRecordNumber(), e.getMessage()));
+            }
+        }
+        return chunk;
+    }
+
+    private Launch launchOf(CSVRecord record) {
+        // providers are only shared once their key is validated, rockets once the whole row is
+        LaunchServiceProvider manufacturer = shared(providers, providerOf(record, "manufacturer"));
+        LaunchServiceProvider provider = shared(providers, providerOf(record, "provider"));
+        Rocket rocket = new Rocket(notBlank(record.get("rocket"), "rocket name cannot be null or empty"),
+                notBlank(record.get("rocketCountry"), "rocket country cannot be null or empty"), manufacturer);
+
+        Launch launch = new Launch();
+        launch.setLaunchDate(LocalDate.parse(record.get("launchDate")));
+        launch.setLaunchSite(record.get("launchSite"));
+        launch.setOrbit(record.get("orbit"));
+        launch.setFunction(record.get("function"));
+        launch.setPrice(new BigDecimal(record.get("price")));
+        launch.setLaunchOutcome(Launch.LaunchOutcome.valueOf(record.get("launchOutcome")));
+        launch.setPayload(payloadsOf(record.get("payloads")));
+
+        launch.setLaunchVehicle(shared(rockets, rocket));
+        launch.setLaunchServiceProvider(provider);
+        return launch;
+    }
+
+    private static LaunchServiceProvider providerOf(CSVRecord record, String column) {
+        LaunchServiceProvider provider = new LaunchServiceProvider();
+        provider.setName(record.get(column));
+        provider.setYearFounded(Integer.parseInt(record.get(column + "YearFounded")));
+        provider.setCountry(record.get(column + "Country"));
+        return provider;
+    }
+
+    private static Set<Payload> payloadsOf(String column) {
+        Set<Payload> payloads = new LinkedHashSet<>();
+        for (String pair : column.split(";")) {
+            if (pair.trim().isEmpty())
+                continue;
+            String[] parts = pair.split(":", 2);
+            if (parts.length != 2)
+                throw new IllegalArgumentException("payload must be name:type: " + pair);
+            payloads.add(new Payload(notBlank(parts[0].trim(), "payload name cannot be null or empty"),
+                    notBlank(parts[1].trim(), "payload type cannot be null or empty")));
+        }
+        return payloads;
+    }
+
+    /**
+     * Returns the instance already seen with the entity's natural key, or the entity if it is the first.
+     */
+    private static <T extends Entity> T shared(Map<List<Object>, T> seen, T entity) {
+        T first = seen.putIfAbsent(NaturalKeys.keyOf(entity), entity);
+        return first == null ? entity : first;
+    }
+
+    private static final class Chunk {
+        private final List<Launch> launches;
+
+        private final List<Rejection> rejections = new ArrayList<>();
+
+        private Chunk(int size) {
+            launches = new ArrayList<>(size);
+        }
+    }
+
+    /**
+     * A row that was not imported.
+     */
+    public static final class Rejection {
+        private final long recordNumber;
+
+        private final String reason;
+
+        Rejection(long recordNumber, String reason) {
+            this.recordNumber = recordNumber;
+            this.reason = reason;
+        }
+
+        /**
+         * Returns the number of the row in the file, counting from 1 after the header row.
+         */
+        public long getRecordNumber() {
+            return recordNumber;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "record " + recordNumber + ": " + reason;
+        }
+    }
+
+    /**
+     * Thrown when an import stops part-way, carrying the report of the rows
+     * that were written before it stopped.
+     */
+    public static final class ImportException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Report report;
+
+        ImportException(Report report, RuntimeException cause) {
+            super("import failed after " + report.imported + " of " + report.rowsRead + " rows: " + cause.getMessage(),
+                    cause);
+            this.report = report;
+        }
+
+        /**
+         * Returns the rows read, imported and rejected in the chunks written before the failure.
+         */
+        public Report getReport() {
+            return report;
+        }
+    }
+
+    /**
+     * The outcome of an import. Only the first {@value #MAX_REJECTIONS}
+     * rejected rows are kept, but all of them are counted.
+     */
+    public static final class Report {
+        private long rowsRead;
+
+        private long imported;
+
+        private long rejected;
+
+        private long elapsedNanos;
+
+        private final List<Rejection> rejections = new ArrayList<>();
+
+        private void add(Chunk chunk) {
+            rowsRead += chunk.launches.size() + chunk.rejections.size();
+            imported += chunk.launches.size();
+            rejected += chunk.rejections.size();
+            for (Rejection rejection : chunk.rejections) {
+                if (rejections.size() < MAX_REJECTIONS)
+                    rejections.add(rejection);
+            }
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public List<Rejection> getRejections() {
+            return Collections.unmodifiableList(rejections);
+        }
+
+        public long getElapsed(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowsRead * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Report{" +
+                    "rowsRead=" + rowsRead +
+                    ", imported=" + imported +
+                    ", rejected=" + rejected +
+                    ", rowsPerSecond=" + Math.round(rowsPerSecond()) +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package rockets.dataaccess;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import rockets.model.*;
+
+import java.util.*;
+
+/**
+ * The natural keys that identify stored entities independently of their
+ * database ids: the properties a saved entity is matched on before it is
+ * created, so that saving an equal entity twice updates one node.
+ * <ul>
+ * <li>{@link Rocket}: name and country,</li>
+ * <li>{@link User}: email,</li>
+ * <li>{@link Launch}: launch date, launch site, outcome and launch vehicle,</li>
+ * <li>{@link LaunchServiceProvider}: name, year founded and country,</li>
+ * <li>{@link Payload}: name and type,</li>
+ * <li>{@link RocketFamily}: family name, country and developing organisation.</li>
+ * </ul>
+ */
+public final class NaturalKeys {
+    private static final Map<Class<?>, List<String>> PROPERTIES = new HashMap<>();
+
+    static {
+        PROPERTIES.put(Rocket.class, Arrays.asList("name", "country"));
+        PROPERTIES.put(User.class, Collections.singletonList("email"));
+        PROPERTIES.put(Launch.class, Arrays.asList("launchDate", "launchSite", "launchOutcome"));
+        PROPERTIES.put(LaunchServiceProvider.class, Arrays.asList("name", "yearFounded", "country"));
+        PROPERTIES.put(Payload.class, Arrays.asList("name", "type"));
+        PROPERTIES.put(RocketFamily.class, Arrays.asList("familyName", "country", "develop_OR"));
+    }
+
+    private NaturalKeys() {
+    }
+
+    /**
+     * Returns whether entities of a class have a natural key.
+     */
+    public static boolean isKeyed(Class<?> clazz) {
+        return PROPERTIES.containsKey(clazz);
+    }
+
+    /**
+     * Returns the names of the properties in the natural key of a class.
+     */
+    public static List<String> properties(Class<?> clazz) {
+        List<String> properties = PROPERTIES.get(clazz);
+        return properties == null ? Collections.emptyList() : properties;
+    }
+
+    /**
+     * Returns the name of the relationship field that is part of the natural
+     * key of a class, or null if the key consists of properties only.
+     */
+    public static String relationship(Class<?> clazz) {
+        return clazz.equals(Launch.class) ? "launchVehicle" : null;
+    }
+
+    /**
+     * Returns the natural key of an entity: its class followed by its key
+     * values, with a related entity in the key replaced by that entity's own
+     * key. Keys of equal entities are equal.
+     *
+     * @param entity the entity.
+     * @return the key, or null if the class has no natural key or a key value is missing.
+     */
+    public static List<Object> keyOf(Entity entity) {
+        List<Object> key;
+        if (entity instanceof Rocket) {
+            Rocket rocket = (Rocket) entity;
+            key = Arrays.asList(Rocket.class, rocket.getName(), rocket.getCountry());
+        } else if (entity instanceof User) {
+            key = Arrays.asList(User.class, ((User) entity).getEmail());
+        } else if (entity instanceof Launch) {
+            Launch launch = (Launch) entity;
+            List<Object> vehicle = launch.getLaunchVehicle() == null ? null : keyOf(launch.getLaunchVehicle());
+            key = Arrays.asList(Launch.class, launch.getLaunchDate(), launch.getLaunchSite(),
+                    launch.getLaunchOutcome(), vehicle);
+        } else if (entity instanceof LaunchServiceProvider) {
+            LaunchServiceProvider provider = (LaunchServiceProvider) entity;
+            key = Arrays.asList(LaunchServiceProvider.class, provider.getName(), provider.getYearFounded(),
+                    provider.getCountry());
+        } else if (entity instanceof Payload) {
+            Payload payload = (Payload) entity;
+            key = Arrays.asList(Payload.class, payload.getName(), payload.getType());
+        } else if (entity instanceof RocketFamily) {
+            RocketFamily family = (RocketFamily) entity;
+            key = Arrays.asList(RocketFamily.class, family.getFamilyName(), family.getCountry(),
+                    family.getDevelop_OR());
+        } else {
+            return null;
+        }
+        return key.contains(null) ? null : key;
+    }
+
+    /**
+     * Returns a query for the stored entities with the same natural key as
+     * an entity, matching a related entity in the key on its own key
+     * properties.
+     *
+     * @param entity the entity.
+     * @return the query, or null if the entity has no complete natural key.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Entity> Query<T> query(T entity) {
+        if (keyOf(entity) == null)
+            return null;
+        Query<T> query = Query.of((Class<T>) entity.getClass());
+        for (String property : properties(entity.getClass())) {
+            query.eq(property, read(entity, property));
+        }
+        String relationship = relationship(entity.getClass());
+        if (relationship != null) {
+            Entity related = (Entity) read(entity, relationship);
+            for (String property : properties(related.getClass())) {
+                query.eq(relationship + "." + property, read(related, property));
+            }
+        }
+        return query;
+    }
+
+    private static Object read(Entity entity, String field) {
+        try {
+            return FieldUtils.readField(entity, field, true);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
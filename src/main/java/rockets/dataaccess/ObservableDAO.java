@@ -0,0 +1,144 @@
+package rockets.dataaccess;
+
+import rockets.model.Entity;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A DAO decorator that tells registered {@link DAOListener}s about every
+ * write, so views derived from the data can be kept up to date without
+ * reloading it.
+ * <p>
+ * A save is announced as a creation only if the entity had no id and no
+ * stored entity has its natural key, as the underlying DAO updates such an
+ * entity instead. The entities saved are announced once each. Related
+ * entities that a save cascades to are announced when it creates them;
+ * changes to stored related entities are only announced when those
+ * entities are saved themselves.
+ */
+public class ObservableDAO implements DAO {
+    private final DAO dao;
+
+    private final List<DAOListener> listeners = new CopyOnWriteArrayList<>();
+
+    public ObservableDAO(DAO dao) {
+        this.dao = dao;
+    }
+
+    public void addListener(DAOListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DAOListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        return dao.load(clazz, id);
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id, int depth) {
+        return dao.load(clazz, id, depth);
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        List<Entity> graph = EntityGraph.reachable(Collections.singleton(entity));
+        Set<Entity> created = unsaved(graph);
+        T saved = dao.createOrUpdate(entity);
+        announce(Collections.singleton(saved), graph, created);
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        List<Entity> graph = EntityGraph.reachable(entities);
+        Set<Entity> created = unsaved(graph);
+        Collection<T> saved = dao.createOrUpdateAll(entities);
+        announce(saved, graph, created);
+        return saved;
+    }
+
+    /**
+     * Returns the entities that saving will create: those without an id
+     * whose natural key is not stored yet.
+     */
+    private Set<Entity> unsaved(List<Entity> graph) {
+        Set<Entity> unsaved = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Entity entity : graph) {
+            if (entity.getId() == null && dao.findIdByNaturalKey(entity) == null)
+                unsaved.add(entity);
+        }
+        return unsaved;
+    }
+
+    private void announce(Collection<? extends Entity> saved, List<Entity> graph, Set<Entity> created) {
+        Set<Entity> announced = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<List<Object>> ids = new HashSet<>();
+        List<Entity> entities = new ArrayList<>(saved);
+        for (Entity entity : graph) {
+            if (created.contains(entity))
+                entities.add(entity);
+        }
+        for (Entity entity : entities) {
+            // equal instances saved together end up as one stored entity
+            if (!announced.add(entity) || entity.getId() != null && !ids.add(Arrays.asList(entity.getClass(), entity.getId())))
+                continue;
+            for (DAOListener listener : listeners) {
+                listener.entitySaved(entity, created.contains(entity));
+            }
+        }
+    }
+
+    @Override
+    public Long findIdByNaturalKey(Entity entity) {
+        return dao.findIdByNaturalKey(entity);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return dao.loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, int depth) {
+        return dao.loadAll(clazz, depth);
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return dao.loadAll(clazz, ids);
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids, int depth) {
+        return dao.loadAll(clazz, ids, depth);
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query) {
+        return dao.find(query);
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query, int depth) {
+        return dao.find(query, depth);
+    }
+
+    @Override
+    public <T extends Entity> Iterator<T> iterate(Class<T> clazz, int pageSize, int depth) {
+        return dao.iterate(clazz, pageSize, depth);
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        Long id = entity.getId();
+        dao.delete(entity);
+        for (DAOListener listener : listeners) {
+            listener.entityDeleted(entity, id);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package rockets.dataaccess;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Iterates over entities that are loaded one page at a time. The next page is
+ * only requested once the current one has been consumed, so at most one page
+ * is held at a time; iteration ends at the first page that is not full.
+ * <p>
+ * Pages are requested by the last entity of the previous page rather than by
+ * page number, so a loader can seek past it through an index (keyset
+ * pagination) instead of skipping over all earlier entities.
+ *
+ * @param <T> the type of the iterated entities.
+ */
+public class PageIterator<T> implements Iterator<T> {
+    private final int pageSize;
+
+    private final Function<T, ? extends Collection<T>> pageLoader;
+
+    private final Consumer<Collection<T>> pageDone;
+
+    private Collection<T> page = Collections.emptyList();
+
+    private Iterator<T> iterator = Collections.emptyIterator();
+
+    private T last;
+
+    private boolean lastPage;
+
+    /**
+     * @param pageSize   the number of entities per page.
+     * @param pageLoader loads the page after the given entity, or the first page given null.
+     * @param pageDone   called with every page once it has been iterated over.
+     */
+    public PageIterator(int pageSize, Function<T, ? extends Collection<T>> pageLoader, Consumer<Collection<T>> pageDone) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("page size must be positive");
+        this.pageSize = pageSize;
+        this.pageLoader = pageLoader;
+        this.pageDone = pageDone;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!iterator.hasNext()) {
+            if (!page.isEmpty())
+                pageDone.accept(page);
+            page = Collections.emptyList();
+            if (lastPage)
+                return false;
+            Collection<T> loaded = pageLoader.apply(last);
+            page = loaded == null ? Collections.emptyList() : loaded;
+            lastPage = page.size() < pageSize;
+            iterator = page.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        last = iterator.next();
+        return last;
+    }
+}
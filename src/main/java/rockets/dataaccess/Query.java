@@ -0,0 +1,294 @@
+package rockets.dataaccess;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import rockets.model.Entity;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * A filter on the entities of a class, for {@link DAO#find(Query)}. All
+ * conditions must hold. A condition is on a property of the entities, or on
+ * a property of an entity they refer to, named by a path such as
+ * {@code "launchVehicle.country"}. A condition on a relationship itself,
+ * such as {@code "launchServiceProvider"}, compares the related entity by id.
+ * <pre>
+ * Query&lt;Launch&gt; query = Query.of(Launch.class)
+ *         .eq("orbit", "LEO")
+ *         .between("launchDate", LocalDate.of(2017, 1, 1), LocalDate.of(2017, 12, 31))
+ *         .in("launchServiceProvider", providers);
+ * </pre>
+ *
+ * @param <T> the entity class.
+ */
+public final class Query<T extends Entity> {
+    public enum Operator {
+        EQUALS, IN, RANGE
+    }
+
+    /**
+     * One condition of a query.
+     */
+    public static final class Condition {
+        private final List<Field> path;
+
+        private final Operator operator;
+
+        private final List<Object> values;
+
+        private final Comparable<?> from;
+
+        private final Comparable<?> to;
+
+        private Condition(List<Field> path, Operator operator, List<Object> values, Comparable<?> from, Comparable<?> to) {
+            this.path = path;
+            this.operator = operator;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Returns the fields on the way from the queried class to the
+         * compared value, the last of which may be a relationship.
+         */
+        public List<Field> getPath() {
+            return path;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        /**
+         * Returns whether the condition compares a related entity rather than a property.
+         */
+        public boolean isRelationship() {
+            return isRelationship(path.get(path.size() - 1));
+        }
+
+        /**
+         * Returns the values compared with, for {@link Operator#EQUALS} and
+         * {@link Operator#IN}. Related entities are replaced by their ids.
+         */
+        public List<Object> getValues() {
+            return values;
+        }
+
+        /**
+         * Returns the lower bound of a range, or null if it has none.
+         */
+        public Comparable<?> getFrom() {
+            return from;
+        }
+
+        /**
+         * Returns the upper bound of a range, or null if it has none.
+         */
+        public Comparable<?> getTo() {
+            return to;
+        }
+
+        /**
+         * Returns whether an entity meets the condition. Related entities on
+         * the path must have been loaded.
+         */
+        public boolean matches(Entity entity) {
+            Object value = entity;
+            for (Field field : path) {
+                if (value == null)
+                    break;
+                try {
+                    value = field.get(value);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (value instanceof Entity)
+                value = ((Entity) value).getId();
+            switch (operator) {
+                case RANGE:
+                    return value != null && (from == null || compare(value, from) >= 0) && (to == null || compare(value, to) <= 0);
+                default:
+                    for (Object expected : values) {
+                        if (value == null ? expected == null : expected != null && equal(value, expected))
+                            return true;
+                    }
+                    return false;
+            }
+        }
+
+        private static boolean isRelationship(Field field) {
+            return Entity.class.isAssignableFrom(field.getType());
+        }
+
+        @SuppressWarnings("unchecked")
+        private static int compare(Object value, Comparable<?> bound) {
+            return ((Comparable<Object>) value).compareTo(bound);
+        }
+
+        private static boolean equal(Object value, Object expected) {
+            if (value instanceof BigDecimal && expected instanceof BigDecimal)
+                return ((BigDecimal) value).compareTo((BigDecimal) expected) == 0;
+            return value.equals(expected);
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner name = new StringJoiner(".");
+            path.forEach(field -> name.add(field.getName()));
+            return name + (operator == Operator.RANGE ? " in [" + from + ", " + to + "]" : " " + operator + " " + values);
+        }
+    }
+
+    private final Class<T> entityType;
+
+    private final List<Condition> conditions = new ArrayList<>();
+
+    private Query(Class<T> entityType) {
+        this.entityType = entityType;
+    }
+
+    /**
+     * Starts a query on the entities of a class, which matches all of them
+     * until conditions are added.
+     */
+    public static <T extends Entity> Query<T> of(Class<T> entityType) {
+        if (entityType == null)
+            throw new NullPointerException("entity type cannot be null");
+        return new Query<>(entityType);
+    }
+
+    /**
+     * Adds a condition that a property equals a value. A null value matches
+     * entities without the property.
+     *
+     * @param property the property path.
+     * @param value    the value, or a saved entity for a relationship.
+     * @return this query.
+     */
+    public Query<T> eq(String property, Object value) {
+        return add(property, Operator.EQUALS, Collections.singletonList(value), null, null);
+    }
+
+    /**
+     * Adds a condition that a property equals one of a set of values.
+     *
+     * @param property the property path.
+     * @param values   the values, or saved entities for a relationship.
+     * @return this query.
+     */
+    public Query<T> in(String property, Collection<?> values) {
+        if (values == null)
+            throw new NullPointerException("values cannot be null");
+        if (values.stream().anyMatch(Objects::isNull))
+            throw new IllegalArgumentException("values cannot contain null");
+        return add(property, Operator.IN, new ArrayList<>(values), null, null);
+    }
+
+    /**
+     * Adds a condition that a property lies in a range, bounds included.
+     * Entities without the property do not match.
+     *
+     * @param property the property path.
+     * @param from     the lower bound, or null for none.
+     * @param to       the upper bound, or null for none.
+     * @return this query.
+     */
+    public <V extends Comparable<? super V>> Query<T> between(String property, V from, V to) {
+        if (from == null && to == null)
+            throw new IllegalArgumentException("a range needs at least one bound");
+        if (from != null && to != null && from.compareTo(to) > 0)
+            throw new IllegalArgumentException("range cannot start after it ends");
+        return add(property, Operator.RANGE, Collections.emptyList(), from, to);
+    }
+
+    private Query<T> add(String property, Operator operator, List<Object> values, Comparable<?> from, Comparable<?> to) {
+        List<Field> path = resolve(property);
+        Field last = path.get(path.size() - 1);
+        if (Condition.isRelationship(last)) {
+            if (operator == Operator.RANGE)
+                throw new IllegalArgumentException("cannot compare the order of " + property);
+            List<Object> ids = new ArrayList<>(values.size());
+            for (Object value : values) {
+                if (value != null && !(value instanceof Entity && ((Entity) value).getId() != null))
+                    throw new IllegalArgumentException(property + " can only be compared with saved entities");
+                ids.add(value == null ? null : ((Entity) value).getId());
+            }
+            values = ids;
+        } else {
+            Class<?> type = ClassUtils.primitiveToWrapper(last.getType());
+            for (Object value : values) {
+                if (value != null && !type.isInstance(value))
+                    throw new IllegalArgumentException(property + " cannot be compared with " + value);
+            }
+            for (Object bound : Arrays.asList(from, to)) {
+                if (bound != null && !type.isInstance(bound))
+                    throw new IllegalArgumentException(property + " cannot be compared with " + bound);
+            }
+        }
+        conditions.add(new Condition(path, operator, values, from, to));
+        return this;
+    }
+
+    private List<Field> resolve(String property) {
+        if (property == null)
+            throw new NullPointerException("property cannot be null");
+        List<Field> path = new ArrayList<>();
+        Class<?> owner = entityType;
+        for (String name : property.split("\\.", -1)) {
+            if (owner == null)
+                throw new IllegalArgumentException(property + " goes past a property");
+            Field field = FieldUtils.getField(owner, name, true);
+            if (field == null || Modifier.isTransient(field.getModifiers()))
+                throw new IllegalArgumentException("unknown property " + name + " of " + owner.getSimpleName());
+            if (Collection.class.isAssignableFrom(field.getType()))
+                throw new IllegalArgumentException("cannot filter on collection " + name + " of " + owner.getSimpleName());
+            path.add(field);
+            owner = Condition.isRelationship(field) ? field.getType() : null;
+        }
+        return Collections.unmodifiableList(path);
+    }
+
+    public Class<T> getEntityType() {
+        return entityType;
+    }
+
+    public List<Condition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    /**
+     * Returns whether an entity meets every condition. Related entities on
+     * the paths of the conditions must have been loaded.
+     */
+    public boolean matches(T entity) {
+        for (Condition condition : conditions) {
+            if (!condition.matches(entity))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the entities that meet every condition, in their original order.
+     */
+    public List<T> filter(Collection<T> entities) {
+        List<T> matching = new ArrayList<>();
+        if (entities != null) {
+            for (T entity : entities) {
+                if (matches(entity))
+                    matching.add(entity);
+            }
+        }
+        return matching;
+    }
+
+    @Override
+    public String toString() {
+        return "Query{" + entityType.getSimpleName() + ", " + conditions + '}';
+    }
+}
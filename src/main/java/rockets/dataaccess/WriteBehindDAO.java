@@ -0,0 +1,356 @@
+package rockets.dataaccess;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import rockets.model.Entity;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A DAO decorator that buffers saves and writes them to the underlying DAO
+ * later, in batches, through {@link DAO#createOrUpdateAll(Collection)}.
+ * Saving an entity whose natural key (see {@link NaturalKeys}) is already
+ * buffered replaces the buffered write, so bursts of saves of the same
+ * rockets and providers reach the database once per flush.
+ * <p>
+ * The buffer is flushed in the background once it holds a batch of writes
+ * or once the flush interval has passed, whichever comes first. Saves block
+ * while the buffer is at capacity, until a flush makes room. Loads and
+ * deletes flush first, so they see every earlier save. Saved entities get
+ * their ids when they are flushed, not when {@link #createOrUpdate(Entity)}
+ * returns. A failed flush is rethrown by the next call, and its writes stay
+ * buffered to be written again by the next flush.
+ */
+public class WriteBehindDAO implements DAO, AutoCloseable {
+    private final DAO dao;
+
+    private final int batchSize;
+
+    private final int capacity;
+
+    private final ScheduledExecutorService flusher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notFull = lock.newCondition();
+
+    private final Object flushLock = new Object();
+
+    /**
+     * Buffered writes by natural key, in the order they were first buffered.
+     */
+    private Map<Object, List<Entity>> buffer = new LinkedHashMap<>();
+
+    private int pending;
+
+    private boolean flushRequested;
+
+    private boolean closed;
+
+    private volatile RuntimeException failure;
+
+    /**
+     * @param dao           the DAO that writes are flushed to.
+     * @param batchSize     the number of buffered writes that triggers a flush.
+     * @param capacity      the number of buffered and in-flight writes at which saves block.
+     * @param flushInterval the longest time a write stays buffered.
+     * @param unit          the unit of the flush interval.
+     */
+    public WriteBehindDAO(DAO dao, int batchSize, int capacity, long flushInterval, TimeUnit unit) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batch size must be positive");
+        if (capacity < batchSize)
+            throw new IllegalArgumentException("capacity cannot be less than batch size");
+        this.dao = dao;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("write-behind-%d").setDaemon(true).build());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, unit);
+    }
+
+    /**
+     * Buffers the entity to be saved with the next flush, blocking while the
+     * buffer is full.
+     *
+     * @return the entity, whose id is set once it has been flushed.
+     */
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        checkFailure();
+        Object key = keyOf(entity);
+        lock.lock();
+        try {
+            while (pending >= capacity && !closed) {
+                notFull.awaitUninterruptibly();
+            }
+            if (closed)
+                throw new IllegalStateException("write-behind DAO is closed");
+            List<Entity> writes = buffer.get(key);
+            if (writes == null) {
+                buffer.put(key, writes = new ArrayList<>(1));
+                pending++;
+            }
+            // the last write wins, the earlier ones only wait for the id
+            writes.add(entity);
+            if (buffer.size() >= batchSize && !flushRequested) {
+                flushRequested = true;
+                flusher.execute(this::flushQuietly);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return entity;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        for (T entity : entities) {
+            createOrUpdate(entity);
+        }
+        return entities;
+    }
+
+    /**
+     * Writes the buffered entities to the underlying DAO and waits until they are written.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<Object, List<Entity>> batch;
+            lock.lock();
+            try {
+                batch = buffer;
+                buffer = new LinkedHashMap<>();
+                flushRequested = false;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                if (!batch.isEmpty())
+                    write(batch);
+            } catch (RuntimeException e) {
+                requeue(batch);
+                failure = e;
+                throw e;
+            }
+            lock.lock();
+            try {
+                pending -= batch.size();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Puts a batch that failed to be written back in front of the buffer, so
+     * the next flush writes it again. Writes of the same key buffered since
+     * are merged into it and still win.
+     */
+    private void requeue(Map<Object, List<Entity>> batch) {
+        lock.lock();
+        try {
+            Map<Object, List<Entity>> newer = buffer;
+            int merged = 0;
+            for (Map.Entry<Object, List<Entity>> entry : newer.entrySet()) {
+                List<Entity> writes = batch.get(entry.getKey());
+                if (writes == null) {
+                    batch.put(entry.getKey(), entry.getValue());
+                } else {
+                    writes.addAll(entry.getValue());
+                    merged++;
+                }
+            }
+            buffer = batch;
+            pending -= merged;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(Map<Object, List<Entity>> batch) {
+        List<Entity> latest = new ArrayList<>(batch.size());
+        for (List<Entity> writes : batch.values()) {
+            latest.add(writes.get(writes.size() - 1));
+        }
+        dao.createOrUpdateAll(latest);
+        for (List<Entity> writes : batch.values()) {
+            Long id = writes.get(writes.size() - 1).getId();
+            for (Entity entity : writes) {
+                entity.setId(id);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // kept in failure and rethrown to the next caller
+        }
+    }
+
+    private void checkFailure() {
+        RuntimeException e = failure;
+        if (e != null) {
+            failure = null;
+            throw new IllegalStateException("write-behind flush failed", e);
+        }
+    }
+
+    /**
+     * Returns the key that coalesces writes of an entity: its natural key,
+     * else its class and id, else the entity itself.
+     */
+    private static Object keyOf(Entity entity) {
+        List<Object> key = NaturalKeys.keyOf(entity);
+        if (key != null)
+            return key;
+        if (entity.getId() != null)
+            return Arrays.asList(entity.getClass(), entity.getId());
+        return new IdentityKey(entity);
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        flushBeforeRead();
+        return dao.load(clazz, id);
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id, int depth) {
+        flushBeforeRead();
+        return dao.load(clazz, id, depth);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        flushBeforeRead();
+        return dao.loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, int depth) {
+        flushBeforeRead();
+        return dao.loadAll(clazz, depth);
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        flushBeforeRead();
+        return dao.loadAll(clazz, ids);
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids, int depth) {
+        flushBeforeRead();
+        return dao.loadAll(clazz, ids, depth);
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query) {
+        flushBeforeRead();
+        return dao.find(query);
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query, int depth) {
+        flushBeforeRead();
+        return dao.find(query, depth);
+    }
+
+    @Override
+    public <T extends Entity> Iterator<T> iterate(Class<T> clazz, int pageSize, int depth) {
+        flushBeforeRead();
+        return dao.iterate(clazz, pageSize, depth);
+    }
+
+    @Override
+    public Long findIdByNaturalKey(Entity entity) {
+        flushBeforeRead();
+        return dao.findIdByNaturalKey(entity);
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        flushBeforeRead();
+        dao.delete(entity);
+    }
+
+    private void flushBeforeRead() {
+        RuntimeException earlier = failure;
+        failure = null;
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            if (earlier == null)
+                throw e;
+            failure = null;
+            IllegalStateException exception = new IllegalStateException("write-behind flush failed", earlier);
+            exception.addSuppressed(e);
+            throw exception;
+        }
+        if (earlier != null)
+            throw new IllegalStateException("write-behind flush failed", earlier);
+    }
+
+    /**
+     * Flushes the buffered writes and stops the background flushes. Saves
+     * blocked on a full buffer fail. Writes requeued by a failed background
+     * flush are written too, before that failure is rethrown.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        RuntimeException earlier = failure;
+        failure = null;
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            if (earlier == null)
+                throw e;
+            failure = null;
+            IllegalStateException exception = new IllegalStateException("write-behind flush failed", earlier);
+            exception.addSuppressed(e);
+            throw exception;
+        }
+        if (earlier != null)
+            throw new IllegalStateException("write-behind flush failed", earlier);
+    }
+
+    private static final class IdentityKey {
+        private final Entity entity;
+
+        private IdentityKey(Entity entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).entity == entity;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(entity);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package rockets.dataaccess.memory;
+
+import com.google.common.collect.Iterators;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.NaturalKeys;
+import rockets.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link DAO} that keeps entities in memory, for tests and what-if
+ * analysis that do not need a database. It behaves like
+ * {@link rockets.dataaccess.neo4j.Neo4jDAO}:
+ * <ul>
+ * <li>saving an entity saves every entity reachable from it, and assigns
+ * ids to the new ones from one sequence shared by all classes;</li>
+ * <li>an entity without an id whose natural key (see {@link NaturalKeys})
+ * matches a stored entity takes over that entity's id, so saving an equal
+ * entity twice updates it instead of storing a copy.</li>
+ * </ul>
+ * Entities are indexed by id, by class and by natural key. Reads are served
+ * from concurrent maps without locking; writes are serialized, so that two
+ * threads saving equal entities cannot both create them. Entities are stored
+ * by reference, so changes to a saved entity are visible to readers before
+ * it is saved again, although its indexes are only updated by saving it.
+ * Deleting an entity does not remove references to it from other entities.
+ */
+public class InMemoryDAO implements DAO {
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ConcurrentMap<Long, Entity> byId = new ConcurrentHashMap<>();
+
+    /**
+     * Entities of each class in id order, which is also the order they were created in.
+     */
+    private final ConcurrentMap<Class<?>, ConcurrentNavigableMap<Long, Entity>> byType = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<List<Object>, Long> byKey = new ConcurrentHashMap<>();
+
+    /**
+     * The key each id is indexed under, to drop it from the key index when it changes.
+     */
+    private final ConcurrentMap<Long, List<Object>> keys = new ConcurrentHashMap<>();
+
+    /**
+     * The ids whose keys include another entity's key, by that key, such as
+     * the launches of each rocket. Only used under the write lock.
+     */
+    private final Map<List<Object>, Set<Long>> dependents = new HashMap<>();
+
+    private final Object writeLock = new Object();
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        Entity entity = id == null ? null : byId.get(id);
+        return clazz.isInstance(entity) ? clazz.cast(entity) : null;
+    }
+
+    /**
+     * Returns the stored entity with the same natural key as the given one.
+     *
+     * @param entity an entity with a natural key, stored or not.
+     * @return the stored entity, or null if there is none or the entity has no natural key.
+     */
+    public <T extends Entity> T findByNaturalKey(T entity) {
+        List<Object> key = NaturalKeys.keyOf(entity);
+        Long id = key == null ? null : byKey.get(key);
+        @SuppressWarnings("unchecked")
+        Class<T> clazz = (Class<T>) entity.getClass();
+        return load(clazz, id);
+    }
+
+    @Override
+    public Long findIdByNaturalKey(Entity entity) {
+        List<Object> key = NaturalKeys.keyOf(entity);
+        return key == null ? null : byKey.get(key);
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        synchronized (writeLock) {
+            save(entity, Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+        return entity;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        synchronized (writeLock) {
+            Set<Entity> saved = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (T entity : entities) {
+                save(entity, saved);
+            }
+        }
+        return entities;
+    }
+
+    private void save(Entity entity, Set<Entity> saved) {
+        if (entity == null || !saved.add(entity))
+            return;
+        // a launch is keyed by its vehicle, which has to be indexed first
+        for (Entity related : keyedBy(entity)) {
+            save(related, saved);
+        }
+        List<Object> key = NaturalKeys.keyOf(entity);
+        if (entity.getId() == null && key != null)
+            entity.setId(byKey.get(key));
+        if (entity.getId() == null)
+            entity.setId(sequence.incrementAndGet());
+        Long id = entity.getId();
+        Entity previous = byId.put(id, entity);
+        if (previous != null && previous.getClass() != entity.getClass())
+            typeIndex(previous.getClass()).remove(id);
+        typeIndex(entity.getClass()).put(id, entity);
+        index(id, key);
+        for (Entity related : related(entity)) {
+            save(related, saved);
+        }
+    }
+
+    private ConcurrentNavigableMap<Long, Entity> typeIndex(Class<?> clazz) {
+        return byType.computeIfAbsent(clazz, c -> new ConcurrentSkipListMap<>());
+    }
+
+    private void index(Long id, List<Object> key) {
+        List<Object> previous = key == null ? keys.remove(id) : keys.put(id, key);
+        if (key != null)
+            byKey.put(key, id);
+        if (Objects.equals(previous, key))
+            return;
+        unlink(id, previous);
+        link(id, key);
+        if (previous == null)
+            return;
+        byKey.remove(previous, id);
+        // keys that include the old key, such as those of the launches of a renamed rocket
+        Set<Long> affected = dependents.remove(previous);
+        if (affected == null)
+            return;
+        for (Long dependent : affected) {
+            Entity entity = byId.get(dependent);
+            index(dependent, entity == null ? null : NaturalKeys.keyOf(entity));
+        }
+    }
+
+    private void link(Long id, List<Object> key) {
+        for (List<Object> component : components(key)) {
+            dependents.computeIfAbsent(component, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    private void unlink(Long id, List<Object> key) {
+        for (List<Object> component : components(key)) {
+            Set<Long> ids = dependents.get(component);
+            if (ids != null && ids.remove(id) && ids.isEmpty())
+                dependents.remove(component);
+        }
+    }
+
+    /**
+     * Returns the keys of other entities that are part of a key.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<List<Object>> components(List<Object> key) {
+        if (key == null)
+            return Collections.emptyList();
+        List<List<Object>> components = new ArrayList<>();
+        for (Object value : key) {
+            if (value instanceof List)
+                components.add((List<Object>) value);
+        }
+        return components;
+    }
+
+    /**
+     * Returns the entities that are part of the natural key of an entity.
+     */
+    private static List<Entity> keyedBy(Entity entity) {
+        if (entity instanceof Launch)
+            return Collections.singletonList(((Launch) entity).getLaunchVehicle());
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the entities an entity has relationships to.
+     */
+    private static List<Entity> related(Entity entity) {
+        List<Entity> related = new ArrayList<>();
+        if (entity instanceof Launch) {
+            Launch launch = (Launch) entity;
+            related.add(launch.getLaunchServiceProvider());
+            if (launch.getPayload() != null)
+                related.addAll(launch.getPayload());
+        } else if (entity instanceof Rocket) {
+            related.add(((Rocket) entity).getManufacturer());
+        } else if (entity instanceof LaunchServiceProvider) {
+            Set<Rocket> rockets = ((LaunchServiceProvider) entity).getRockets();
+            if (rockets != null)
+                related.addAll(rockets);
+        } else if (entity instanceof RocketFamily) {
+            List<Rocket> rockets = ((RocketFamily) entity).getRocketList();
+            if (rockets != null)
+                related.addAll(rockets);
+        }
+        return related;
+    }
+
+    /**
+     * Returns the entities of a class in the order they were created.
+     */
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        List<T> entities = new ArrayList<>();
+        Iterators.addAll(entities, iterator(clazz));
+        return entities;
+    }
+
+    /**
+     * Iterates over the live index of a class: entities saved or deleted
+     * during the iteration may or may not be seen, but none is seen twice.
+     * There are no pages to load, so the page size and depth only need to be valid.
+     */
+    @Override
+    public <T extends Entity> Iterator<T> iterate(Class<T> clazz, int pageSize, int depth) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("page size must be positive");
+        return iterator(clazz);
+    }
+
+    private <T extends Entity> Iterator<T> iterator(Class<T> clazz) {
+        ConcurrentNavigableMap<Long, Entity> entities = byType.get(clazz);
+        if (entities == null)
+            return Collections.emptyIterator();
+        return Iterators.transform(Iterators.unmodifiableIterator(entities.values().iterator()), clazz::cast);
+    }
+
+    /**
+     * Returns the number of stored entities of a class.
+     */
+    public int count(Class<? extends Entity> clazz) {
+        ConcurrentNavigableMap<Long, Entity> entities = byType.get(clazz);
+        return entities == null ? 0 : entities.size();
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        Long id = entity.getId();
+        if (id == null)
+            return;
+        synchronized (writeLock) {
+            Entity stored = byId.remove(id);
+            if (stored == null)
+                return;
+            typeIndex(stored.getClass()).remove(id);
+            List<Object> key = keys.remove(id);
+            if (key != null) {
+                byKey.remove(key, id);
+                unlink(id, key);
+            }
+        }
+    }
+
+    /**
+     * Removes every entity. Ids are not reused.
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            byId.clear();
+            byType.clear();
+            byKey.clear();
+            keys.clear();
+            dependents.clear();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package rockets.dataaccess.neo4j;
+
+import org.neo4j.ogm.annotation.Relationship;
+import org.neo4j.ogm.metadata.ClassInfo;
+import org.neo4j.ogm.metadata.FieldInfo;
+import org.neo4j.ogm.metadata.MetaData;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.transaction.Transaction;
+import rockets.dataaccess.NaturalKeys;
+import rockets.model.Entity;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Saves many entities with a few large Cypher statements instead of one
+ * lookup and one transaction per entity. Entities are grouped by class and
+ * written in batches of {@code UNWIND $rows ... MERGE}, one transaction per
+ * batch:
+ * <ol>
+ * <li>every entity reachable from the saved ones is merged on its natural
+ * key (see {@link NaturalKeys}), or matched by id when it has no key but has
+ * been saved before, and gets the id of its node;</li>
+ * <li>entities that have neither are handed to a fallback, which saves them
+ * one at a time;</li>
+ * <li>relationships are merged between the nodes. A single related entity
+ * replaces the stored one, while related collections are only added to, and
+ * null fields leave stored relationships alone.</li>
+ * </ol>
+ * Entities with equal natural keys end up as one node sharing one id.
+ */
+class BulkUpsert {
+    private static MetaData metaData;
+
+    private final Session session;
+
+    private final int batchSize;
+
+    BulkUpsert(Session session, int batchSize) {
+        this.session = session;
+        this.batchSize = batchSize;
+    }
+
+    static synchronized MetaData metaData() {
+        if (metaData == null)
+            metaData = new MetaData(Entity.class.getPackage().getName());
+        return metaData;
+    }
+
+    /**
+     * Saves the entities and everything reachable from them.
+     *
+     * @param entities the entities.
+     * @param fallback saves a reachable entity that can be neither merged nor matched.
+     * @return the saved entities and everything reachable from them.
+     */
+    List<Entity> upsert(Collection<? extends Entity> entities, Consumer<Entity> fallback) {
+        Map<Class<?>, List<Entity>> byClass = reachable(entities);
+        List<Entity> unkeyed = new ArrayList<>();
+        // entities keyed on a relationship need the ids of the related nodes first
+        for (boolean relationshipKeyed : new boolean[]{false, true}) {
+            for (Map.Entry<Class<?>, List<Entity>> entry : byClass.entrySet()) {
+                if ((NaturalKeys.relationship(entry.getKey()) != null) == relationshipKeyed)
+                    upsertNodes(metaData().classInfo(entry.getKey().getName()), entry.getValue(), unkeyed);
+            }
+        }
+        unkeyed.forEach(fallback);
+        for (Map.Entry<Class<?>, List<Entity>> entry : byClass.entrySet()) {
+            upsertRelationships(metaData().classInfo(entry.getKey().getName()), entry.getValue());
+        }
+        List<Entity> saved = new ArrayList<>();
+        byClass.values().forEach(saved::addAll);
+        return saved;
+    }
+
+    private Map<Class<?>, List<Entity>> reachable(Collection<? extends Entity> entities) {
+        Map<Class<?>, List<Entity>> byClass = new LinkedHashMap<>();
+        Set<Entity> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Entity> pending = new ArrayDeque<>(entities);
+        while (!pending.isEmpty()) {
+            Entity entity = pending.pop();
+            if (!seen.add(entity))
+                continue;
+            byClass.computeIfAbsent(entity.getClass(), c -> new ArrayList<>()).add(entity);
+            for (FieldInfo field : metaData().classInfo(entity.getClass().getName()).relationshipFields()) {
+                pending.addAll(related(field, entity));
+            }
+        }
+        return byClass;
+    }
+
+    private static List<Entity> related(FieldInfo field, Entity entity) {
+        Object value = field.read(entity);
+        List<Entity> related = new ArrayList<>();
+        if (value instanceof Entity) {
+            related.add((Entity) value);
+        } else if (value instanceof Iterable) {
+            for (Object element : (Iterable<?>) value) {
+                if (element instanceof Entity)
+                    related.add((Entity) element);
+            }
+        }
+        return related;
+    }
+
+    private void upsertNodes(ClassInfo classInfo, List<Entity> entities, List<Entity> unkeyed) {
+        Class<?> clazz = classInfo.getUnderlyingClass();
+        Map<List<Object>, List<Entity>> byKey = new LinkedHashMap<>();
+        List<Entity> matched = new ArrayList<>();
+        for (Entity entity : entities) {
+            List<Object> key = NaturalKeys.keyOf(entity);
+            if (key != null)
+                byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(entity);
+            else if (entity.getId() != null)
+                matched.add(entity);
+            else
+                unkeyed.add(entity);
+        }
+
+        StringBuilder merge = new StringBuilder("UNWIND $rows AS row ");
+        String relationship = NaturalKeys.relationship(clazz);
+        if (relationship != null)
+            merge.append("MATCH (related) WHERE id(related) = row.related ");
+        merge.append("MERGE (n").append(labels(classInfo)).append(" {");
+        List<String> keyProperties = NaturalKeys.properties(clazz);
+        for (int i = 0; i < keyProperties.size(); i++) {
+            String property = classInfo.getFieldInfo(keyProperties.get(i)).property();
+            merge.append(i == 0 ? "" : ", ").append('`').append(property).append("`: row.key.`").append(property).append('`');
+        }
+        merge.append('}');
+        if (relationship != null)
+            merge.append(')').append(arrow(classInfo.relationshipFieldByName(relationship), "")).append("(related");
+        merge.append(") SET n += row.props RETURN row.index AS index, id(n) AS id");
+
+        List<List<Entity>> groups = new ArrayList<>(byKey.values());
+        List<Map<String, Object>> rows = new ArrayList<>(groups.size());
+        for (List<Entity> group : groups) {
+            Entity entity = group.get(group.size() - 1);
+            Map<String, Object> props = properties(classInfo, entity);
+            Map<String, Object> key = new HashMap<>();
+            for (String property : keyProperties) {
+                String name = classInfo.getFieldInfo(property).property();
+                key.put(name, props.get(name));
+            }
+            Map<String, Object> row = new HashMap<>();
+            row.put("index", rows.size());
+            row.put("key", key);
+            row.put("props", props);
+            if (relationship != null)
+                row.put("related", ((Entity) classInfo.relationshipFieldByName(relationship).read(entity)).getId());
+            rows.add(row);
+        }
+        run(merge.toString(), rows, groups);
+
+        rows = new ArrayList<>(matched.size());
+        List<List<Entity>> singles = new ArrayList<>(matched.size());
+        for (Entity entity : matched) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("index", rows.size());
+            row.put("id", entity.getId());
+            row.put("props", properties(classInfo, entity));
+            rows.add(row);
+            singles.add(Collections.singletonList(entity));
+        }
+        run("UNWIND $rows AS row MATCH (n) WHERE id(n) = row.id SET n += row.props " +
+                "RETURN row.index AS index, id(n) AS id", rows, singles);
+    }
+
+    private void upsertRelationships(ClassInfo classInfo, List<Entity> entities) {
+        for (FieldInfo field : classInfo.relationshipFields()) {
+            String cypher = "UNWIND $rows AS row MATCH (n) WHERE id(n) = row.from ";
+            if (field.isScalar())
+                cypher += "OPTIONAL MATCH (n)" + arrow(field, "old") + "(other) WHERE NOT id(other) IN row.to DELETE old ";
+            cypher += "WITH DISTINCT n, row UNWIND row.to AS to MATCH (related) WHERE id(related) = to " +
+                    "MERGE (n)" + arrow(field, "") + "(related)";
+
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Entity entity : entities) {
+                List<Long> to = new ArrayList<>();
+                for (Entity related : related(field, entity)) {
+                    if (related.getId() != null)
+                        to.add(related.getId());
+                }
+                if (entity.getId() == null || to.isEmpty())
+                    continue;
+                Map<String, Object> row = new HashMap<>();
+                row.put("from", entity.getId());
+                row.put("to", to);
+                rows.add(row);
+            }
+            run(cypher, rows, null);
+        }
+    }
+
+    /**
+     * Runs a statement over the rows, one transaction per batch, or all in
+     * the transaction that is already open. If the statement returns node
+     * ids by row index, each group of entities receives the id of its row.
+     */
+    private void run(String cypher, List<Map<String, Object>> rows, List<List<Entity>> groups) {
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<Map<String, Object>> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+            Transaction tx = session.getTransaction() == null ? session.beginTransaction() : null;
+            try {
+                Iterable<Map<String, Object>> results =
+                        session.query(cypher, Collections.singletonMap("rows", batch)).queryResults();
+                if (tx != null)
+                    tx.commit();
+                if (groups == null)
+                    continue;
+                for (Map<String, Object> result : results) {
+                    Long id = ((Number) result.get("id")).longValue();
+                    for (Entity entity : groups.get(((Number) result.get("index")).intValue())) {
+                        entity.setId(id);
+                    }
+                }
+            } finally {
+                if (tx != null)
+                    tx.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the properties of an entity as they are stored, with converters applied.
+     */
+    private static Map<String, Object> properties(ClassInfo classInfo, Entity entity) {
+        FieldInfo identity = classInfo.identityFieldOrNull();
+        Map<String, Object> properties = new HashMap<>();
+        for (FieldInfo field : classInfo.propertyFields()) {
+            if (field != identity)
+                properties.put(field.property(), field.readProperty(entity));
+        }
+        return properties;
+    }
+
+    private static String labels(ClassInfo classInfo) {
+        StringBuilder labels = new StringBuilder();
+        for (String label : classInfo.staticLabels()) {
+            labels.append(":`").append(label).append('`');
+        }
+        return labels.toString();
+    }
+
+    private static String arrow(FieldInfo field, String variable) {
+        String type = "[" + variable + ":`" + field.relationshipType() + "`]";
+        return Relationship.INCOMING.equals(field.relationshipDirection()) ? "<-" + type + "-" : "-" + type + "->";
+    }
+}
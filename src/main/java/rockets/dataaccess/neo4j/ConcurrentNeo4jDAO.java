@@ -0,0 +1,212 @@
+package rockets.dataaccess.neo4j;
+
+import com.google.common.cache.CacheStats;
+import org.neo4j.ogm.session.SessionFactory;
+import org.neo4j.ogm.transaction.Transaction;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.Query;
+import rockets.model.Entity;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A {@link DAO} that can be shared between threads. OGM sessions are not
+ * thread-safe, so instead of wrapping one session this DAO opens a fresh
+ * session from the {@link SessionFactory} for every unit of work, which is
+ * confined to the calling thread and discarded afterwards. Every call is its
+ * own unit of work: reads run in a read-only transaction and writes commit
+ * their own, so readers never wait for writers. Callers that need several
+ * calls to commit together use {@link #inTransaction(Function)}.
+ * <p>
+ * All sessions share one natural key cache, so an entity saved on one
+ * thread is found without a lookup on the others.
+ */
+public class ConcurrentNeo4jDAO implements DAO {
+    private final SessionFactory sessionFactory;
+
+    private final NaturalKeyCache identityCache;
+
+    private volatile int batchSize = Neo4jDAO.DEFAULT_BATCH_SIZE;
+
+    private volatile boolean lazy;
+
+    public ConcurrentNeo4jDAO(SessionFactory sessionFactory) {
+        this(sessionFactory, Neo4jDAO.DEFAULT_IDENTITY_CACHE_SIZE);
+    }
+
+    public ConcurrentNeo4jDAO(SessionFactory sessionFactory, long identityCacheSize) {
+        this.sessionFactory = sessionFactory;
+        this.identityCache = new NaturalKeyCache(identityCacheSize);
+    }
+
+    /**
+     * Installs the {@link NaturalKeySchema} and returns a DAO on the session
+     * factory, so that natural key lookups are index seeks from the first save.
+     *
+     * @param sessionFactory the session factory of the database.
+     * @throws IllegalStateException if the schema cannot be brought online.
+     */
+    public static ConcurrentNeo4jDAO open(SessionFactory sessionFactory) {
+        NaturalKeySchema.install(sessionFactory);
+        return new ConcurrentNeo4jDAO(sessionFactory);
+    }
+
+    /**
+     * Runs a unit of work in one read-write transaction on a session of its
+     * own. The transaction commits if the work returns and rolls back if it
+     * throws; writes made through the given DAO join it instead of
+     * committing on their own. The natural keys the work saves are shared
+     * with other units of work only once the transaction has committed.
+     *
+     * @param work the unit of work.
+     * @return what the work returns.
+     */
+    public <R> R inTransaction(Function<? super Neo4jDAO, R> work) {
+        return run(Transaction.Type.READ_WRITE, work);
+    }
+
+    private <R> R read(Function<? super Neo4jDAO, R> work) {
+        return run(Transaction.Type.READ_ONLY, work);
+    }
+
+    private <R> R run(Transaction.Type type, Function<? super Neo4jDAO, R> work) {
+        // writes may be rolled back, so their ids stay with the unit of work until it commits
+        NaturalKeyCache cache = type == Transaction.Type.READ_WRITE ? identityCache.unitOfWork() : identityCache;
+        Neo4jDAO dao = newDAO(cache);
+        Transaction tx = dao.getSession().beginTransaction(type);
+        try {
+            R result = work.apply(dao);
+            tx.commit();
+            cache.publish();
+            return result;
+        } catch (RuntimeException e) {
+            tx.rollback();
+            throw e;
+        } finally {
+            tx.close();
+        }
+    }
+
+    private Neo4jDAO newDAO() {
+        return newDAO(identityCache);
+    }
+
+    private Neo4jDAO newDAO(NaturalKeyCache cache) {
+        Neo4jDAO dao = new Neo4jDAO(sessionFactory.openSession(), cache);
+        dao.setBatchSize(batchSize);
+        dao.setLazy(lazy);
+        return dao;
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        return read(dao -> dao.load(clazz, id));
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id, int depth) {
+        return read(dao -> dao.load(clazz, id, depth));
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        return newDAO().createOrUpdate(entity);
+    }
+
+    /**
+     * Saves the entities in batches, one transaction per batch.
+     *
+     * @see Neo4jDAO#createOrUpdateAll(Collection)
+     */
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        return newDAO().createOrUpdateAll(entities);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return read(dao -> dao.loadAll(clazz));
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, int depth) {
+        return read(dao -> dao.loadAll(clazz, depth));
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return read(dao -> dao.loadAll(clazz, ids));
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids, int depth) {
+        return read(dao -> dao.loadAll(clazz, ids, depth));
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query) {
+        return read(dao -> dao.find(query));
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query, int depth) {
+        return read(dao -> dao.find(query, depth));
+    }
+
+    /**
+     * Iterates over the entities on a session that belongs to the iterator,
+     * so the iterator must not be shared between threads.
+     */
+    @Override
+    public <T extends Entity> Iterator<T> iterate(Class<T> clazz, int pageSize, int depth) {
+        return newDAO().iterate(clazz, pageSize, depth);
+    }
+
+    @Override
+    public Long findIdByNaturalKey(Entity entity) {
+        return read(dao -> dao.findIdByNaturalKey(entity));
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        inTransaction(dao -> {
+            dao.delete(entity);
+            return null;
+        });
+    }
+
+    /**
+     * Sets the number of rows written per statement and transaction by
+     * {@link #createOrUpdateAll(Collection)}.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batch size must be positive");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Makes loads defer fetching payloads and rockets until they are first
+     * accessed, on the session the entity was loaded on. Such a session
+     * belongs to the entity, so lazy entities must not be shared between threads.
+     *
+     * @see Neo4jDAO#setLazy(boolean)
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Returns the hit and miss counts of the shared natural key cache.
+     */
+    public CacheStats getIdentityCacheStats() {
+        return identityCache.stats();
+    }
+
+    public void clearIdentityCache() {
+        identityCache.clear();
+    }
+}
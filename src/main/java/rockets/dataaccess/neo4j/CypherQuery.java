@@ -0,0 +1,179 @@
+package rockets.dataaccess.neo4j;
+
+import org.neo4j.ogm.annotation.Relationship;
+import org.neo4j.ogm.metadata.ClassInfo;
+import org.neo4j.ogm.metadata.FieldInfo;
+import org.neo4j.ogm.typeconversion.AttributeConverter;
+import rockets.dataaccess.Query;
+import rockets.model.Entity;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Translates a {@link Query} into a parameterized Cypher statement that
+ * returns the ids of the matching nodes in id order. Properties are compared
+ * as they are stored, with converters applied, and related nodes are
+ * reached through optional matches so that conditions on missing
+ * relationships behave as in {@link Query#matches(Entity)}.
+ * <p>
+ * Numbers stored as strings, such as launch prices, are compared with
+ * {@code toFloat}. Rounding to doubles keeps order, so that no match is lost,
+ * but it can let through values that only differ beyond double precision;
+ * those conditions are left to be checked again on the loaded entities,
+ * together with ranges on other stored strings, which do not sort like
+ * their values.
+ */
+class CypherQuery {
+    private static final String NODE = "n";
+
+    private final List<String> matches = new ArrayList<>();
+
+    private final List<String> nodeConditions = new ArrayList<>();
+
+    private final List<String> relatedConditions = new ArrayList<>();
+
+    private final Map<String, Object> parameters = new HashMap<>();
+
+    private final List<Query.Condition> recheck = new ArrayList<>();
+
+    /**
+     * The variables of the related nodes, by the field names on the way to them.
+     */
+    private final Map<List<String>, String> variables = new HashMap<>();
+
+    private final String label;
+
+    CypherQuery(Query<?> query) {
+        this.label = query.getEntityType().getSimpleName();
+        for (Query.Condition condition : query.getConditions()) {
+            add(query.getEntityType(), condition);
+        }
+    }
+
+    private void add(Class<?> entityType, Query.Condition condition) {
+        List<Field> path = condition.getPath();
+        int hops = condition.isRelationship() ? path.size() : path.size() - 1;
+        String variable = NODE;
+        ClassInfo owner = BulkUpsert.metaData().classInfo(entityType.getName());
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < hops; i++) {
+            Field field = path.get(i);
+            names.add(field.getName());
+            String from = variable;
+            FieldInfo relationship = owner.relationshipFieldByName(field.getName());
+            variable = variables.computeIfAbsent(new ArrayList<>(names), key -> {
+                String related = "r" + variables.size();
+                matches.add("OPTIONAL MATCH (" + from + ")" + arrow(relationship) + "(" + related + ")");
+                return related;
+            });
+            owner = BulkUpsert.metaData().classInfo(field.getType().getName());
+        }
+        List<String> conditions = variable.equals(NODE) ? nodeConditions : relatedConditions;
+        String parameter = "p" + parameters.size();
+        if (condition.isRelationship()) {
+            conditions.add(compare("id(" + variable + ")", condition, parameter, value -> value));
+            return;
+        }
+        Field field = path.get(path.size() - 1);
+        FieldInfo identity = owner.identityFieldOrNull();
+        if (identity != null && identity.getName().equals(field.getName())) {
+            conditions.add(compare("id(" + variable + ")", condition, parameter, value -> value));
+            return;
+        }
+        FieldInfo property = owner.propertyFieldByName(field.getName());
+        String expression = variable + ".`" + property.property() + "`";
+        if (!property.hasPropertyConverter()) {
+            conditions.add(compare(expression, condition, parameter, value -> value));
+        } else if (Number.class.isAssignableFrom(field.getType())) {
+            conditions.add(compare("toFloat(" + expression + ")", condition, parameter, value -> ((Number) value).doubleValue()));
+            recheck.add(condition);
+        } else if (condition.getOperator() != Query.Operator.RANGE || LocalDate.class.equals(field.getType())) {
+            // ISO dates sort chronologically
+            @SuppressWarnings("unchecked")
+            AttributeConverter<Object, Object> converter = property.getPropertyConverter();
+            conditions.add(compare(expression, condition, parameter, converter::toGraphProperty));
+        } else {
+            recheck.add(condition);
+        }
+    }
+
+    private String compare(String expression, Query.Condition condition, String parameter, Function<Object, Object> toGraph) {
+        switch (condition.getOperator()) {
+            case RANGE:
+                List<String> bounds = new ArrayList<>();
+                if (condition.getFrom() != null) {
+                    parameters.put(parameter + "from", toGraph.apply(condition.getFrom()));
+                    bounds.add(expression + " >= $" + parameter + "from");
+                }
+                if (condition.getTo() != null) {
+                    parameters.put(parameter + "to", toGraph.apply(condition.getTo()));
+                    bounds.add(expression + " <= $" + parameter + "to");
+                }
+                return String.join(" AND ", bounds);
+            case EQUALS:
+                Object value = condition.getValues().get(0);
+                if (value == null)
+                    return expression + " IS NULL";
+                parameters.put(parameter, toGraph.apply(value));
+                return expression + " = $" + parameter;
+            default:
+                List<Object> values = new ArrayList<>(condition.getValues().size());
+                for (Object each : condition.getValues()) {
+                    values.add(toGraph.apply(each));
+                }
+                parameters.put(parameter, values);
+                return expression + " IN $" + parameter;
+        }
+    }
+
+    private static String arrow(FieldInfo field) {
+        String type = "[:`" + field.relationshipType() + "`]";
+        return Relationship.INCOMING.equals(field.relationshipDirection()) ? "<-" + type + "-" : "-" + type + "->";
+    }
+
+    /**
+     * Returns the statement, which returns the matching ids in a column named {@code id}.
+     */
+    String getCypher() {
+        StringBuilder cypher = new StringBuilder("MATCH (").append(NODE).append(":`").append(label).append("`)");
+        if (!nodeConditions.isEmpty())
+            cypher.append(" WHERE ").append(String.join(" AND ", nodeConditions));
+        for (String match : matches) {
+            cypher.append(' ').append(match);
+        }
+        if (!relatedConditions.isEmpty()) {
+            cypher.append(" WITH ").append(NODE);
+            for (String variable : variables.values()) {
+                cypher.append(", ").append(variable);
+            }
+            cypher.append(" WHERE ").append(String.join(" AND ", relatedConditions));
+        }
+        return cypher.append(" RETURN DISTINCT id(").append(NODE).append(") AS id ORDER BY id").toString();
+    }
+
+    Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the conditions the statement only approximates or leaves out,
+     * which must be checked on the loaded entities.
+     */
+    List<Query.Condition> getRecheck() {
+        return recheck;
+    }
+
+    /**
+     * Returns the depth entities must be loaded at for the conditions to be checked again.
+     */
+    int getRecheckDepth() {
+        int depth = 0;
+        for (Query.Condition condition : recheck) {
+            depth = Math.max(depth, condition.getPath().size() - 1);
+        }
+        return depth;
+    }
+}
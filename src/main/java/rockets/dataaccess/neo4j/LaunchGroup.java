@@ -0,0 +1,70 @@
+package rockets.dataaccess.neo4j;
+
+import java.math.BigDecimal;
+
+/**
+ * One row of an aggregation query run inside Neo4j: a group of launches
+ * sharing a key (a node id or a property value) with the counters computed
+ * over them. Each query fills the counters that make sense for it and leaves
+ * the others at zero.
+ *
+ * @param <K> the type of the group key.
+ */
+public class LaunchGroup<K> {
+    private final K key;
+
+    private final long launches;
+
+    private final long successes;
+
+    private final long failures;
+
+    private final long payloads;
+
+    private final BigDecimal revenue;
+
+    private final long firstLaunchId;
+
+    public LaunchGroup(K key, long launches, long successes, long failures, long payloads,
+                       BigDecimal revenue, long firstLaunchId) {
+        this.key = key;
+        this.launches = launches;
+        this.successes = successes;
+        this.failures = failures;
+        this.payloads = payloads;
+        this.revenue = revenue;
+        this.firstLaunchId = firstLaunchId;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    public long getLaunches() {
+        return launches;
+    }
+
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getPayloads() {
+        return payloads;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    /**
+     * Returns the lowest id among the launches of the group, which orders
+     * groups by when they were first seen.
+     */
+    public long getFirstLaunchId() {
+        return firstLaunchId;
+    }
+}
@@ -0,0 +1,202 @@
+package rockets.dataaccess.neo4j;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import rockets.dataaccess.NaturalKeys;
+import rockets.model.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A bounded map from the natural keys of stored entities to their node ids,
+ * so that saving an entity that was saved or loaded before does not have to
+ * look it up in the database first. The least recently used keys are
+ * evicted once the cache is full.
+ * <p>
+ * Each id is cached under one key only: when an entity is saved again with
+ * a changed key, the old key is dropped so that it cannot be matched by a
+ * new entity. The cache only knows about writes made through its DAO, so it
+ * must be cleared when the database is changed behind the DAO's back.
+ */
+class NaturalKeyCache {
+    private final Cache<List<Object>, Long> ids;
+
+    private final Map<Long, List<Object>> keys = new ConcurrentHashMap<>();
+
+    /**
+     * The cached keys that include another entity's key, by that key, such
+     * as the keys of the launches of each rocket.
+     */
+    private final Map<List<?>, Set<List<Object>>> dependents = new ConcurrentHashMap<>();
+
+    private final long maximumSize;
+
+    NaturalKeyCache(long maximumSize) {
+        this.maximumSize = maximumSize;
+        RemovalListener<List<Object>, Long> removed = removal -> {
+            keys.remove(removal.getValue(), removal.getKey());
+            // a replaced key is still cached, under its new id
+            if (removal.getCause() != RemovalCause.REPLACED)
+                unlink(removal.getKey());
+        };
+        ids = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .removalListener(removed)
+                .build();
+    }
+
+    /**
+     * Returns the id of the node that an entity's natural key was last seen
+     * on, or null if the key is not cached or the entity has none.
+     */
+    Long idOf(Entity entity) {
+        List<Object> key = NaturalKeys.keyOf(entity);
+        return key == null ? null : ids.getIfPresent(key);
+    }
+
+    /**
+     * Remembers the id of a stored entity under its natural key.
+     */
+    void put(Entity entity) {
+        Long id = entity.getId();
+        List<Object> key = NaturalKeys.keyOf(entity);
+        if (id != null && key != null)
+            put(key, id);
+    }
+
+    void put(List<Object> key, Long id) {
+        // linked first, so that a key evicted as soon as it is put is unlinked again
+        link(key);
+        // replacing an entry drops its reverse mapping, so the id is mapped back afterwards
+        ids.put(key, id);
+        List<Object> previous = keys.put(id, key);
+        if (previous != null && !previous.equals(key))
+            ids.invalidate(previous);
+    }
+
+    /**
+     * Forgets a deleted entity, along with the keys of entities whose own
+     * key refers to it, such as the launches of a deleted rocket.
+     */
+    void remove(Entity entity) {
+        remove(NaturalKeys.keyOf(entity), entity.getId());
+    }
+
+    void remove(List<Object> key, Long id) {
+        if (id != null) {
+            List<Object> cached = keys.get(id);
+            if (cached != null)
+                ids.invalidate(cached);
+        }
+        if (key != null) {
+            ids.invalidate(key);
+            Set<List<Object>> dependent = dependents.get(key);
+            if (dependent != null)
+                ids.invalidateAll(new ArrayList<>(dependent));
+        }
+    }
+
+    private void link(List<Object> key) {
+        for (Object component : key) {
+            if (component instanceof List)
+                dependents.computeIfAbsent((List<?>) component, k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void unlink(List<Object> key) {
+        for (Object component : key) {
+            if (component instanceof List)
+                dependents.computeIfPresent((List<?>) component, (k, dependent) -> {
+                    dependent.remove(key);
+                    return dependent.isEmpty() ? null : dependent;
+                });
+        }
+    }
+
+    void clear() {
+        ids.invalidateAll();
+    }
+
+    /**
+     * Returns a cache for one unit of work, which sees this cache's entries
+     * but keeps its own changes to itself until they are published.
+     */
+    NaturalKeyCache unitOfWork() {
+        return new UnitOfWork(this, maximumSize);
+    }
+
+    /**
+     * Applies the changes of a unit of work to the cache it was started
+     * from, once its transaction has committed. A shared cache has nothing
+     * to publish.
+     */
+    void publish() {
+    }
+
+    /**
+     * The entries of one unit of work, which may still be rolled back.
+     * Lookups fall back to the shared cache, except for ids the unit of work
+     * has re-keyed, and not at all once it has removed or cleared entries,
+     * as the shared cache would still hold them.
+     */
+    private static final class UnitOfWork extends NaturalKeyCache {
+        private final NaturalKeyCache shared;
+
+        private final List<Consumer<NaturalKeyCache>> changes = new ArrayList<>();
+
+        private boolean hidesShared;
+
+        private UnitOfWork(NaturalKeyCache shared, long maximumSize) {
+            super(maximumSize);
+            this.shared = shared;
+        }
+
+        @Override
+        Long idOf(Entity entity) {
+            Long id = super.idOf(entity);
+            if (id != null || hidesShared)
+                return id;
+            id = shared.idOf(entity);
+            return id != null && super.keys.containsKey(id) ? null : id;
+        }
+
+        @Override
+        void put(List<Object> key, Long id) {
+            super.put(key, id);
+            changes.add(cache -> cache.put(key, id));
+        }
+
+        @Override
+        void remove(List<Object> key, Long id) {
+            super.remove(key, id);
+            hidesShared = true;
+            changes.add(cache -> cache.remove(key, id));
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            hidesShared = true;
+            changes.add(NaturalKeyCache::clear);
+        }
+
+        @Override
+        void publish() {
+            changes.forEach(change -> change.accept(shared));
+            changes.clear();
+        }
+    }
+
+    CacheStats stats() {
+        return ids.stats();
+    }
+}
@@ -0,0 +1,87 @@
+package rockets.dataaccess.neo4j;
+
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+import rockets.dataaccess.NaturalKeys;
+import rockets.model.*;
+
+import java.util.*;
+
+/**
+ * Creates the schema that natural key lookups rely on, so that finding an
+ * existing entity is an index seek rather than a scan of its label:
+ * <ul>
+ * <li>a uniqueness constraint for keys made of one property, such as the
+ * email of a {@link User};</li>
+ * <li>a composite index on the key properties of every other class. Neo4j
+ * community edition has no composite uniqueness constraints, and the key of
+ * a {@link Launch} includes its launch vehicle, which no index can cover.</li>
+ * </ul>
+ * Creating an index or constraint that already exists does nothing, so
+ * {@link #install(SessionFactory)} runs on every start, whenever a DAO is
+ * opened with {@link Neo4jDAO#open(SessionFactory)} or
+ * {@link ConcurrentNeo4jDAO#open(SessionFactory)}. It waits for the indexes
+ * to come online and fails if any of them is missing afterwards.
+ */
+public final class NaturalKeySchema {
+    private static final List<Class<? extends Entity>> KEYED_CLASSES = Arrays.asList(
+            Rocket.class, User.class, Launch.class, LaunchServiceProvider.class, Payload.class, RocketFamily.class);
+
+    private static final int AWAIT_SECONDS = 60;
+
+    private NaturalKeySchema() {
+    }
+
+    /**
+     * Creates the missing indexes and constraints and checks that all of them are online.
+     *
+     * @param sessionFactory the session factory of the database.
+     * @throws IllegalStateException if an index or constraint is not online after creation.
+     */
+    public static void install(SessionFactory sessionFactory) {
+        Session session = sessionFactory.openSession();
+        for (Class<? extends Entity> clazz : KEYED_CLASSES) {
+            session.query(statement(clazz), Collections.emptyMap());
+        }
+        session.query("CALL db.awaitIndexes(" + AWAIT_SECONDS + ")", Collections.emptyMap());
+        verify(session);
+    }
+
+    /**
+     * Checks that every index and constraint exists and is online.
+     *
+     * @param session a session of the database.
+     * @throws IllegalStateException naming the first one that is not.
+     */
+    public static void verify(Session session) {
+        Map<String, Object> online = new HashMap<>();
+        for (Map<String, Object> index : session.query("CALL db.indexes()", Collections.emptyMap()).queryResults()) {
+            if ("ONLINE".equals(index.get("state")))
+                online.put(index.get("description").toString(), index.get("type"));
+        }
+        for (Class<? extends Entity> clazz : KEYED_CLASSES) {
+            String description = "INDEX ON :" + clazz.getSimpleName() + "(" + String.join(", ", NaturalKeys.properties(clazz)) + ")";
+            if (!online.containsKey(description))
+                throw new IllegalStateException("natural key index is not online: " + description);
+            // a uniqueness constraint is backed by a unique index
+            if (isUnique(clazz) && !"node_unique_property".equals(online.get(description)))
+                throw new IllegalStateException("natural key is not unique: " + description);
+        }
+    }
+
+    private static boolean isUnique(Class<?> clazz) {
+        return NaturalKeys.properties(clazz).size() == 1 && NaturalKeys.relationship(clazz) == null;
+    }
+
+    private static String statement(Class<?> clazz) {
+        String label = clazz.getSimpleName();
+        List<String> properties = NaturalKeys.properties(clazz);
+        if (isUnique(clazz))
+            return "CREATE CONSTRAINT ON (n:`" + label + "`) ASSERT n.`" + properties.get(0) + "` IS UNIQUE";
+        StringJoiner columns = new StringJoiner(", ", "(", ")");
+        for (String property : properties) {
+            columns.add("`" + property + "`");
+        }
+        return "CREATE INDEX ON :`" + label + "`" + columns;
+    }
+}
@@ -1,96 +1,540 @@
 package rockets.dataaccess.neo4j;
 
-import com.google.common.collect.Sets;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
 import org.neo4j.ogm.cypher.Filter;
 import org.neo4j.ogm.cypher.Filters;
+import org.neo4j.ogm.metadata.ClassInfo;
+import org.neo4j.ogm.metadata.FieldInfo;
 import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
 import org.neo4j.ogm.transaction.Transaction;
 import rockets.dataaccess.DAO;
+import rockets.dataaccess.NaturalKeys;
+import rockets.dataaccess.PageIterator;
+import rockets.dataaccess.Query;
 import rockets.model.*;
 
-import java.util.Collection;
+import java.math.BigDecimal;
+import java.util.*;
 
 import static org.neo4j.ogm.cypher.ComparisonOperator.EQUALS;
 
 public class Neo4jDAO implements DAO {
+    /**
+     * The depth of {@link #load(Class, Long)} and {@link #loadAll(Class)}.
+     */
     private static final int DEPTH_ENTITY = 1;
 
+    /**
+     * Relationships that lazy loads leave to be fetched on first access.
+     */
+    private static final List<String> LAZY_RELATIONSHIPS = Arrays.asList("PAYLOADS", "ROCKETS");
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    public static final long DEFAULT_IDENTITY_CACHE_SIZE = 10_000;
+
     private Session session;
 
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private boolean lazy;
+
+    private final NaturalKeyCache identityCache;
+
     public Neo4jDAO(Session session) {
+        this(session, DEFAULT_IDENTITY_CACHE_SIZE);
+    }
+
+    /**
+     * @param session           the OGM session.
+     * @param identityCacheSize the number of natural keys whose ids are
+     *                          remembered, so that saving a known entity
+     *                          again does not look it up first.
+     */
+    public Neo4jDAO(Session session, long identityCacheSize) {
+        this(session, new NaturalKeyCache(identityCacheSize));
+    }
+
+    Neo4jDAO(Session session, NaturalKeyCache identityCache) {
         this.session = session;
+        this.identityCache = identityCache;
+    }
+
+    /**
+     * Installs the {@link NaturalKeySchema} and opens a DAO on a new session,
+     * so that natural key lookups are index seeks from the first save.
+     *
+     * @param sessionFactory the session factory of the database.
+     * @throws IllegalStateException if the schema cannot be brought online.
+     */
+    public static Neo4jDAO open(SessionFactory sessionFactory) {
+        NaturalKeySchema.install(sessionFactory);
+        return new Neo4jDAO(sessionFactory.openSession());
+    }
+
+    Session getSession() {
+        return session;
     }
 
     @Override
     public <T extends Entity> T load(Class<T> clazz, Long id) {
-        return session.load(clazz, id, DEPTH_ENTITY);
+        return load(clazz, id, DEPTH_ENTITY);
     }
 
     @Override
-    public <T extends Entity> T createOrUpdate(T entity) {
-        Class clazz = entity.getClass();
+    public <T extends Entity> T load(Class<T> clazz, Long id, int depth) {
+        T entity;
+        if (lazy) {
+            Iterator<T> loaded = loadLazily(clazz, Collections.singletonList(id), depth).iterator();
+            entity = loaded.hasNext() ? loaded.next() : null;
+        } else {
+            entity = session.load(clazz, id, depth);
+        }
+        if (entity != null)
+            identityCache.put(entity);
+        return entity;
+    }
+
+    /**
+     * Makes loads leave the payloads of launches and the rockets of launch
+     * service providers to be fetched when {@link Launch#getPayload()} and
+     * {@link LaunchServiceProvider#getRockets()} are first called, so that
+     * queries that only look at their other fields do not load them. Each
+     * fetch is a query of its own on this DAO's session.
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
 
-        T existingEntity = findExistingEntity(entity, clazz);
-        if (null != existingEntity) {
-            entity.setId(existingEntity.getId());
+    /**
+     * Loads entities like OGM does at a depth, except that the paths loaded
+     * stop at lazy relationships, whose fetching is deferred instead.
+     *
+     * @param ids the ids of the entities, or null for all entities of the class.
+     */
+    private <T extends Entity> Collection<T> loadLazily(Class<T> clazz, Collection<Long> ids, int depth) {
+        String cypher = "MATCH (n:`" + clazz.getSimpleName() + "`) " +
+                (ids == null ? "" : "WHERE id(n) IN $ids ") +
+                "WITH n MATCH p=(n)-[*0.." + (depth < 0 ? "" : depth) + "]-() " +
+                "WHERE NONE(r IN relationships(p) WHERE type(r) IN $lazy) RETURN p";
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("ids", ids);
+        parameters.put("lazy", LAZY_RELATIONSHIPS);
+        // entities of the class further down the paths are mapped too, but not asked for
+        Set<Long> wanted = ids == null ? null : new HashSet<>(ids);
+        Map<Long, T> entities = new LinkedHashMap<>();
+        for (T entity : session.query(clazz, cypher, parameters)) {
+            if (wanted == null || wanted.contains(entity.getId()))
+                entities.put(entity.getId(), entity);
         }
-        Transaction tx = session.beginTransaction();
-        session.save(entity);
-        tx.commit();
+        Map<Long, Integer> payloadCounts = Launch.class.equals(clazz) && !entities.isEmpty()
+                ? countPayloads(ids) : Collections.emptyMap();
+        Set<Entity> deferred = Collections.newSetFromMap(new IdentityHashMap<>());
+        entities.values().forEach(entity -> defer(entity, payloadCounts, deferred));
+        return entities.values();
+    }
+
+    /**
+     * Counts the payloads of launches without loading them, so that the
+     * count of a deferred set is known before it is fetched.
+     *
+     * @param ids the ids of the launches, or null for all launches.
+     */
+    private Map<Long, Integer> countPayloads(Collection<Long> ids) {
+        String cypher = "MATCH (n:`Launch`) " +
+                (ids == null ? "" : "WHERE id(n) IN $ids ") +
+                "OPTIONAL MATCH (n)-[:`PAYLOADS`]->(p:`Payload`) RETURN id(n) AS id, count(p) AS payloads";
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Map<String, Object> row : session.query(cypher, Collections.singletonMap("ids", ids)).queryResults()) {
+            counts.put(((Number) row.get("id")).longValue(), ((Number) row.get("payloads")).intValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Defers fetching the lazy relationships of an entity and of the
+     * entities loaded along with it.
+     */
+    private void defer(Entity entity, Map<Long, Integer> payloadCounts, Set<Entity> deferred) {
+        if (entity == null || entity.getId() == null || !deferred.add(entity))
+            return;
+        Long id = entity.getId();
+        if (entity instanceof Launch) {
+            Launch launch = (Launch) entity;
+            launch.setPayloadLoader(() -> fetch(Payload.class, id, "PAYLOADS"), payloadCounts.getOrDefault(id, -1));
+            defer(launch.getLaunchVehicle(), payloadCounts, deferred);
+            defer(launch.getLaunchServiceProvider(), payloadCounts, deferred);
+        } else if (entity instanceof LaunchServiceProvider) {
+            ((LaunchServiceProvider) entity).setRocketLoader(() -> fetch(Rocket.class, id, "ROCKETS"));
+        } else if (entity instanceof Rocket) {
+            defer(((Rocket) entity).getManufacturer(), payloadCounts, deferred);
+        }
+    }
+
+    /**
+     * Fetches the entities at the end of an entity's relationships of a type.
+     * The relationships are returned too, so the session knows about them.
+     */
+    private <T extends Entity> Set<T> fetch(Class<T> clazz, Long id, String type) {
+        String cypher = "MATCH p=(n)-[:`" + type + "`]->(:`" + clazz.getSimpleName() + "`) WHERE id(n) = $id RETURN p";
+        Set<T> related = new LinkedHashSet<>();
+        for (T entity : session.query(clazz, cypher, Collections.singletonMap("id", id))) {
+            related.add(entity);
+        }
+        return related;
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        Long existingId = identityCache.idOf(entity);
+        if (null == existingId) {
+            Entity existingEntity = findExistingEntity(entity, entity.getClass());
+            if (null != existingEntity)
+                existingId = existingEntity.getId();
+        }
+        if (null != existingId) {
+            entity.setId(existingId);
+        }
+        if (null != session.getTransaction()) {
+            // join the unit of work that is already open
+            session.save(entity);
+        } else {
+            Transaction tx = session.beginTransaction();
+            session.save(entity);
+            tx.commit();
+        }
+        identityCache.put(entity);
         return entity;
     }
 
-    private <T extends Entity> T findExistingEntity(Entity entity, Class clazz) {
-        Entity existingEntity = null;
+    /**
+     * Creates or updates the entities and everything reachable from them in
+     * batches of {@code UNWIND ... MERGE} statements keyed on the same
+     * natural keys that single saves look entities up by, with one
+     * transaction per batch. Entities without a natural key are saved one at
+     * a time.
+     */
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        for (Entity saved : new BulkUpsert(session, batchSize).upsert(entities, this::createOrUpdate)) {
+            identityCache.put(saved);
+        }
+        return entities;
+    }
+
+    /**
+     * Sets the number of rows written per statement and transaction by
+     * {@link #createOrUpdateAll(Collection)}, and the number of ids loaded
+     * per query by {@link #loadAll(Class, Collection, int)}.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batch size must be positive");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the hit and miss counts of the natural key to id cache.
+     */
+    public CacheStats getIdentityCacheStats() {
+        return identityCache.stats();
+    }
+
+    /**
+     * Forgets all cached ids. Needed after the database is changed other
+     * than through this DAO.
+     */
+    public void clearIdentityCache() {
+        identityCache.clear();
+    }
+
+    /**
+     * Looks an entity up by its natural key (see {@link NaturalKeys}). A
+     * related entity in the key is matched on its own key properties.
+     */
+    private <T extends Entity> T findExistingEntity(Entity entity, Class<T> clazz) {
+        // without every key value there is nothing to match on
+        if (NaturalKeys.keyOf(entity) == null)
+            return null;
+        ClassInfo classInfo = BulkUpsert.metaData().classInfo(clazz.getName());
         Filters filters = new Filters();
-        Collection<? extends Entity> collection = Sets.newLinkedHashSet();
-        if (clazz.equals(Rocket.class)) {
-            Rocket rocket = (Rocket) entity;
-            filters.add(new Filter("name", EQUALS, rocket.getName()))
-                    .and(new Filter("country", EQUALS, rocket.getCountry()));
-            collection = session.loadAll(Rocket.class, filters);
-        } else if (clazz.equals(User.class)) {
-            User user = (User) entity;
-            filters.add(new Filter("email", EQUALS, user.getEmail()));
-            collection = session.loadAll(User.class, filters);
-        } else if (clazz.equals(Launch.class)) {
-            Launch launch = (Launch) entity;
-            filters.add(new Filter("launchDate", EQUALS, launch.getLaunchDate()))
-                    .and(new Filter("launchVehicle", EQUALS, launch.getLaunchVehicle()))
-                    .and(new Filter("launchSite", EQUALS, launch.getLaunchSite()))
-                    .and(new Filter("launchOutcome", EQUALS, launch.getLaunchOutcome()));
-            collection = session.loadAll(Launch.class, filters);
-        } else if (clazz.equals(LaunchServiceProvider.class)) {
-            LaunchServiceProvider lsp = (LaunchServiceProvider) entity;
-            filters.add(new Filter("name", EQUALS, lsp.getName()))
-                    .and(new Filter("yearFounded", EQUALS, lsp.getYearFounded()))
-                    .and(new Filter("country", EQUALS, lsp.getCountry()));
-            collection = session.loadAll(LaunchServiceProvider.class, filters);
-        } else if (clazz.equals(Payload.class)) {
-            Payload payload = (Payload) entity;
-            filters.add(new Filter("name", EQUALS, payload.getName()))
-                    .and(new Filter("type", EQUALS, payload.getType()));
-            collection = session.loadAll(Payload.class, filters);
-        } else if (clazz.equals(RocketFamily.class)) {
-            RocketFamily rocketFamily = (RocketFamily) entity;
-            filters.add(new Filter("familyName", EQUALS, rocketFamily.getFamilyName()))
-                    .and(new Filter("country", EQUALS, rocketFamily.getCountry()))
-                    .and(new Filter("develop_OR", EQUALS, rocketFamily.getDevelop_OR()));
-            collection = session.loadAll(RocketFamily.class, filters);
-        }
-        if (!collection.isEmpty()) {
-            existingEntity = collection.iterator().next();
-        }
-        return (T) existingEntity;
+        for (String property : NaturalKeys.properties(clazz)) {
+            filters.and(new Filter(property, EQUALS, classInfo.getFieldInfo(property).read(entity)));
+        }
+        String relationship = NaturalKeys.relationship(clazz);
+        if (relationship != null) {
+            FieldInfo field = classInfo.relationshipFieldByName(relationship);
+            Entity related = (Entity) field.read(entity);
+            if (related == null)
+                return null;
+            ClassInfo relatedInfo = BulkUpsert.metaData().classInfo(related.getClass().getName());
+            for (String property : NaturalKeys.properties(related.getClass())) {
+                Filter filter = new Filter(property, EQUALS, relatedInfo.getFieldInfo(property).read(related));
+                filter.setNestedPropertyName(relationship);
+                filter.setNestedPropertyType(related.getClass());
+                filter.setNestedEntityTypeLabel(related.getClass().getSimpleName());
+                filter.setRelationshipType(field.relationshipType());
+                filter.setRelationshipDirection(field.relationshipDirection());
+                filters.and(filter);
+            }
+        }
+        Iterator<T> existing = session.loadAll(clazz, filters).iterator();
+        return existing.hasNext() ? existing.next() : null;
     }
 
     @Override
     public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
-        return session.loadAll(clazz);
+        return loadAll(clazz, DEPTH_ENTITY);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, int depth) {
+        Collection<T> entities = lazy ? loadLazily(clazz, null, depth) : session.loadAll(clazz, depth);
+        entities.forEach(identityCache::put);
+        return entities;
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return loadAll(clazz, ids, DEPTH_ENTITY);
+    }
+
+    /**
+     * Loads the entities with one query per batch of distinct ids instead of
+     * one query per id, and puts them back in the order of the ids.
+     */
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids, int depth) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, T> loaded = new HashMap<>();
+        for (List<Long> batch : Lists.partition(distinct, batchSize)) {
+            for (T entity : lazy ? loadLazily(clazz, batch, depth) : session.loadAll(clazz, batch, depth)) {
+                loaded.put(entity.getId(), entity);
+                identityCache.put(entity);
+            }
+        }
+        List<T> entities = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            entities.add(loaded.get(id));
+        }
+        return entities;
+    }
+
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query) {
+        return find(query, DEPTH_ENTITY);
+    }
+
+    /**
+     * Finds the ids of the matching entities with one Cypher statement and
+     * then loads only those entities, in id order, through OGM at the
+     * requested depth.
+     *
+     * @see CypherQuery
+     */
+    @Override
+    public <T extends Entity> List<T> find(Query<T> query, int depth) {
+        CypherQuery cypher = new CypherQuery(query);
+        List<Long> ids = new ArrayList<>();
+        for (Map<String, Object> row : session.query(cypher.getCypher(), cypher.getParameters()).queryResults()) {
+            ids.add(number(row, "id"));
+        }
+        if (ids.isEmpty())
+            return new ArrayList<>();
+        Class<T> clazz = query.getEntityType();
+        int loadDepth = Math.max(depth, cypher.getRecheckDepth());
+        List<T> found = new ArrayList<>();
+        for (T entity : lazy ? loadLazily(clazz, ids, loadDepth) : session.loadAll(clazz, ids, loadDepth)) {
+            if (cypher.getRecheck().stream().allMatch(condition -> condition.matches(entity)))
+                found.add(entity);
+        }
+        found.sort(Comparator.comparing(Entity::getId));
+        found.forEach(identityCache::put);
+        return found;
+    }
+
+    /**
+     * Pages through the entities in id order. Each page is found by seeking
+     * past the last id of the previous one and then loaded by id through OGM
+     * at the requested depth, so later pages cost as much as the first. Each
+     * page is detached from the session once it has been iterated over, so
+     * the session does not keep every streamed entity alive.
+     */
+    @Override
+    public Long findIdByNaturalKey(Entity entity) {
+        Long id = identityCache.idOf(entity);
+        if (id != null)
+            return id;
+        Entity existing = findExistingEntity(entity, entity.getClass());
+        return existing == null ? null : existing.getId();
+    }
+
+    @Override
+    public <T extends Entity> Iterator<T> iterate(Class<T> clazz, int pageSize, int depth) {
+        String cypher = "MATCH (n:`" + clazz.getSimpleName() + "`) WHERE id(n) > $after " +
+                "RETURN id(n) AS id ORDER BY id LIMIT $limit";
+        return new PageIterator<T>(pageSize, last -> {
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("after", last == null ? -1L : last.getId());
+            parameters.put("limit", pageSize);
+            List<Long> ids = new ArrayList<>(pageSize);
+            for (Map<String, Object> row : session.query(cypher, parameters).queryResults()) {
+                ids.add(number(row, "id"));
+            }
+            List<T> page = new ArrayList<>(lazy ? loadLazily(clazz, ids, depth) : session.loadAll(clazz, ids, depth));
+            page.sort(Comparator.comparing(Entity::getId));
+            page.forEach(identityCache::put);
+            return page;
+        }, this::detach);
+    }
+
+    private <T extends Entity> void detach(Collection<T> page) {
+        for (T entity : page) {
+            session.detachNodeEntity(entity.getId());
+        }
     }
 
     // TODO: need to be tested!
     public <T extends Entity> void delete(T entity) {
+        identityCache.remove(entity);
         session.delete(entity);
     }
+
+    /**
+     * Counts launches per rocket inside the database.
+     *
+     * @return one group per launched rocket, keyed by rocket id, in first-seen order.
+     */
+    public List<LaunchGroup<Long>> countLaunchesByRocket() {
+        String cypher = "MATCH (l:Launch)-[:LAUNCH_VEHICLE]->(r:Rocket) " +
+                "RETURN id(r) AS key, count(l) AS launches, min(id(l)) AS first ORDER BY first";
+        List<LaunchGroup<Long>> groups = new ArrayList<>();
+        for (Map<String, Object> row : session.query(cypher, Collections.emptyMap()).queryResults()) {
+            groups.add(new LaunchGroup<>(number(row, "key"), number(row, "launches"), 0, 0, 0, null, number(row, "first")));
+        }
+        return groups;
+    }
+
+    /**
+     * Counts successful and failed launches per launch service provider inside the database.
+     *
+     * @return one group per provider, keyed by provider id, in first-seen order.
+     */
+    public List<LaunchGroup<Long>> countOutcomesByProvider() {
+        String cypher = "MATCH (l:Launch)-[:LAUNCH_SERVICE_PROVIDER]->(p:LaunchServiceProvider) " +
+                "RETURN id(p) AS key, count(l) AS launches, " +
+                "sum(CASE l.launchOutcome WHEN 'SUCCESSFUL' THEN 1 ELSE 0 END) AS successes, " +
+                "sum(CASE l.launchOutcome WHEN 'FAILED' THEN 1 ELSE 0 END) AS failures, " +
+                "min(id(l)) AS first ORDER BY first";
+        List<LaunchGroup<Long>> groups = new ArrayList<>();
+        for (Map<String, Object> row : session.query(cypher, Collections.emptyMap()).queryResults()) {
+            groups.add(new LaunchGroup<>(number(row, "key"), number(row, "launches"),
+                    number(row, "successes"), number(row, "failures"), 0, null, number(row, "first")));
+        }
+        return groups;
+    }
+
+    /**
+     * Counts the payloads sent to an orbit per rocket country inside the database.
+     *
+     * @param orbit the orbit.
+     * @return one group per country, keyed by country, in first-seen order.
+     */
+    public List<LaunchGroup<String>> countPayloadsByCountry(String orbit) {
+        String cypher = "MATCH (l:Launch {orbit: $orbit})-[:LAUNCH_VEHICLE]->(r:Rocket) " +
+                "OPTIONAL MATCH (l)-[:PAYLOADS]->(p:Payload) " +
+                "WITH l, r, count(p) AS payloads " +
+                "RETURN r.country AS key, count(l) AS launches, sum(payloads) AS payloads, " +
+                "min(id(l)) AS first ORDER BY first";
+        List<LaunchGroup<String>> groups = new ArrayList<>();
+        for (Map<String, Object> row : session.query(cypher, Collections.singletonMap("orbit", orbit)).queryResults()) {
+            groups.add(new LaunchGroup<>((String) row.get("key"), number(row, "launches"),
+                    0, 0, number(row, "payloads"), null, number(row, "first")));
+        }
+        return groups;
+    }
+
+    /**
+     * Sums the prices of the launches of a year per rocket manufacturer. The
+     * database groups launches by manufacturer and collects their prices,
+     * which are summed here as exact decimals.
+     *
+     * @param year the year.
+     * @return one group per manufacturer, keyed by manufacturer id, in first-seen order.
+     */
+    public List<LaunchGroup<Long>> sumRevenueByManufacturer(int year) {
+        String cypher = "MATCH (l:Launch)-[:LAUNCH_VEHICLE]->(:Rocket)-[:MANUFACTURER]->(m:LaunchServiceProvider) " +
+                "WHERE l.launchDate STARTS WITH $year " +
+                "RETURN id(m) AS key, count(l) AS launches, collect(l.price) AS prices, " +
+                "min(id(l)) AS first ORDER BY first";
+        List<LaunchGroup<Long>> groups = new ArrayList<>();
+        for (Map<String, Object> row : session.query(cypher, Collections.singletonMap("year", year + "-")).queryResults()) {
+            BigDecimal revenue = BigDecimal.ZERO;
+            for (Object price : prices(row.get("prices"))) {
+                revenue = revenue.add(new BigDecimal((String) price));
+            }
+            groups.add(new LaunchGroup<>(number(row, "key"), number(row, "launches"), 0, 0, 0,
+                    revenue, number(row, "first")));
+        }
+        return groups;
+    }
+
+    private static Iterable<?> prices(Object collected) {
+        return collected instanceof Object[] ? Arrays.asList((Object[]) collected) : (Iterable<?>) collected;
+    }
+
+    /**
+     * Returns the ids and prices of the launches that can be among the k most
+     * expensive, in id order. Prices are stored as strings, so the database
+     * orders them by their rounding to doubles and keeps every launch tied
+     * with the k-th at the cutoff, since rounding never reverses an order.
+     * The candidates can then be ranked exactly. When fewer than k launches
+     * have a price, the first launches without one fill up the candidates.
+     *
+     * @param k the number of launches to be ranked.
+     * @return the candidate prices by launch id; null for launches without a price.
+     */
+    public Map<Long, BigDecimal> findMostExpensiveLaunchPrices(int k) {
+        String cypher = "MATCH (l:Launch) WHERE l.price IS NOT NULL " +
+                "WITH toFloat(l.price) AS approximate ORDER BY approximate DESC LIMIT $k " +
+                "WITH min(approximate) AS cutoff " +
+                "MATCH (l:Launch) WHERE toFloat(l.price) >= cutoff " +
+                "RETURN id(l) AS id, l.price AS price ORDER BY id";
+        Map<Long, BigDecimal> prices = new LinkedHashMap<>();
+        for (Map<String, Object> row : session.query(cypher, Collections.singletonMap("k", k)).queryResults()) {
+            prices.put(number(row, "id"), new BigDecimal((String) row.get("price")));
+        }
+        if (prices.size() < k) {
+            cypher = "MATCH (l:Launch) WHERE l.price IS NULL RETURN id(l) AS id ORDER BY id LIMIT $k";
+            Map<String, Object> parameters = Collections.singletonMap("k", k - prices.size());
+            for (Map<String, Object> row : session.query(cypher, parameters).queryResults()) {
+                prices.put(number(row, "id"), null);
+            }
+        }
+        return prices;
+    }
+
+    /**
+     * Returns the ids of the k most recent launches, most recent first.
+     * Launch dates are stored as ISO strings, which sort chronologically;
+     * undated launches come last and ties are broken by id.
+     *
+     * @param k the number of launch ids.
+     * @return the launch ids.
+     */
+    public List<Long> findMostRecentLaunchIds(int k) {
+        String cypher = "MATCH (l:Launch) RETURN id(l) AS id " +
+                "ORDER BY coalesce(l.launchDate, '') DESC, id LIMIT $k";
+        List<Long> ids = new ArrayList<>();
+        for (Map<String, Object> row : session.query(cypher, Collections.singletonMap("k", k)).queryResults()) {
+            ids.add(number(row, "id"));
+        }
+        return ids;
+    }
+
+    private static Long number(Map<String, Object> row, String column) {
+        return ((Number) row.get(column)).longValue();
+    }
 }
@@ -0,0 +1,68 @@
+package rockets.mining;
+
+import rockets.model.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dictionary encoding of column values: every distinct value gets a dense int
+ * id, in the order values are first seen. null is encoded as {@link #NONE}.
+ * <p>
+ * Ids are kept in primitive open-addressing maps, so encoding a value that
+ * has been seen before allocates nothing. Entities that have been saved are
+ * also looked up by their database id first, which spares hashing their
+ * fields (and those of the entities they reference) on every row.
+ *
+ * @param <T> the type of encoded values.
+ */
+public class Dictionary<T> {
+    public static final int NONE = -1;
+
+    private final ObjectIntMap<T> ids = new ObjectIntMap<>();
+
+    private final IdIntMap entityIds = new IdIntMap();
+
+    private final List<T> values = new ArrayList<>();
+
+    /**
+     * Returns the id of a value, assigning the next free id to new values.
+     */
+    public int encode(T value) {
+        if (value == null)
+            return NONE;
+        Long entityId = entityIdOf(value);
+        if (entityId != null) {
+            int id = entityIds.get(entityId, NONE);
+            if (id != NONE)
+                return id;
+        }
+        int id = ids.putIfAbsent(value, values.size());
+        if (id == values.size())
+            values.add(value);
+        if (entityId != null)
+            entityIds.put(entityId, id);
+        return id;
+    }
+
+    /**
+     * Returns the id of a value, or {@link #NONE} if it has never been encoded.
+     */
+    public int idOf(T value) {
+        if (value == null)
+            return NONE;
+        return ids.get(value, NONE);
+    }
+
+    private static Long entityIdOf(Object value) {
+        return value instanceof Entity ? ((Entity) value).getId() : null;
+    }
+
+    public T decode(int id) {
+        return id == NONE ? null : values.get(id);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
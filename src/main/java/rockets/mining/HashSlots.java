@@ -0,0 +1,45 @@
+package rockets.mining;
+
+/**
+ * Sizing and hashing shared by the open-addressing maps. Tables have a power
+ * of two number of slots and are kept at most half full, so linear probes
+ * stay short.
+ */
+final class HashSlots {
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private HashSlots() {
+    }
+
+    /**
+     * Returns the number of slots for a table expected to hold the given
+     * number of keys.
+     */
+    static int capacityFor(int expectedSize) {
+        if (expectedSize >= MAX_CAPACITY / 2)
+            return MAX_CAPACITY;
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize * 2 - 1)) << 1;
+        return Math.max(capacity, 4);
+    }
+
+    /**
+     * Returns the number of keys a table with the given number of slots holds
+     * before it is doubled.
+     */
+    static int maxSize(int capacity) {
+        return capacity / 2;
+    }
+
+    /**
+     * Spreads the bits of a hash code, so keys with poorly distributed hash
+     * codes (sequential ids, small strings) still spread across the table.
+     */
+    static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int mix(long key) {
+        return mix((int) (key ^ (key >>> 32)));
+    }
+}
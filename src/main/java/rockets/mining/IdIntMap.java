@@ -0,0 +1,119 @@
+package rockets.mining;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing map from entity ids to primitive ints. Ids are hashed as
+ * longs, which is far cheaper than the equality-based hash codes of the model
+ * classes (a {@code Rocket} hashes its manufacturer on every call), and
+ * neither keys nor values are boxed.
+ *
+ * @see rockets.model.Entity#getId()
+ */
+public class IdIntMap {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+
+    private boolean[] used;
+
+    private int[] values;
+
+    private int size;
+
+    private int mask;
+
+    public IdIntMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public IdIntMap(int expectedSize) {
+        allocate(HashSlots.capacityFor(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the slot of an id, or the complement of the empty slot where it
+     * would be inserted.
+     */
+    private int slotOf(long id) {
+        int slot = HashSlots.mix(id) & mask;
+        while (used[slot]) {
+            if (keys[slot] == id)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    public boolean containsKey(long id) {
+        return slotOf(id) >= 0;
+    }
+
+    /**
+     * Returns the value of an id, or the given default if the id is absent.
+     */
+    public int get(long id, int defaultValue) {
+        int slot = slotOf(id);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    public void put(long id, int value) {
+        int slot = slotOf(id);
+        if (slot >= 0)
+            values[slot] = value;
+        else
+            insert(~slot, id, value);
+    }
+
+    /**
+     * Adds a delta to the value of an id, counting absent ids from 0.
+     *
+     * @return the new value.
+     */
+    public int addTo(long id, int delta) {
+        int slot = slotOf(id);
+        if (slot >= 0)
+            return values[slot] += delta;
+        insert(~slot, id, delta);
+        return delta;
+    }
+
+    private void insert(int slot, long id, int value) {
+        keys[slot] = id;
+        used[slot] = true;
+        values[slot] = value;
+        if (++size > HashSlots.maxSize(keys.length))
+            rehash();
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = ~slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                used[slot] = true;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+}
@@ -0,0 +1,104 @@
+package rockets.mining;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * The rows of a {@link LaunchTable} ordered by launch date. Each row is packed
+ * into a {@code long} as (epoch day, inverted row) and the keys are sorted
+ * once, so the most recent launches are the tail of the array and the
+ * launches of a date range are a contiguous slice found by binary search.
+ * <p>
+ * Walking the array backwards yields launches from the most recent to the
+ * oldest, with launches of the same day in row order and undated launches
+ * last, the same order {@link MinerSnapshot#mostRecentLaunches(int)} ranks by.
+ */
+public class LaunchDateIndex {
+    private final long[] keys;
+
+    private LaunchDateIndex(long[] keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Sorts the rows of a table by launch date.
+     *
+     * @param table the launch table.
+     * @return the index.
+     */
+    public static LaunchDateIndex of(LaunchTable table) {
+        int[] epochDays = table.epochDays();
+        long[] keys = new long[table.size()];
+        for (int row = 0; row < keys.length; row++) {
+            keys[row] = key(epochDays[row], row);
+        }
+        Arrays.sort(keys);
+        return new LaunchDateIndex(keys);
+    }
+
+    /**
+     * Rows of the same day sort in descending row order, so reading the
+     * array backwards gives them in ascending row order.
+     */
+    private static long key(int epochDay, int row) {
+        return ((long) epochDay << 32) | (Integer.MAX_VALUE - row);
+    }
+
+    private static int rowOf(long key) {
+        return Integer.MAX_VALUE - (int) key;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the rows of the k most recent launches, most recent first.
+     *
+     * @param k the number of rows.
+     * @return the rows.
+     */
+    public int[] mostRecent(int k) {
+        if (k > keys.length || k < 0)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        int[] rows = new int[k];
+        for (int i = 0; i < k; i++) {
+            rows[i] = rowOf(keys[keys.length - 1 - i]);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the rows of the launches between two dates, both inclusive,
+     * most recent first. Undated launches are never in a range.
+     *
+     * @param from the first date.
+     * @param to   the last date.
+     * @return the rows.
+     */
+    public int[] between(LocalDate from, LocalDate to) {
+        int first = lowerBound(key((int) from.toEpochDay(), Integer.MAX_VALUE));
+        int end = lowerBound(key((int) to.toEpochDay() + 1, Integer.MAX_VALUE));
+        int[] rows = new int[Math.max(0, end - first)];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = rowOf(keys[end - 1 - i]);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the index of the first key not less than the given one.
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+}
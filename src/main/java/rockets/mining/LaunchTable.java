@@ -0,0 +1,479 @@
+package rockets.mining;
+
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+
+/**
+ * A struct-of-arrays copy of the launch history. Every launch is a row, and
+ * every attribute the miner looks at is a primitive column:
+ * <ul>
+ * <li>launch dates as {@code int} epoch days,</li>
+ * <li>prices as {@code long} minor units (cents),</li>
+ * <li>outcomes as two bitsets, one for successful and one for failed launches,</li>
+ * <li>orbit, launch site, rocket country, rocket, provider and manufacturer as
+ * dictionary-encoded {@code int} ids,</li>
+ * <li>payload counts as {@code int}s.</li>
+ * </ul>
+ * Aggregations over the table are tight loops over arrays instead of walks
+ * over {@code Launch -> Rocket -> LaunchServiceProvider} object graphs. The
+ * source launches are kept only so that rows can be handed back to callers.
+ * A table built from streamed launches may instead keep just their ids and
+ * load launches again when their rows are asked for, so the table holds no
+ * launch objects at all.
+ */
+public class LaunchTable {
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
+    public static final long NO_ID = -1L;
+
+    /**
+     * Prices are stored in units of 10^-PRICE_SCALE.
+     */
+    public static final int PRICE_SCALE = 2;
+
+    /**
+     * The number of rows {@link #launches()} loads at a time when launches
+     * were not retained.
+     */
+    static final int LOAD_BATCH_SIZE = 256;
+
+    private final int size;
+    private final Launch[] launches;
+    /**
+     * Loads the launches of rows, in row order, when they were not retained.
+     */
+    private final Function<int[], List<Launch>> loader;
+    private final long[] ids;
+    private final int[] epochDays;
+    private final long[] prices;
+    private final BitSet successful;
+    private final BitSet failed;
+    private final int[] orbits;
+    private final int[] sites;
+    private final int[] countries;
+    private final int[] rockets;
+    private final int[] providers;
+    private final int[] manufacturers;
+    private final int[] payloadCounts;
+
+    /**
+     * Prices that do not fit a long number of minor units, by row. The
+     * matching entry of the price column holds {@link #NO_PRICE}.
+     */
+    private final Map<Integer, BigDecimal> irregularPrices;
+
+    private final Dictionary<String> orbitDictionary;
+    private final Dictionary<String> siteDictionary;
+    private final Dictionary<String> countryDictionary;
+    private final Dictionary<Rocket> rocketDictionary;
+    private final Dictionary<LaunchServiceProvider> providerDictionary;
+
+    private LaunchTable(Builder builder, Function<List<Long>, List<Launch>> loader) {
+        this(builder.size, builder.launches, loader == null ? null : byIds(builder.ids, loader),
+                builder.ids, builder.epochDays, builder.prices, builder.successful, builder.failed,
+                builder.orbits, builder.sites, builder.countries, builder.rockets, builder.providers,
+                builder.manufacturers, builder.payloadCounts, builder.irregularPrices,
+                builder.orbitDictionary, builder.siteDictionary, builder.countryDictionary,
+                builder.rocketDictionary, builder.providerDictionary);
+    }
+
+    /**
+     * Creates a table over columns read back from a {@link SnapshotFile},
+     * whose launches are decoded row by row when asked for.
+     */
+    LaunchTable(int size, Launch[] launches, IntFunction<Launch> loader, long[] ids, int[] epochDays,
+                long[] prices, BitSet successful, BitSet failed, int[] orbits, int[] sites, int[] countries,
+                int[] rockets, int[] providers, int[] manufacturers, int[] payloadCounts,
+                Map<Integer, BigDecimal> irregularPrices, Dictionary<String> orbitDictionary,
+                Dictionary<String> siteDictionary, Dictionary<String> countryDictionary,
+                Dictionary<Rocket> rocketDictionary, Dictionary<LaunchServiceProvider> providerDictionary) {
+        this(size, launches, loader == null ? null : byRow(loader),
+                ids, epochDays, prices, successful, failed, orbits, sites, countries, rockets, providers,
+                manufacturers, payloadCounts, irregularPrices, orbitDictionary, siteDictionary,
+                countryDictionary, rocketDictionary, providerDictionary);
+    }
+
+    private LaunchTable(int size, Launch[] launches, Function<int[], List<Launch>> loader, long[] ids, int[] epochDays,
+                        long[] prices, BitSet successful, BitSet failed, int[] orbits, int[] sites, int[] countries,
+                        int[] rockets, int[] providers, int[] manufacturers, int[] payloadCounts,
+                        Map<Integer, BigDecimal> irregularPrices, Dictionary<String> orbitDictionary,
+                        Dictionary<String> siteDictionary, Dictionary<String> countryDictionary,
+                        Dictionary<Rocket> rocketDictionary, Dictionary<LaunchServiceProvider> providerDictionary) {
+        this.size = size;
+        this.launches = launches;
+        this.loader = loader;
+        this.ids = ids;
+        this.epochDays = epochDays;
+        this.prices = prices;
+        this.successful = successful;
+        this.failed = failed;
+        this.orbits = orbits;
+        this.sites = sites;
+        this.countries = countries;
+        this.rockets = rockets;
+        this.providers = providers;
+        this.manufacturers = manufacturers;
+        this.payloadCounts = payloadCounts;
+        this.irregularPrices = irregularPrices;
+        this.orbitDictionary = orbitDictionary;
+        this.siteDictionary = siteDictionary;
+        this.countryDictionary = countryDictionary;
+        this.rocketDictionary = rocketDictionary;
+        this.providerDictionary = providerDictionary;
+    }
+
+    /**
+     * Builds a table from the launches, one row per launch in iteration order.
+     *
+     * @param launches the launch history.
+     * @return the table.
+     */
+    public static LaunchTable of(Collection<Launch> launches) {
+        if (launches == null)
+            throw new NullPointerException("no launches in database");
+        Builder builder = new Builder(launches.size());
+        for (Launch launch : launches) {
+            builder.add(launch);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Adapts a loader of launches by ids into a loader of the launches of rows.
+     */
+    private static Function<int[], List<Launch>> byIds(long[] ids, Function<List<Long>, List<Launch>> loader) {
+        return rows -> {
+            List<Long> rowIds = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                rowIds.add(ids[row]);
+            }
+            return loader.apply(rowIds);
+        };
+    }
+
+    /**
+     * Adapts a loader of the launch of one row into a loader of the launches of rows.
+     */
+    private static Function<int[], List<Launch>> byRow(IntFunction<Launch> loader) {
+        return rows -> {
+            List<Launch> loaded = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                loaded.add(loader.apply(row));
+            }
+            return loaded;
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Launch launch(int row) {
+        return launches != null ? launches[row] : loader.apply(new int[]{row}).get(0);
+    }
+
+    /**
+     * Returns the launches of rows, in the order of the rows. Launches that
+     * were not retained are loaded together.
+     */
+    public List<Launch> launches(int[] rows) {
+        if (launches == null)
+            return loader.apply(rows);
+        List<Launch> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(launches[row]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns every launch in row order. Launches that were not retained are
+     * loaded a batch of rows at a time as the list is read, and only the
+     * last batch is kept.
+     */
+    public List<Launch> launches() {
+        if (launches != null)
+            return Collections.unmodifiableList(Arrays.asList(launches).subList(0, size));
+        return new AbstractList<Launch>() {
+            private int batchStart = -1;
+            private List<Launch> batch;
+
+            @Override
+            public Launch get(int row) {
+                if (row < 0 || row >= size)
+                    throw new IndexOutOfBoundsException("row " + row);
+                if (batch == null || row < batchStart || row >= batchStart + batch.size()) {
+                    batchStart = row - row % LOAD_BATCH_SIZE;
+                    int[] rows = new int[Math.min(LOAD_BATCH_SIZE, size - batchStart)];
+                    for (int i = 0; i < rows.length; i++) {
+                        rows[i] = batchStart + i;
+                    }
+                    batch = loader.apply(rows);
+                }
+                return batch.get(row - batchStart);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the launch ids, {@link #NO_ID} for launches that were never saved.
+     */
+    public long[] ids() {
+        return ids;
+    }
+
+    public int[] epochDays() {
+        return epochDays;
+    }
+
+    public long[] prices() {
+        return prices;
+    }
+
+    public BitSet successful() {
+        return successful;
+    }
+
+    public BitSet failed() {
+        return failed;
+    }
+
+    public int[] orbits() {
+        return orbits;
+    }
+
+    public int[] sites() {
+        return sites;
+    }
+
+    public int[] countries() {
+        return countries;
+    }
+
+    public int[] rockets() {
+        return rockets;
+    }
+
+    public int[] providers() {
+        return providers;
+    }
+
+    public int[] manufacturers() {
+        return manufacturers;
+    }
+
+    public int[] payloadCounts() {
+        return payloadCounts;
+    }
+
+    public Dictionary<String> orbitDictionary() {
+        return orbitDictionary;
+    }
+
+    public Dictionary<String> siteDictionary() {
+        return siteDictionary;
+    }
+
+    public Dictionary<String> countryDictionary() {
+        return countryDictionary;
+    }
+
+    public Dictionary<Rocket> rocketDictionary() {
+        return rocketDictionary;
+    }
+
+    /**
+     * Launch service providers and rocket manufacturers share one dictionary,
+     * so a provider has the same id in both columns.
+     */
+    public Dictionary<LaunchServiceProvider> providerDictionary() {
+        return providerDictionary;
+    }
+
+    /**
+     * Returns the proleptic Gregorian year of an epoch day without going
+     * through {@link LocalDate}, so per-row year lookups do not allocate.
+     */
+    public static int yearOf(int epochDay) {
+        long days = epochDay + 719468L;
+        long era = (days >= 0 ? days : days - 146096) / 146097;
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        // the computed year starts in March, so January and February belong to the next one
+        return (int) (yearOfEra + era * 400 + (shiftedMonth >= 10 ? 1 : 0));
+    }
+
+    /**
+     * Returns the exact price of a row, or null if the launch has no price.
+     */
+    public BigDecimal price(int row) {
+        if (prices[row] != NO_PRICE)
+            return BigDecimal.valueOf(prices[row], PRICE_SCALE);
+        return irregularPrices.get(row);
+    }
+
+    /**
+     * Compares the prices of two rows. Rows without a price compare lowest.
+     */
+    public int comparePrices(int a, int b) {
+        long priceA = prices[a];
+        long priceB = prices[b];
+        if (priceA != NO_PRICE && priceB != NO_PRICE)
+            return Long.compare(priceA, priceB);
+        BigDecimal exactA = price(a);
+        BigDecimal exactB = price(b);
+        if (exactA == null || exactB == null)
+            return exactA == null ? (exactB == null ? 0 : -1) : 1;
+        return exactA.compareTo(exactB);
+    }
+
+    /**
+     * Accumulates launches into columns. Arrays grow geometrically, so the
+     * number of launches need not be known in advance.
+     */
+    public static class Builder {
+        private int size;
+        private final boolean retainLaunches;
+        private Launch[] launches;
+        private long[] ids;
+        private int[] epochDays;
+        private long[] prices;
+        private final BitSet successful = new BitSet();
+        private final BitSet failed = new BitSet();
+        private int[] orbits;
+        private int[] sites;
+        private int[] countries;
+        private int[] rockets;
+        private int[] providers;
+        private int[] manufacturers;
+        private int[] payloadCounts;
+        private final Map<Integer, BigDecimal> irregularPrices = new HashMap<>();
+        private final Dictionary<String> orbitDictionary = new Dictionary<>();
+        private final Dictionary<String> siteDictionary = new Dictionary<>();
+        private final Dictionary<String> countryDictionary = new Dictionary<>();
+        private final Dictionary<Rocket> rocketDictionary = new Dictionary<>();
+        private final Dictionary<LaunchServiceProvider> providerDictionary = new Dictionary<>();
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(int expectedSize) {
+            this(expectedSize, true);
+        }
+
+        /**
+         * @param expectedSize   the expected number of launches.
+         * @param retainLaunches whether rows keep their launch, or only its id
+         *                       for the launch to be loaded again on demand.
+         */
+        public Builder(int expectedSize, boolean retainLaunches) {
+            this.retainLaunches = retainLaunches;
+            allocate(Math.max(1, expectedSize));
+        }
+
+        private void allocate(int capacity) {
+            if (retainLaunches)
+                launches = launches == null ? new Launch[capacity] : Arrays.copyOf(launches, capacity);
+            ids = ids == null ? new long[capacity] : Arrays.copyOf(ids, capacity);
+            epochDays = epochDays == null ? new int[capacity] : Arrays.copyOf(epochDays, capacity);
+            prices = prices == null ? new long[capacity] : Arrays.copyOf(prices, capacity);
+            orbits = orbits == null ? new int[capacity] : Arrays.copyOf(orbits, capacity);
+            sites = sites == null ? new int[capacity] : Arrays.copyOf(sites, capacity);
+            countries = countries == null ? new int[capacity] : Arrays.copyOf(countries, capacity);
+            rockets = rockets == null ? new int[capacity] : Arrays.copyOf(rockets, capacity);
+            providers = providers == null ? new int[capacity] : Arrays.copyOf(providers, capacity);
+            manufacturers = manufacturers == null ? new int[capacity] : Arrays.copyOf(manufacturers, capacity);
+            payloadCounts = payloadCounts == null ? new int[capacity] : Arrays.copyOf(payloadCounts, capacity);
+        }
+
+        /**
+         * Appends a launch as the next row.
+         */
+        public Builder add(Launch launch) {
+            if (size == ids.length)
+                allocate(size * 2);
+            int row = size++;
+            if (retainLaunches)
+                launches[row] = launch;
+            ids[row] = launch.getId() == null ? NO_ID : launch.getId();
+
+            LocalDate date = launch.getLaunchDate();
+            epochDays[row] = date == null ? NO_DATE : (int) date.toEpochDay();
+
+            prices[row] = NO_PRICE;
+            BigDecimal price = launch.getPrice();
+            if (price != null) {
+                try {
+                    prices[row] = price.movePointRight(PRICE_SCALE).longValueExact();
+                } catch (ArithmeticException e) {
+                    irregularPrices.put(row, price);
+                }
+            }
+
+            if (launch.getLaunchOutcome() == Launch.LaunchOutcome.SUCCESSFUL)
+                successful.set(row);
+            else if (launch.getLaunchOutcome() == Launch.LaunchOutcome.FAILED)
+                failed.set(row);
+
+            Rocket rocket = launch.getLaunchVehicle();
+            orbits[row] = orbitDictionary.encode(launch.getOrbit());
+            sites[row] = siteDictionary.encode(launch.getLaunchSite());
+            rockets[row] = rocketDictionary.encode(rocket);
+            countries[row] = rocket == null ? Dictionary.NONE : countryDictionary.encode(rocket.getCountry());
+            manufacturers[row] = rocket == null ? Dictionary.NONE : providerDictionary.encode(rocket.getManufacturer());
+            providers[row] = providerDictionary.encode(launch.getLaunchServiceProvider());
+            payloadCounts[row] = launch.getPayloadCount();
+            return this;
+        }
+
+        public LaunchTable build() {
+            if (!retainLaunches)
+                throw new IllegalStateException("launches were not retained, a loader is needed");
+            return new LaunchTable(this, null);
+        }
+
+        /**
+         * Builds a table that loads the launch of a row by id when asked for it.
+         *
+         * @param loader loads a launch by id.
+         */
+        public LaunchTable build(LongFunction<Launch> loader) {
+            return buildBatched(ids -> {
+                List<Launch> loaded = new ArrayList<>(ids.size());
+                for (long id : ids) {
+                    // launches that were never saved cannot be loaded again
+                    loaded.add(id == NO_ID ? null : loader.apply(id));
+                }
+                return loaded;
+            });
+        }
+
+        /**
+         * Builds a table that loads the launches of rows by id when asked
+         * for them, all the rows asked for at once with one call.
+         *
+         * @param loader loads launches by ids, in the order of the ids.
+         */
+        public LaunchTable buildBatched(Function<List<Long>, List<Launch>> loader) {
+            return new LaunchTable(this, loader);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package rockets.mining;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * A ranking of keys that is kept sorted as their scores change. Every key
+ * holds two counters and the number of launches contributing to them; the
+ * ranking order is defined over the counters. Changing a key costs O(log n)
+ * and reading the top k costs O(k + log n).
+ * <p>
+ * Keys with equal scores rank in the order they joined the leaderboard. A key
+ * leaves the leaderboard when its last contributing launch is removed.
+ * <p>
+ * The first counter does not overflow: once it leaves the range of a long,
+ * such as a revenue summed in minor units, it is kept as a {@link BigInteger}
+ * until it fits again.
+ *
+ * @param <K> the type of ranked keys.
+ */
+public class Leaderboard<K> {
+    /**
+     * Ranks by the first counter, highest first.
+     */
+    public static final Comparator<Entry<?>> BY_COUNT = (a, b) -> a.exactFirst == null && b.exactFirst == null
+            ? Long.compare(b.first, a.first)
+            : b.getExactFirst().compareTo(a.getExactFirst());
+
+    /**
+     * Ranks by the ratio first / second, highest first, comparing
+     * f1 / s1 against f2 / s2 as f1 * s2 against f2 * s1 so no precision is
+     * lost. An empty denominator counts as a ratio of 0.
+     */
+    public static final Comparator<Entry<?>> BY_RATIO =
+            (a, b) -> Long.compare(b.first * Math.max(1L, a.second), a.first * Math.max(1L, b.second));
+
+    public static final class Entry<K> {
+        private final K key;
+        private final long sequence;
+        private long launches;
+        private long first;
+        private BigInteger exactFirst;
+        private long second;
+
+        private Entry(K key, long sequence) {
+            this.key = key;
+            this.sequence = sequence;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public long getLaunches() {
+            return launches;
+        }
+
+        /**
+         * Returns the first counter, or the nearest long if it is beyond that range.
+         */
+        public long getFirst() {
+            return first;
+        }
+
+        public BigInteger getExactFirst() {
+            return exactFirst != null ? exactFirst : BigInteger.valueOf(first);
+        }
+
+        private void addToFirst(long amount) {
+            if (exactFirst == null) {
+                try {
+                    first = Math.addExact(first, amount);
+                    return;
+                } catch (ArithmeticException e) {
+                    exactFirst = BigInteger.valueOf(first);
+                }
+            }
+            addToFirst(BigInteger.valueOf(amount));
+        }
+
+        private void addToFirst(BigInteger amount) {
+            BigInteger sum = getExactFirst().add(amount);
+            if (sum.bitLength() < Long.SIZE) {
+                first = sum.longValue();
+                exactFirst = null;
+            } else {
+                first = sum.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+                exactFirst = sum;
+            }
+        }
+
+        public long getSecond() {
+            return second;
+        }
+    }
+
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+
+    private final TreeSet<Entry<K>> ranking;
+
+    private long sequence;
+
+    public Leaderboard(Comparator<Entry<?>> order) {
+        this.ranking = new TreeSet<>((a, b) -> {
+            int c = order.compare(a, b);
+            return c != 0 ? c : Long.compare(a.sequence, b.sequence);
+        });
+    }
+
+    /**
+     * Adds the contribution of one launch to a key.
+     *
+     * @param key    the ranked key.
+     * @param first  the amount added to the first counter.
+     * @param second the amount added to the second counter.
+     */
+    public void add(K key, long first, long second) {
+        Entry<K> entry = join(key);
+        entry.addToFirst(first);
+        entry.second += second;
+        ranking.add(entry);
+    }
+
+    /**
+     * Adds the contribution of one launch to a key, with a first amount
+     * beyond the range of a long.
+     */
+    public void add(K key, BigInteger first, long second) {
+        Entry<K> entry = join(key);
+        entry.addToFirst(first);
+        entry.second += second;
+        ranking.add(entry);
+    }
+
+    private Entry<K> join(K key) {
+        Entry<K> entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry<>(key, sequence++);
+            entries.put(key, entry);
+        } else {
+            ranking.remove(entry);
+        }
+        entry.launches++;
+        return entry;
+    }
+
+    /**
+     * Removes the contribution of one launch from a key, as previously added
+     * with {@link #add(Object, long, long)}.
+     */
+    public void remove(K key, long first, long second) {
+        Entry<K> entry = leave(key);
+        if (entry == null)
+            return;
+        if (first == Long.MIN_VALUE)
+            entry.addToFirst(BigInteger.valueOf(first).negate());
+        else
+            entry.addToFirst(-first);
+        entry.second -= second;
+        rank(entry);
+    }
+
+    /**
+     * Removes the contribution of one launch from a key, as previously added
+     * with {@link #add(Object, BigInteger, long)}.
+     */
+    public void remove(K key, BigInteger first, long second) {
+        Entry<K> entry = leave(key);
+        if (entry == null)
+            return;
+        entry.addToFirst(first.negate());
+        entry.second -= second;
+        rank(entry);
+    }
+
+    private Entry<K> leave(K key) {
+        Entry<K> entry = entries.get(key);
+        if (entry == null)
+            return null;
+        ranking.remove(entry);
+        entry.launches--;
+        return entry;
+    }
+
+    private void rank(Entry<K> entry) {
+        if (entry.launches <= 0)
+            entries.remove(entry.key);
+        else
+            ranking.add(entry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Entry<K> get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Returns the k best keys.
+     *
+     * @param k the number of keys to be returned.
+     * @return the k best keys, best first.
+     */
+    public List<K> top(int k) {
+        if (k > entries.size() || k < 0)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        List<K> top = new ArrayList<>(k);
+        Iterator<Entry<K>> iterator = ranking.iterator();
+        while (top.size() < k) {
+            top.add(iterator.next().key);
+        }
+        return top;
+    }
+}
@@ -0,0 +1,334 @@
+package rockets.mining;
+
+import rockets.dataaccess.DAOListener;
+import rockets.dataaccess.ObservableDAO;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Miner rankings that are updated incrementally as launches are written
+ * through an {@link ObservableDAO}, instead of being recomputed from the whole
+ * launch history. Each created, updated or deleted launch moves its rocket,
+ * provider, manufacturer and country in a handful of {@link Leaderboard}s in
+ * O(log n), so any top-k answer costs O(k).
+ * <p>
+ * The contribution of every launch is remembered by id, so an update first
+ * takes back what the previous version of the launch added.
+ * <p>
+ * Launches are also kept ordered by date, most recent first, so recency and
+ * date range queries read a prefix or a sub-range of that order instead of
+ * sorting the history. Launches of the same day keep the order in which they
+ * were first saved.
+ */
+public class MinerLeaderboards implements DAOListener {
+    private final Leaderboard<Rocket> launchesPerRocket = new Leaderboard<>(Leaderboard.BY_COUNT);
+
+    private final Leaderboard<LaunchServiceProvider> reliability = new Leaderboard<>(Leaderboard.BY_RATIO);
+
+    private final Map<Integer, Leaderboard<LaunchServiceProvider>> revenuePerYear = new HashMap<>();
+
+    private final Map<String, Leaderboard<String>> payloadsPerOrbit = new LinkedHashMap<>();
+
+    private final NavigableSet<Dated> launchesByDate = new TreeSet<>(Dated.MOST_RECENT_FIRST);
+
+    private long nextSequence;
+
+    private final Map<Object, Contribution> contributions = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * A launch in the date order. Undated launches sort after dated ones.
+     */
+    private static final class Dated {
+        private static final Comparator<Dated> MOST_RECENT_FIRST = Comparator
+                .comparingInt((Dated dated) -> dated.epochDay).reversed()
+                .thenComparingLong(dated -> dated.sequence);
+
+        private final Launch launch;
+        private final int epochDay;
+        private final long sequence;
+
+        private Dated(Launch launch, int epochDay, long sequence) {
+            this.launch = launch;
+            this.epochDay = epochDay;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * What a single launch adds to the leaderboards.
+     */
+    private static final class Contribution {
+        private Rocket rocket;
+        private LaunchServiceProvider provider;
+        private int successes;
+        private int decided;
+        private Integer year;
+        private LaunchServiceProvider manufacturer;
+        private BigInteger revenue;
+        private String orbit;
+        private String country;
+        private int payloads;
+        private Dated dated;
+
+        private Contribution(Launch launch) {
+            rocket = launch.getLaunchVehicle();
+            provider = launch.getLaunchServiceProvider();
+            successes = launch.getLaunchOutcome() == Launch.LaunchOutcome.SUCCESSFUL ? 1 : 0;
+            decided = launch.getLaunchOutcome() == null ? 0 : 1;
+            if (rocket != null) {
+                if (launch.getLaunchDate() != null) {
+                    year = launch.getLaunchDate().getYear();
+                    manufacturer = rocket.getManufacturer();
+                    revenue = minorUnits(launch.getPrice());
+                }
+                orbit = launch.getOrbit();
+                country = rocket.getCountry();
+                payloads = launch.getPayloadCount();
+            }
+        }
+    }
+
+    /**
+     * Returns a price in minor units for revenue ranking, rounding prices
+     * with sub-minor digits to the nearest unit. Exact sums come from
+     * {@link RevenueRollup}.
+     */
+    private static BigInteger minorUnits(BigDecimal price) {
+        if (price == null)
+            return BigInteger.ZERO;
+        return price.setScale(LaunchTable.PRICE_SCALE, RoundingMode.HALF_EVEN).unscaledValue();
+    }
+
+    /**
+     * Creates leaderboards over the launches already stored and keeps them
+     * up to date with the writes made through the DAO.
+     *
+     * @param dao the DAO launches are written through.
+     * @return the attached leaderboards.
+     */
+    public static MinerLeaderboards attach(ObservableDAO dao) {
+        MinerLeaderboards leaderboards = new MinerLeaderboards();
+        dao.addListener(leaderboards);
+        Collection<Launch> launches = dao.loadAll(Launch.class);
+        if (launches == null)
+            throw new NullPointerException("no launches in database");
+        for (Launch launch : launches) {
+            leaderboards.entitySaved(launch);
+        }
+        return leaderboards;
+    }
+
+    @Override
+    public void entitySaved(Entity entity) {
+        if (!(entity instanceof Launch))
+            return;
+        Launch launch = (Launch) entity;
+        Object key = launch.getId() != null ? launch.getId() : launch;
+        Contribution contribution = new Contribution(launch);
+        lock.writeLock().lock();
+        try {
+            Contribution previous = contributions.put(key, contribution);
+            if (previous != null)
+                apply(previous, -1);
+            LocalDate date = launch.getLaunchDate();
+            contribution.dated = new Dated(launch, date == null ? LaunchTable.NO_DATE : (int) date.toEpochDay(),
+                    previous != null ? previous.dated.sequence : nextSequence++);
+            apply(contribution, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void entityDeleted(Entity entity, Long id) {
+        if (!(entity instanceof Launch))
+            return;
+        Object key = id != null ? id : entity;
+        lock.writeLock().lock();
+        try {
+            Contribution previous = contributions.remove(key);
+            if (previous != null)
+                apply(previous, -1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Contribution c, int sign) {
+        if (sign > 0)
+            launchesByDate.add(c.dated);
+        else
+            launchesByDate.remove(c.dated);
+        if (c.rocket != null)
+            change(launchesPerRocket, c.rocket, 1, 0, sign);
+        if (c.provider != null)
+            change(reliability, c.provider, c.successes, c.decided, sign);
+        if (c.year != null) {
+            Leaderboard<LaunchServiceProvider> revenue =
+                    revenuePerYear.computeIfAbsent(c.year, y -> new Leaderboard<>(Leaderboard.BY_COUNT));
+            if (c.revenue.bitLength() < Long.SIZE)
+                change(revenue, c.manufacturer, c.revenue.longValue(), 0, sign);
+            else if (sign > 0)
+                revenue.add(c.manufacturer, c.revenue, 0);
+            else
+                revenue.remove(c.manufacturer, c.revenue, 0);
+        }
+        if (c.orbit != null) {
+            Leaderboard<String> payloads =
+                    payloadsPerOrbit.computeIfAbsent(c.orbit, o -> new Leaderboard<>(Leaderboard.BY_COUNT));
+            change(payloads, c.country, c.payloads, 0, sign);
+        }
+    }
+
+    private static <K> void change(Leaderboard<K> leaderboard, K key, long first, long second, int sign) {
+        if (sign > 0)
+            leaderboard.add(key, first, second);
+        else
+            leaderboard.remove(key, first, second);
+    }
+
+    /**
+     * Returns the top-k most launched rockets.
+     *
+     * @param k the number of rockets to be returned.
+     * @return the list of k most active rockets.
+     */
+    public List<Rocket> mostLaunchedRockets(int k) {
+        lock.readLock().lock();
+        try {
+            return launchesPerRocket.top(k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the top-k launch service providers by percentage of successful launches.
+     *
+     * @param k the number of launch service providers to be returned.
+     * @return the list of k most reliable ones.
+     */
+    public List<LaunchServiceProvider> mostReliableLaunchServiceProviders(int k) {
+        lock.readLock().lock();
+        try {
+            return reliability.top(k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the country that sends the most payload to the given orbit.
+     *
+     * @param orbit the orbit
+     * @return the dominant country of the orbit.
+     */
+    public String dominantCountry(String orbit) {
+        lock.readLock().lock();
+        try {
+            Leaderboard<String> payloads = payloadsPerOrbit.get(orbit);
+            if (payloads == null || payloads.size() == 0)
+                throw new IllegalArgumentException("passed orbit not found");
+            return payloads.top(1).get(0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the dominant country of every orbit, in the order orbits were
+     * first seen.
+     *
+     * @return the dominant country by orbit.
+     */
+    public Map<String, String> dominantCountryByOrbit() {
+        lock.readLock().lock();
+        try {
+            Map<String, String> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Leaderboard<String>> entry : payloadsPerOrbit.entrySet()) {
+                if (entry.getValue().size() > 0)
+                    result.put(entry.getKey(), entry.getValue().top(1).get(0));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the top-k launch service providers by sales revenue in a year.
+     *
+     * @param k    the number of launch service providers.
+     * @param year the year in request
+     * @return the list of k launch service providers with the highest revenue.
+     */
+    public List<LaunchServiceProvider> highestRevenueLaunchServiceProviders(int k, int year) {
+        lock.readLock().lock();
+        try {
+            Leaderboard<LaunchServiceProvider> revenue = revenuePerYear.get(year);
+            if (revenue == null || revenue.size() == 0)
+                throw new IllegalArgumentException("Launch service provide not found in this year");
+            return revenue.top(k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the top-k most recent launches.
+     *
+     * @param k the number of launches to be returned.
+     * @return the list of k most recent launches.
+     */
+    public List<Launch> mostRecentLaunches(int k) {
+        lock.readLock().lock();
+        try {
+            if (k > launchesByDate.size() || k < 0)
+                throw new IllegalArgumentException("k beyond the data boundary");
+            List<Launch> result = new ArrayList<>(k);
+            Iterator<Dated> iterator = launchesByDate.iterator();
+            while (result.size() < k) {
+                result.add(iterator.next().launch);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the launches between two dates, both inclusive, most recent first.
+     *
+     * @param from the first date.
+     * @param to   the last date.
+     * @return the launches in the date range.
+     */
+    public List<Launch> launchesBetween(LocalDate from, LocalDate to) {
+        Dated latest = new Dated(null, (int) to.toEpochDay(), Long.MIN_VALUE);
+        Dated earliest = new Dated(null, (int) from.toEpochDay(), Long.MAX_VALUE);
+        lock.readLock().lock();
+        try {
+            if (Dated.MOST_RECENT_FIRST.compare(latest, earliest) > 0)
+                return new ArrayList<>();
+            List<Launch> result = new ArrayList<>();
+            for (Dated dated : launchesByDate.subSet(latest, true, earliest, true)) {
+                result.add(dated.launch);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
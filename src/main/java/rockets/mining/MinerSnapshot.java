@@ -0,0 +1,520 @@
+package rockets.mining;
+
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable view of the launch history that answers every {@link RocketMiner}
+ * query. All per-rocket, per-provider, per-orbit and per-year aggregates are
+ * filled by a single scan over the columns of a {@link LaunchTable}, so a
+ * dashboard that runs all the miner queries back to back only pulls the
+ * launches out of the database once.
+ * <p>
+ * Every snapshot carries a version. Versions increase monotonically across
+ * snapshots, so a caller holding an older version knows the data it saw has
+ * since been replaced.
+ * <p>
+ * Given a {@link ForkJoinPool}, the scan and the price ranking run in
+ * parallel: the rows are split into ranges, each range is aggregated (or
+ * ranked) on its own, and the partial results are merged in row order. Since
+ * every ranking breaks ties by row, parallel results are identical to serial
+ * ones. Tables too small to be worth splitting stay on the serial path.
+ */
+public class MinerSnapshot {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /**
+     * Ranges are not split below this many rows.
+     */
+    static final int MIN_ROWS_PER_TASK = 16_384;
+
+    /**
+     * Each worker gets about this many ranges, so uneven ranges balance out.
+     */
+    private static final int TASKS_PER_WORKER = 4;
+
+    private final long version;
+
+    private final LaunchTable table;
+
+    private final ForkJoinPool pool;
+
+    private final int[] launchesPerRocket;
+
+    private final ProviderReliability reliability;
+
+    /**
+     * Payload and launch counts per (orbit, country), flattened as
+     * orbit * number of countries + country.
+     */
+    private final int[] payloadsPerOrbitAndCountry;
+
+    private final int[] launchesPerOrbitAndCountry;
+
+    private final RevenueRollup revenue;
+
+    /**
+     * Built on the first recency or date range query.
+     */
+    private volatile LaunchDateIndex dateIndex;
+
+    /**
+     * Built on the first orbit lookup.
+     */
+    private volatile PostingLists orbitIndex;
+
+    private MinerSnapshot(LaunchTable table, ForkJoinPool pool) {
+        this.version = VERSIONS.incrementAndGet();
+        this.table = table;
+        this.pool = pool;
+        int rowsPerTask = rowsPerTask(table.size(), pool);
+        Partial totals = rowsPerTask >= table.size()
+                ? new Partial(table, 0, table.size())
+                : pool.invoke(new ScanTask(table, 0, table.size(), rowsPerTask));
+        this.launchesPerRocket = totals.launchesPerRocket;
+        this.payloadsPerOrbitAndCountry = totals.payloadsPerOrbitAndCountry;
+        this.launchesPerOrbitAndCountry = totals.launchesPerOrbitAndCountry;
+        this.revenue = totals.revenue;
+        this.reliability = ProviderReliability.of(table.providerDictionary(),
+                totals.successes, totals.failures, totals.firstRows);
+    }
+
+    /**
+     * Builds a snapshot from the given launches in a single pass.
+     *
+     * @param launches the launch history, in the order it was loaded.
+     * @return the snapshot.
+     */
+    public static MinerSnapshot of(Collection<Launch> launches) {
+        return new MinerSnapshot(LaunchTable.of(launches), null);
+    }
+
+    /**
+     * Builds a snapshot over an existing launch table.
+     *
+     * @param table the launch table.
+     * @return the snapshot.
+     */
+    public static MinerSnapshot of(LaunchTable table) {
+        return new MinerSnapshot(table, null);
+    }
+
+    /**
+     * Builds a snapshot over an existing launch table, aggregating and ranking
+     * in parallel on the given pool when the table is large enough.
+     *
+     * @param table the launch table.
+     * @param pool  the pool to run on, or null to stay serial.
+     * @return the snapshot.
+     */
+    public static MinerSnapshot of(LaunchTable table, ForkJoinPool pool) {
+        return new MinerSnapshot(table, pool);
+    }
+
+    /**
+     * Returns the number of rows each parallel task handles; a result of at
+     * least {@code rows} means the work stays serial.
+     */
+    static int rowsPerTask(int rows, ForkJoinPool pool) {
+        if (pool == null || pool.getParallelism() < 2 || rows < 2 * MIN_ROWS_PER_TASK)
+            return Math.max(rows, 1);
+        return Math.max(MIN_ROWS_PER_TASK, rows / (pool.getParallelism() * TASKS_PER_WORKER));
+    }
+
+    /**
+     * The aggregates of a range of rows. Partials of adjacent ranges merge by
+     * adding their counters, which gives the same totals in any grouping.
+     */
+    private static final class Partial {
+        private final int[] launchesPerRocket;
+        private final int[] payloadsPerOrbitAndCountry;
+        private final int[] launchesPerOrbitAndCountry;
+        private final RevenueRollup revenue;
+        private final int[] successes;
+        private final int[] failures;
+        private final int[] firstRows;
+
+        private Partial(LaunchTable table, int from, int to) {
+            int countryCount = table.countryDictionary().size();
+            int providerCount = table.providerDictionary().size();
+            int cells = table.orbitDictionary().size() * countryCount;
+            launchesPerRocket = new int[table.rocketDictionary().size()];
+            payloadsPerOrbitAndCountry = new int[cells];
+            launchesPerOrbitAndCountry = new int[cells];
+            successes = new int[providerCount];
+            failures = new int[providerCount];
+            firstRows = new int[providerCount];
+            Arrays.fill(firstRows, Integer.MAX_VALUE);
+            revenue = new RevenueRollup(providerCount);
+
+            int[] rockets = table.rockets();
+            int[] orbits = table.orbits();
+            int[] countries = table.countries();
+            int[] payloadCounts = table.payloadCounts();
+            for (int row = from; row < to; row++) {
+                int rocket = rockets[row];
+                if (rocket == Dictionary.NONE)
+                    continue;
+                launchesPerRocket[rocket]++;
+
+                int orbit = orbits[row];
+                int country = countries[row];
+                if (orbit != Dictionary.NONE && country != Dictionary.NONE) {
+                    int cell = orbit * countryCount + country;
+                    payloadsPerOrbitAndCountry[cell] += payloadCounts[row];
+                    launchesPerOrbitAndCountry[cell]++;
+                }
+            }
+            ProviderReliability.count(table, from, to, successes, failures, firstRows);
+            revenue.add(table, from, to);
+        }
+
+        private Partial merge(Partial other) {
+            add(launchesPerRocket, other.launchesPerRocket);
+            add(payloadsPerOrbitAndCountry, other.payloadsPerOrbitAndCountry);
+            add(launchesPerOrbitAndCountry, other.launchesPerOrbitAndCountry);
+            add(successes, other.successes);
+            add(failures, other.failures);
+            for (int i = 0; i < firstRows.length; i++) {
+                firstRows[i] = Math.min(firstRows[i], other.firstRows[i]);
+            }
+            revenue.merge(other.revenue);
+            return this;
+        }
+
+        private static void add(int[] into, int[] from) {
+            for (int i = 0; i < into.length; i++) {
+                into[i] += from[i];
+            }
+        }
+    }
+
+    private static final class ScanTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final LaunchTable table;
+        private final int from;
+        private final int to;
+        private final int rowsPerTask;
+
+        private ScanTask(LaunchTable table, int from, int to, int rowsPerTask) {
+            this.table = table;
+            this.from = from;
+            this.to = to;
+            this.rowsPerTask = rowsPerTask;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= rowsPerTask)
+                return new Partial(table, from, to);
+            int middle = (from + to) >>> 1;
+            ScanTask right = new ScanTask(table, middle, to, rowsPerTask);
+            right.fork();
+            Partial left = new ScanTask(table, from, middle, rowsPerTask).compute();
+            return left.merge(right.join());
+        }
+    }
+
+    /**
+     * Ranks each range of rows on its own and keeps the best k rows of every
+     * range, then ranks the survivors. Survivors stay in row order, so ties
+     * are broken exactly as in a serial ranking.
+     */
+    private static final class RankTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int k;
+        private final int rowsPerTask;
+        private final TopK.IndexOrder order;
+
+        private RankTask(int from, int to, int k, int rowsPerTask, TopK.IndexOrder order) {
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.rowsPerTask = rowsPerTask;
+            this.order = order;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= rowsPerTask) {
+                int[] top = TopK.select(to - from, Math.min(k, to - from),
+                        (a, b) -> order.compare(from + a, from + b));
+                for (int i = 0; i < top.length; i++) {
+                    top[i] += from;
+                }
+                Arrays.sort(top);
+                return top;
+            }
+            int middle = (from + to) >>> 1;
+            RankTask right = new RankTask(middle, to, k, rowsPerTask, order);
+            right.fork();
+            int[] left = new RankTask(from, middle, k, rowsPerTask, order).compute();
+            int[] survivors = merge(left, right.join());
+            if (survivors.length <= k)
+                return survivors;
+            int[] top = TopK.select(survivors.length, k, (a, b) -> order.compare(survivors[a], survivors[b]));
+            for (int i = 0; i < top.length; i++) {
+                top[i] = survivors[top[i]];
+            }
+            Arrays.sort(top);
+            return top;
+        }
+
+        private static int[] merge(int[] left, int[] right) {
+            int[] rows = Arrays.copyOf(left, left.length + right.length);
+            System.arraycopy(right, 0, rows, left.length, right.length);
+            return rows;
+        }
+    }
+
+    /**
+     * Returns the k best rows under the given order, best first.
+     */
+    private int[] topRows(int k, TopK.IndexOrder order) {
+        int rowsPerTask = rowsPerTask(table.size(), pool);
+        if (rowsPerTask >= table.size())
+            return TopK.select(table.size(), k, order);
+        int[] survivors = pool.invoke(new RankTask(0, table.size(), k, rowsPerTask, order));
+        int[] top = TopK.select(survivors.length, k, (a, b) -> order.compare(survivors[a], survivors[b]));
+        for (int i = 0; i < top.length; i++) {
+            top[i] = survivors[top[i]];
+        }
+        return top;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public LaunchTable getTable() {
+        return table;
+    }
+
+    public List<Launch> getLaunches() {
+        return table.launches();
+    }
+
+    public ProviderReliability getReliability() {
+        return reliability;
+    }
+
+    /**
+     * Returns the top-k most launched rockets.
+     *
+     * @param k the number of rockets to be returned.
+     * @return the list of k most active rockets.
+     */
+    public List<Rocket> mostLaunchedRockets(int k) {
+        if (k > launchesPerRocket.length || k < 0)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        int[] top = TopK.select(launchesPerRocket.length, k,
+                (a, b) -> Integer.compare(launchesPerRocket[b], launchesPerRocket[a]));
+        List<Rocket> result = new ArrayList<>(k);
+        for (int rocket : top) {
+            result.add(table.rocketDictionary().decode(rocket));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the top-k launch service providers by percentage of successful launches.
+     *
+     * @param k the number of launch service providers to be returned.
+     * @return the list of k most reliable ones.
+     */
+    public List<LaunchServiceProvider> mostReliableLaunchServiceProviders(int k) {
+        return reliability.mostReliable(k);
+    }
+
+    /**
+     * Returns the top-k most recent launches, read off the tail of the date index.
+     *
+     * @param k the number of launches to be returned.
+     * @return the list of k most recent launches.
+     */
+    public List<Launch> mostRecentLaunches(int k) {
+        return launchesAt(getDateIndex().mostRecent(k));
+    }
+
+    /**
+     * Returns the launches between two dates, both inclusive, most recent first.
+     *
+     * @param from the first date.
+     * @param to   the last date.
+     * @return the launches in the date range.
+     */
+    public List<Launch> launchesBetween(LocalDate from, LocalDate to) {
+        return launchesAt(getDateIndex().between(from, to));
+    }
+
+    public LaunchDateIndex getDateIndex() {
+        LaunchDateIndex index = dateIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = dateIndex;
+                if (index == null) {
+                    index = LaunchDateIndex.of(table);
+                    dateIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the country that sends the most payload to the given orbit.
+     *
+     * @param orbit the orbit
+     * @return the dominant country of the orbit.
+     */
+    public String dominantCountry(String orbit) {
+        int country = dominantCountryOf(table.orbitDictionary().idOf(orbit));
+        if (country == Dictionary.NONE)
+            throw new IllegalArgumentException("passed orbit not found");
+        return table.countryDictionary().decode(country);
+    }
+
+    /**
+     * Returns the dominant country of every orbit, from the per-orbit
+     * counters filled by the single scan. Orbits are in the order they were
+     * first seen; orbits without a launch on a known rocket are left out.
+     *
+     * @return the dominant country by orbit.
+     */
+    public Map<String, String> dominantCountryByOrbit() {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int orbit = 0; orbit < table.orbitDictionary().size(); orbit++) {
+            int country = dominantCountryOf(orbit);
+            if (country != Dictionary.NONE)
+                result.put(table.orbitDictionary().decode(orbit), table.countryDictionary().decode(country));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the id of the country with the most payloads in an orbit, the
+     * first seen one on ties, or {@link Dictionary#NONE} if no counted launch
+     * went to the orbit.
+     */
+    private int dominantCountryOf(int orbit) {
+        if (orbit == Dictionary.NONE)
+            return Dictionary.NONE;
+        int countryCount = table.countryDictionary().size();
+        int offset = orbit * countryCount;
+        int dominant = Dictionary.NONE;
+        for (int country = 0; country < countryCount; country++) {
+            if (launchesPerOrbitAndCountry[offset + country] > 0 && (dominant == Dictionary.NONE
+                    || payloadsPerOrbitAndCountry[offset + country] > payloadsPerOrbitAndCountry[offset + dominant]))
+                dominant = country;
+        }
+        return dominant;
+    }
+
+    /**
+     * Returns the launches to an orbit, in load order.
+     *
+     * @param orbit the orbit.
+     * @return the launches to the orbit.
+     */
+    public List<Launch> launchesInOrbit(String orbit) {
+        return launchesAt(getOrbitIndex().rows(table.orbitDictionary().idOf(orbit)));
+    }
+
+    public PostingLists getOrbitIndex() {
+        PostingLists index = orbitIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = orbitIndex;
+                if (index == null) {
+                    index = PostingLists.of(table.orbits(), table.size(), table.orbitDictionary().size());
+                    orbitIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the top-k most expensive launches.
+     *
+     * @param k the number of launches to be returned.
+     * @return the list of k most expensive launches.
+     */
+    public List<Launch> mostExpensiveLaunches(int k) {
+        if (k > table.size() || k < 0)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        return launchesAt(topRows(k, (a, b) -> table.comparePrices(b, a)));
+    }
+
+    /**
+     * Returns the top-k launch service providers by sales revenue in a year,
+     * where revenue is the exact sum of the prices of the launches of the
+     * rockets they manufacture.
+     *
+     * @param k    the number of launch service providers.
+     * @param year the year in request
+     * @return the list of k launch service providers with the highest revenue.
+     */
+    public List<LaunchServiceProvider> highestRevenueLaunchServiceProviders(int k, int year) {
+        int[] present = revenue.providers(year);
+        if (present.length == 0)
+            throw new IllegalArgumentException("Launch service provide not found in this year");
+        if (k > present.length || k < 0)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        int[] top = TopK.select(present.length, k, (a, b) -> revenue.compare(year, present[b], present[a]));
+        List<LaunchServiceProvider> result = new ArrayList<>(k);
+        for (int i : top) {
+            result.add(table.providerDictionary().decode(present[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the revenue of every launch service provider with launches in
+     * a year, in the order they were first seen.
+     *
+     * @param year the year in request
+     * @return the exact revenue by launch service provider.
+     */
+    public Map<LaunchServiceProvider, BigDecimal> revenueIn(int year) {
+        Map<LaunchServiceProvider, BigDecimal> result = new LinkedHashMap<>();
+        for (int provider : revenue.providers(year)) {
+            result.put(table.providerDictionary().decode(provider), revenue.revenue(year, provider));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the revenue of every launch service provider for every year
+     * with launches, as a time series in ascending year order.
+     *
+     * @return the exact revenue by launch service provider, by year.
+     */
+    public SortedMap<Integer, Map<LaunchServiceProvider, BigDecimal>> revenueByYear() {
+        SortedMap<Integer, Map<LaunchServiceProvider, BigDecimal>> result = new TreeMap<>();
+        for (int year : revenue.years()) {
+            result.put(year, revenueIn(year));
+        }
+        return result;
+    }
+
+    public RevenueRollup getRevenue() {
+        return revenue;
+    }
+
+    private List<Launch> launchesAt(int[] rows) {
+        return table.launches(rows);
+    }
+}
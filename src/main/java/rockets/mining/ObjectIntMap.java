@@ -0,0 +1,124 @@
+package rockets.mining;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing map from objects to primitive ints. Keys live in one
+ * array and values in another, and collisions probe linearly, so lookups and
+ * updates hash the key once and never box the value. Keys must not be null.
+ *
+ * @param <K> the type of keys.
+ */
+public class ObjectIntMap<K> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] keys;
+
+    private int[] values;
+
+    private int size;
+
+    private int mask;
+
+    public ObjectIntMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ObjectIntMap(int expectedSize) {
+        allocate(HashSlots.capacityFor(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the slot of a key, or the complement of the empty slot where it
+     * would be inserted.
+     */
+    private int slotOf(Object key) {
+        int slot = HashSlots.mix(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    public boolean containsKey(K key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value of a key, or the given default if the key is absent.
+     */
+    public int get(K key, int defaultValue) {
+        int slot = slotOf(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    public void put(K key, int value) {
+        int slot = slotOf(key);
+        if (slot >= 0)
+            values[slot] = value;
+        else
+            insert(~slot, key, value);
+    }
+
+    /**
+     * Returns the value of a key, associating the given value with it first
+     * if the key is absent.
+     */
+    public int putIfAbsent(K key, int value) {
+        int slot = slotOf(key);
+        if (slot >= 0)
+            return values[slot];
+        insert(~slot, key, value);
+        return value;
+    }
+
+    /**
+     * Adds a delta to the value of a key, counting absent keys from 0.
+     *
+     * @return the new value.
+     */
+    public int addTo(K key, int delta) {
+        int slot = slotOf(key);
+        if (slot >= 0)
+            return values[slot] += delta;
+        insert(~slot, key, delta);
+        return delta;
+    }
+
+    private void insert(int slot, K key, int value) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > HashSlots.maxSize(keys.length))
+            rehash();
+    }
+
+    private void rehash() {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = ~slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+}
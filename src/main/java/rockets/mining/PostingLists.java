@@ -0,0 +1,62 @@
+package rockets.mining;
+
+import java.util.Arrays;
+
+/**
+ * An inverted index over a dictionary-encoded column: for every value id, the
+ * rows holding that value, in row order. All posting lists share one array
+ * and are delimited by offsets, so the whole index is two int arrays built
+ * with a counting pass and a filling pass.
+ */
+public class PostingLists {
+    private final int[] offsets;
+
+    private final int[] rows;
+
+    private PostingLists(int[] offsets, int[] rows) {
+        this.offsets = offsets;
+        this.rows = rows;
+    }
+
+    /**
+     * Builds the posting lists of a column.
+     *
+     * @param column the value id of every row; {@link Dictionary#NONE} rows are left out.
+     * @param size   the number of rows.
+     * @param values the number of distinct value ids.
+     * @return the index.
+     */
+    public static PostingLists of(int[] column, int size, int values) {
+        int[] offsets = new int[values + 1];
+        for (int row = 0; row < size; row++) {
+            if (column[row] != Dictionary.NONE)
+                offsets[column[row] + 1]++;
+        }
+        for (int id = 0; id < values; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+        int[] next = Arrays.copyOf(offsets, values);
+        int[] rows = new int[offsets[values]];
+        for (int row = 0; row < size; row++) {
+            if (column[row] != Dictionary.NONE)
+                rows[next[column[row]]++] = row;
+        }
+        return new PostingLists(offsets, rows);
+    }
+
+    /**
+     * Returns the number of rows holding a value id.
+     */
+    public int count(int id) {
+        return id == Dictionary.NONE ? 0 : offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Returns the rows holding a value id, in row order.
+     */
+    public int[] rows(int id) {
+        if (id == Dictionary.NONE)
+            return new int[0];
+        return Arrays.copyOfRange(rows, offsets[id], offsets[id + 1]);
+    }
+}
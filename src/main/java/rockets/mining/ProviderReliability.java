@@ -0,0 +1,201 @@
+package rockets.mining;
+
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * Streaming reliability counters for launch service providers. Each launch is
+ * visited once and bumps a primitive success or failure counter of its
+ * provider, so the cost is linear in the number of launches.
+ * <p>
+ * Ratios are kept exact: providers are ranked by comparing their success
+ * fractions with cross multiplication, and rounding is only applied when a
+ * ratio is presented through {@link #roundedReliability(LaunchServiceProvider, int)}.
+ */
+public class ProviderReliability {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ObjectIntMap<LaunchServiceProvider> indexes = new ObjectIntMap<>();
+
+    private final List<LaunchServiceProvider> providers = new ArrayList<>();
+
+    private int[] successes = new int[INITIAL_CAPACITY];
+
+    private int[] failures = new int[INITIAL_CAPACITY];
+
+    /**
+     * Counts the outcomes of every row of a launch table with one loop over
+     * its provider and outcome columns.
+     *
+     * @param table the launch table.
+     * @return the reliability counters.
+     */
+    public static ProviderReliability of(LaunchTable table) {
+        int providerCount = table.providerDictionary().size();
+        int[] successes = new int[providerCount];
+        int[] failures = new int[providerCount];
+        int[] firstRows = new int[providerCount];
+        Arrays.fill(firstRows, Integer.MAX_VALUE);
+        count(table, 0, table.size(), successes, failures, firstRows);
+        return of(table.providerDictionary(), successes, failures, firstRows);
+    }
+
+    /**
+     * Adds the outcomes of rows [from, to) of a launch table to counters
+     * indexed by provider id, and lowers the first row each provider appears in.
+     */
+    static void count(LaunchTable table, int from, int to, int[] successes, int[] failures, int[] firstRows) {
+        int[] providers = table.providers();
+        BitSet successful = table.successful();
+        BitSet failed = table.failed();
+        for (int row = from; row < to; row++) {
+            int provider = providers[row];
+            if (provider == Dictionary.NONE)
+                continue;
+            if (firstRows[provider] > row)
+                firstRows[provider] = row;
+            if (successful.get(row))
+                successes[provider]++;
+            else if (failed.get(row))
+                failures[provider]++;
+        }
+    }
+
+    /**
+     * Creates reliability counters from counters indexed by provider id.
+     * Providers are ordered by the first row they appear in; providers that
+     * never appear are left out.
+     */
+    static ProviderReliability of(Dictionary<LaunchServiceProvider> dictionary,
+                                  int[] successes, int[] failures, int[] firstRows) {
+        int[] present = new int[firstRows.length];
+        int size = 0;
+        for (int provider = 0; provider < firstRows.length; provider++) {
+            if (firstRows[provider] != Integer.MAX_VALUE)
+                present[size++] = provider;
+        }
+        int[] ordered = TopK.select(size, size, (a, b) -> Integer.compare(firstRows[present[a]], firstRows[present[b]]));
+        ProviderReliability reliability = new ProviderReliability();
+        for (int i : ordered) {
+            int provider = present[i];
+            int index = reliability.indexOf(dictionary.decode(provider));
+            reliability.successes[index] = successes[provider];
+            reliability.failures[index] = failures[provider];
+        }
+        return reliability;
+    }
+
+    /**
+     * Counts the outcome of a launch against its launch service provider.
+     * Launches without a provider are ignored, and launches without an outcome
+     * register the provider without changing its ratio.
+     *
+     * @param launch the launch to be counted.
+     */
+    public void accept(Launch launch) {
+        LaunchServiceProvider provider = launch.getLaunchServiceProvider();
+        if (provider == null)
+            return;
+        int index = indexOf(provider);
+        if (launch.getLaunchOutcome() == Launch.LaunchOutcome.SUCCESSFUL)
+            successes[index]++;
+        else if (launch.getLaunchOutcome() == Launch.LaunchOutcome.FAILED)
+            failures[index]++;
+    }
+
+    private int indexOf(LaunchServiceProvider provider) {
+        int next = providers.size();
+        int index = indexes.putIfAbsent(provider, next);
+        if (index != next)
+            return index;
+        if (next == successes.length) {
+            successes = Arrays.copyOf(successes, next * 2);
+            failures = Arrays.copyOf(failures, next * 2);
+        }
+        providers.add(provider);
+        return next;
+    }
+
+    private int indexOfExisting(LaunchServiceProvider provider) {
+        return provider == null ? Dictionary.NONE : indexes.get(provider, Dictionary.NONE);
+    }
+
+    public int size() {
+        return providers.size();
+    }
+
+    public int getSuccesses(LaunchServiceProvider provider) {
+        int index = indexOfExisting(provider);
+        return index == Dictionary.NONE ? 0 : successes[index];
+    }
+
+    public int getFailures(LaunchServiceProvider provider) {
+        int index = indexOfExisting(provider);
+        return index == Dictionary.NONE ? 0 : failures[index];
+    }
+
+    /**
+     * Returns the exact fraction of successful launches of a provider, or 0
+     * when none of its launches has an outcome.
+     *
+     * @param provider the launch service provider.
+     * @return the reliability in [0, 1].
+     */
+    public double reliability(LaunchServiceProvider provider) {
+        int index = indexOfExisting(provider);
+        if (index == Dictionary.NONE)
+            return 0.0;
+        long total = (long) successes[index] + failures[index];
+        return total == 0 ? 0.0 : (double) successes[index] / total;
+    }
+
+    /**
+     * Returns the reliability of a provider rounded half-even for presentation.
+     *
+     * @param provider the launch service provider.
+     * @param scale    the number of decimal places.
+     * @return the rounded reliability.
+     */
+    public BigDecimal roundedReliability(LaunchServiceProvider provider, int scale) {
+        int index = indexOfExisting(provider);
+        if (index == Dictionary.NONE)
+            return BigDecimal.ZERO.setScale(scale);
+        long total = (long) successes[index] + failures[index];
+        if (total == 0)
+            return BigDecimal.ZERO.setScale(scale);
+        return BigDecimal.valueOf(successes[index]).divide(BigDecimal.valueOf(total), scale, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Returns the top-k most reliable providers. Providers with equal
+     * reliability keep the order in which they were first seen.
+     *
+     * @param k the number of launch service providers to be returned.
+     * @return the list of k most reliable ones.
+     */
+    public List<LaunchServiceProvider> mostReliable(int k) {
+        if (k > providers.size() || k < 0)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        int[] top = TopK.select(providers.size(), k, this::compareByReliability);
+        List<LaunchServiceProvider> result = new ArrayList<>(k);
+        for (int index : top) {
+            result.add(providers.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Orders provider indexes by descending success fraction, comparing
+     * s1 / t1 against s2 / t2 as s1 * t2 against s2 * t1 so no precision is lost.
+     * Equal ratios are left to {@link TopK}, which keeps first-seen order.
+     */
+    private int compareByReliability(int a, int b) {
+        long totalA = Math.max(1L, (long) successes[a] + failures[a]);
+        long totalB = Math.max(1L, (long) successes[b] + failures[b]);
+        return Long.compare(successes[b] * totalA, successes[a] * totalB);
+    }
+}
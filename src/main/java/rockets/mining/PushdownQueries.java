@@ -0,0 +1,113 @@
+package rockets.mining;
+
+import rockets.dataaccess.neo4j.LaunchGroup;
+import rockets.dataaccess.neo4j.Neo4jDAO;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Miner queries answered by aggregation queries that run inside Neo4j. Only
+ * one row per group (rocket, provider, country), or per candidate launch,
+ * crosses into the JVM, and only the k entities of an answer are loaded, in
+ * one batch, so the cost grows with the number of groups instead of the
+ * number of launches.
+ * <p>
+ * Groups come back ordered by their first launch, so ties are broken in the
+ * same first-seen order as in {@link MinerSnapshot}.
+ */
+public class PushdownQueries {
+    private final Neo4jDAO dao;
+
+    public PushdownQueries(Neo4jDAO dao) {
+        this.dao = dao;
+    }
+
+    public List<Rocket> mostLaunchedRockets(int k) {
+        List<LaunchGroup<Long>> groups = dao.countLaunchesByRocket();
+        int[] top = select(groups.size(), k, (a, b) -> Long.compare(groups.get(b).getLaunches(), groups.get(a).getLaunches()));
+        return load(Rocket.class, groups, top);
+    }
+
+    public List<LaunchServiceProvider> mostReliableLaunchServiceProviders(int k) {
+        List<LaunchGroup<Long>> groups = dao.countOutcomesByProvider();
+        int[] top = select(groups.size(), k, (a, b) -> {
+            LaunchGroup<Long> groupA = groups.get(a);
+            LaunchGroup<Long> groupB = groups.get(b);
+            long totalA = Math.max(1L, groupA.getSuccesses() + groupA.getFailures());
+            long totalB = Math.max(1L, groupB.getSuccesses() + groupB.getFailures());
+            return Long.compare(groupB.getSuccesses() * totalA, groupA.getSuccesses() * totalB);
+        });
+        return load(LaunchServiceProvider.class, groups, top);
+    }
+
+    public List<Launch> mostRecentLaunches(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        List<Long> ids = dao.findMostRecentLaunchIds(k);
+        if (ids.size() < k)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        return dao.loadAll(Launch.class, ids);
+    }
+
+    public String dominantCountry(String orbit) {
+        List<LaunchGroup<String>> groups = dao.countPayloadsByCountry(orbit);
+        if (groups.isEmpty())
+            throw new IllegalArgumentException("passed orbit not found");
+        int[] top = TopK.select(groups.size(), 1, (a, b) -> Long.compare(groups.get(b).getPayloads(), groups.get(a).getPayloads()));
+        return groups.get(top[0]).getKey();
+    }
+
+    /**
+     * Ranks launches by price exactly among the candidates the database
+     * narrows them down to, since prices are stored as strings and can only
+     * be ordered approximately there. Launches without a price rank last.
+     */
+    public List<Launch> mostExpensiveLaunches(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        Map<Long, BigDecimal> prices = dao.findMostExpensiveLaunchPrices(k);
+        List<Long> ids = new ArrayList<>(prices.keySet());
+        List<BigDecimal> values = new ArrayList<>(prices.values());
+        int[] top = select(ids.size(), k, (a, b) -> {
+            BigDecimal priceA = values.get(a);
+            BigDecimal priceB = values.get(b);
+            if (priceA == null || priceB == null)
+                return priceA == null ? (priceB == null ? 0 : 1) : -1;
+            return priceB.compareTo(priceA);
+        });
+        List<Long> topIds = new ArrayList<>(k);
+        for (int i : top) {
+            topIds.add(ids.get(i));
+        }
+        return dao.loadAll(Launch.class, topIds);
+    }
+
+    public List<LaunchServiceProvider> highestRevenueLaunchServiceProviders(int k, int year) {
+        List<LaunchGroup<Long>> groups = dao.sumRevenueByManufacturer(year);
+        if (groups.isEmpty())
+            throw new IllegalArgumentException("Launch service provide not found in this year");
+        int[] top = select(groups.size(), k, (a, b) -> groups.get(b).getRevenue().compareTo(groups.get(a).getRevenue()));
+        return load(LaunchServiceProvider.class, groups, top);
+    }
+
+    private static int[] select(int n, int k, TopK.IndexOrder order) {
+        if (k > n || k < 0)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        return TopK.select(n, k, order);
+    }
+
+    private <T extends Entity> List<T> load(Class<T> clazz, List<LaunchGroup<Long>> groups, int[] top) {
+        List<Long> ids = new ArrayList<>(top.length);
+        for (int i : top) {
+            ids.add(groups.get(i).getKey());
+        }
+        return dao.loadAll(clazz, ids);
+    }
+}
@@ -0,0 +1,203 @@
+package rockets.mining;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sales revenue per manufacturer and year, summed from the price column of a
+ * {@link LaunchTable}. Prices are added as {@code long} minor units, so the
+ * sums are exact and adding a launch allocates nothing. Only when a sum would
+ * overflow, or a price has more decimals than the minor unit, is the excess
+ * carried in a {@link BigDecimal} next to the long.
+ * <p>
+ * Rollups over disjoint row ranges merge by adding their sums, so a table can
+ * be rolled up in parallel.
+ */
+public class RevenueRollup {
+    /**
+     * Launch dates are after 1900, so years are indexed from there.
+     */
+    public static final int FIRST_YEAR = 1900;
+
+    private final int providerCount;
+
+    /**
+     * Indexed by year - FIRST_YEAR; null for years without launches.
+     */
+    private YearRevenue[] years = new YearRevenue[0];
+
+    private static final class YearRevenue {
+        private final int[] launches;
+        private final long[] minorUnits;
+        /**
+         * What does not fit the long sums, or null while everything does.
+         */
+        private BigDecimal[] excess;
+
+        private YearRevenue(int providerCount) {
+            launches = new int[providerCount];
+            minorUnits = new long[providerCount];
+        }
+
+        private void add(int provider, long price) {
+            long sum = minorUnits[provider] + price;
+            // the sum overflowed iff both operands have the opposite sign of the result
+            if (((minorUnits[provider] ^ sum) & (price ^ sum)) < 0) {
+                addExcess(provider, BigDecimal.valueOf(minorUnits[provider], LaunchTable.PRICE_SCALE));
+                sum = price;
+            }
+            minorUnits[provider] = sum;
+        }
+
+        private void addExcess(int provider, BigDecimal amount) {
+            if (excess == null)
+                excess = new BigDecimal[minorUnits.length];
+            excess[provider] = excess[provider] == null ? amount : excess[provider].add(amount);
+        }
+
+        private BigDecimal revenue(int provider) {
+            BigDecimal revenue = BigDecimal.valueOf(minorUnits[provider], LaunchTable.PRICE_SCALE);
+            if (excess != null && excess[provider] != null)
+                revenue = revenue.add(excess[provider]);
+            return revenue;
+        }
+
+        private int compare(int a, int b) {
+            if (excess == null || (excess[a] == null && excess[b] == null))
+                return Long.compare(minorUnits[a], minorUnits[b]);
+            return revenue(a).compareTo(revenue(b));
+        }
+    }
+
+    /**
+     * @param providerCount the number of manufacturer ids.
+     */
+    public RevenueRollup(int providerCount) {
+        this.providerCount = providerCount;
+    }
+
+    /**
+     * Rolls up every row of a launch table.
+     *
+     * @param table the launch table.
+     * @return the rollup.
+     */
+    public static RevenueRollup of(LaunchTable table) {
+        RevenueRollup rollup = new RevenueRollup(table.providerDictionary().size());
+        rollup.add(table, 0, table.size());
+        return rollup;
+    }
+
+    /**
+     * Adds rows [from, to) of a launch table. A launch counts towards the
+     * manufacturer of its rocket in the year of its launch date; launches
+     * without either are skipped, and launches without a price count with
+     * no revenue.
+     */
+    public void add(LaunchTable table, int from, int to) {
+        int[] rockets = table.rockets();
+        int[] manufacturers = table.manufacturers();
+        int[] epochDays = table.epochDays();
+        long[] prices = table.prices();
+        for (int row = from; row < to; row++) {
+            int manufacturer = manufacturers[row];
+            if (rockets[row] == Dictionary.NONE || manufacturer == Dictionary.NONE || epochDays[row] == LaunchTable.NO_DATE)
+                continue;
+            YearRevenue year = year(LaunchTable.yearOf(epochDays[row]));
+            year.launches[manufacturer]++;
+            if (prices[row] != LaunchTable.NO_PRICE) {
+                year.add(manufacturer, prices[row]);
+            } else {
+                BigDecimal price = table.price(row);
+                if (price != null)
+                    year.addExcess(manufacturer, price);
+            }
+        }
+    }
+
+    private YearRevenue year(int year) {
+        int index = year - FIRST_YEAR;
+        if (index >= years.length)
+            years = Arrays.copyOf(years, index + 1);
+        if (years[index] == null)
+            years[index] = new YearRevenue(providerCount);
+        return years[index];
+    }
+
+    /**
+     * Adds the sums of another rollup over the same table.
+     *
+     * @param other the rollup of other rows.
+     * @return this rollup.
+     */
+    public RevenueRollup merge(RevenueRollup other) {
+        for (int index = 0; index < other.years.length; index++) {
+            YearRevenue from = other.years[index];
+            if (from == null)
+                continue;
+            YearRevenue into = year(FIRST_YEAR + index);
+            for (int provider = 0; provider < providerCount; provider++) {
+                into.launches[provider] += from.launches[provider];
+                into.add(provider, from.minorUnits[provider]);
+                if (from.excess != null && from.excess[provider] != null)
+                    into.addExcess(provider, from.excess[provider]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the years with at least one counted launch, in ascending order.
+     */
+    public int[] years() {
+        BitSet present = new BitSet();
+        for (int index = 0; index < years.length; index++) {
+            if (years[index] != null)
+                present.set(index);
+        }
+        return present.stream().map(index -> FIRST_YEAR + index).toArray();
+    }
+
+    /**
+     * Returns the manufacturer ids with at least one counted launch in a
+     * year, in id order.
+     */
+    public int[] providers(int year) {
+        YearRevenue revenue = get(year);
+        if (revenue == null)
+            return new int[0];
+        int[] ids = new int[providerCount];
+        int size = 0;
+        for (int provider = 0; provider < providerCount; provider++) {
+            if (revenue.launches[provider] > 0)
+                ids[size++] = provider;
+        }
+        return Arrays.copyOf(ids, size);
+    }
+
+    public int launches(int year, int provider) {
+        YearRevenue revenue = get(year);
+        return revenue == null ? 0 : revenue.launches[provider];
+    }
+
+    /**
+     * Returns the exact revenue of a manufacturer in a year.
+     */
+    public BigDecimal revenue(int year, int provider) {
+        YearRevenue revenue = get(year);
+        return revenue == null ? BigDecimal.ZERO.setScale(LaunchTable.PRICE_SCALE) : revenue.revenue(provider);
+    }
+
+    /**
+     * Compares the revenue of two manufacturers in a year, which must have launches.
+     */
+    public int compare(int year, int a, int b) {
+        return get(year).compare(a, b);
+    }
+
+    private YearRevenue get(int year) {
+        int index = year - FIRST_YEAR;
+        return index >= 0 && index < years.length ? years[index] : null;
+    }
+}
@@ -3,65 +3,231 @@ package rockets.mining;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rockets.dataaccess.DAO;
+import rockets.dataaccess.Query;
 import rockets.model.Launch;
 import rockets.model.LaunchServiceProvider;
 import rockets.model.Rocket;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.text.DecimalFormat;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.apache.commons.lang3.Validate.isTrue;
 import static org.apache.commons.lang3.Validate.notBlank;
+import static org.apache.commons.lang3.Validate.notNull;
 
 public class RocketMiner {
     private static Logger logger = LoggerFactory.getLogger(RocketMiner.class);
 
+    /**
+     * Streamed launches are loaded with their rocket's manufacturer, which
+     * revenue is attributed to.
+     */
+    private static final int STREAMING_DEPTH = 2;
+
     private DAO dao;
 
+    private volatile MinerSnapshot snapshot;
+
+    private MinerLeaderboards leaderboards;
+
+    private ForkJoinPool pool;
+
+    private PushdownQueries pushdown;
+
+    private int pageSize;
+
+    private volatile boolean scoped;
+
     public RocketMiner(DAO dao) {
         this.dao = dao;
     }
 
     /**
-     * TODO: to be implemented & tested!
+     * Creates a miner that answers the six ranking queries with aggregation
+     * queries run inside the database instead of loading every launch. The
+     * remaining queries are answered from the snapshot.
+     *
+     * @param dao      the DAO launches are loaded from.
+     * @param pushdown the aggregation queries of the same database.
+     */
+    public RocketMiner(DAO dao, PushdownQueries pushdown) {
+        this.dao = dao;
+        this.pushdown = pushdown;
+    }
+
+    /**
+     * Creates a miner that builds snapshots and ranks launches in parallel on
+     * a pool of its own, so it does not compete with other users of the
+     * common pool. Call {@link #shutdown()} once the miner is no longer used.
+     *
+     * @param dao         the DAO launches are loaded from.
+     * @param parallelism the number of worker threads.
+     */
+    public RocketMiner(DAO dao, int parallelism) {
+        this.dao = dao;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Creates a miner that answers the rocket, reliability, recency, revenue
+     * and dominant country queries from incrementally maintained leaderboards.
+     * The remaining queries are answered from the snapshot.
+     *
+     * @param dao          the DAO launches are loaded from.
+     * @param leaderboards leaderboards attached to the same data.
+     */
+    public RocketMiner(DAO dao, MinerLeaderboards leaderboards) {
+        this.dao = dao;
+        this.leaderboards = leaderboards;
+    }
+
+    /**
+     * Returns the snapshot the miner queries are answered from, loading the
+     * launch history on first use.
+     *
+     * @return the current snapshot.
+     */
+    public MinerSnapshot getSnapshot() {
+        MinerSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reloads the launch history and replaces the current snapshot.
+     *
+     * @return the new snapshot.
+     */
+    public synchronized MinerSnapshot refresh() {
+        snapshot = load();
+        return snapshot;
+    }
+
+    /**
+     * Replaces the current snapshot with one opened from a file written by
+     * {@link SnapshotFile#write(DAO, Path)}, so that the
+     * miner answers queries without loading the launch history. A later
+     * {@link #refresh()} or {@link #invalidate()} goes back to the DAO.
+     *
+     * @param file the snapshot file.
+     * @return the new snapshot.
+     * @throws IOException if the file cannot be opened as a snapshot.
+     */
+    public synchronized MinerSnapshot open(Path file) throws IOException {
+        snapshot = MinerSnapshot.of(SnapshotFile.open(file), pool);
+        return snapshot;
+    }
+
+    /**
+     * Makes the miner stream launches from the DAO a page at a time when it
+     * builds a snapshot. Each page is folded into the columns and released,
+     * and launches are loaded again by id only when they are returned, so
+     * memory is bounded by the columns instead of the launch objects.
+     *
+     * @param pageSize the number of launches per page, or 0 to load all
+     *                 launches at once.
+     */
+    public synchronized void setPageSize(int pageSize) {
+        if (pageSize < 0)
+            throw new IllegalArgumentException("page size cannot be negative");
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Makes the dominant country and the revenue queries of a year load only
+     * the launches of their orbit or year, filtered by the DAO through
+     * {@link DAO#find(Query, int)}, as long as no snapshot has been loaded.
+     * Once one has, queries are answered from it as usual.
+     *
+     * @param scoped whether orbit and year queries load only matching launches.
+     */
+    public synchronized void setScoped(boolean scoped) {
+        this.scoped = scoped;
+    }
+
+    /**
+     * Returns the snapshot to answer a query from: the current one, or one of
+     * only the launches the query needs if the miner is scoped and has not
+     * loaded a snapshot yet.
+     */
+    private MinerSnapshot snapshotOf(Query<Launch> query) {
+        if (scoped && snapshot == null)
+            return MinerSnapshot.of(LaunchTable.of(dao.find(query, STREAMING_DEPTH)), pool);
+        return getSnapshot();
+    }
+
+    private static Query<Launch> launchesIn(int year) {
+        return Query.of(Launch.class).between("launchDate", LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+    }
+
+    private MinerSnapshot load() {
+        if (pageSize == 0)
+            return MinerSnapshot.of(LaunchTable.of(dao.loadAll(Launch.class)), pool);
+        LaunchTable.Builder builder = new LaunchTable.Builder(pageSize, false);
+        dao.loadAll(Launch.class, pageSize, STREAMING_DEPTH, page -> page.forEach(builder::add));
+        return MinerSnapshot.of(builder.buildBatched(ids -> dao.loadAll(Launch.class, ids, STREAMING_DEPTH)), pool);
+    }
+
+    /**
+     * Stops the worker threads of a parallel miner. Queries still answered
+     * afterwards run serially.
+     */
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Drops the current snapshot so the next query reloads the launch history.
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    /**
+     * Returns whether a snapshot version is still the one queries are answered from.
+     *
+     * @param version the version of a previously obtained snapshot.
+     * @return false if the snapshot has since been refreshed or invalidated.
+     */
+    public boolean isCurrent(long version) {
+        MinerSnapshot current = snapshot;
+        return current != null && current.getVersion() == version;
+    }
+
+    /**
      * Returns the top-k most active rockets, as measured by number of completed launches.
      *
      * @param k the number of rockets to be returned.
      * @return the list of k most active rockets.
      */
     public List<Rocket> mostLaunchedRockets(int k) {
-        logger.info("find most launched" + k + "rockets");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        if (launches == null)
-            throw new NullPointerException("no launches in database");
-        ArrayList<Rocket> rockets = new ArrayList<>();
-        for (Launch launch : launches) {
-            rockets.add(launch.getLaunchVehicle());
-        }
-        Map<Rocket,Integer> rocketMap = new HashMap<>();
-        for (Rocket rocket: rockets) {
-            if (rocketMap.containsKey(rocket)) {
-                int count = rocketMap.get(rocket) + 1;
-                rocketMap.replace(rocket,count);
-            }
-            else
-                rocketMap.put(rocket,1);
-        }
-        if (k>rocketMap.size()|| k < 0)
-            throw new IllegalArgumentException("k beyond the data boundary");
-        ArrayList<Rocket> rockets1 = new ArrayList<>();
-        Set<Map.Entry<Rocket,Integer>> rocketMap2 =
-                rocketMap.entrySet().stream().sorted(Map.Entry.<Rocket,Integer>comparingByValue().reversed()).limit(k).collect(Collectors.toSet());
-        for (Map.Entry<Rocket,Integer> map : rocketMap2) {
-            rockets1.add(map.getKey());
-        }
-        return rockets1;
+        logger.info("find most launched " + k + " rockets");
+        if (leaderboards != null)
+            return leaderboards.mostLaunchedRockets(k);
+        if (pushdown != null)
+            return pushdown.mostLaunchedRockets(k);
+        return getSnapshot().mostLaunchedRockets(k);
     }
 
     /**
-     * TODO: to be implemented & tested!
      * <p>
      * Returns the top-k most reliable launch service providers as measured
      * by percentage of successful launches.
@@ -71,69 +237,11 @@ public class RocketMiner {
      */
     public List<LaunchServiceProvider> mostReliableLaunchServiceProviders(int k) {
         logger.info("find most reliable " + k + " launch services providers");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        if (launches == null)
-            throw new NullPointerException("no launches in database");
-        List<Launch> launches1 = launches.stream().collect(Collectors.toList());
-        ArrayList<LaunchServiceProvider> launchServiceProviders = new ArrayList<>();
-        Map<LaunchServiceProvider,Double> launchServiceProviderDoubleMap = new HashMap<>();
-        for (int i = 0; i < launches1.size(); i++)
-        {
-            double success = 0;
-            double failed = 0;
-            double reliable = 0;
-            if (launches1.get(i).getLaunchOutcome().equals(Launch.LaunchOutcome.SUCCESSFUL))
-                success = 1;
-            else if (launches1.get(i).getLaunchOutcome().equals(Launch.LaunchOutcome.FAILED))
-                failed = 0;
-            LaunchServiceProvider launchServiceProvider = launches1.get(i).getLaunchServiceProvider();
-            int j = i + 1;
-            while (j < launches1.size())
-            {
-
-                LaunchServiceProvider launchServiceProvider1 = launches1.get(i).getLaunchServiceProvider();
-                LaunchServiceProvider launchServiceProvider2 = launches1.get(j).getLaunchServiceProvider();
-
-                if (launchServiceProvider1.equals(launchServiceProvider2))
-                {
-                    if (launches1.get(j).getLaunchOutcome().equals(Launch.LaunchOutcome.SUCCESSFUL))
-                    {
-                        success = success + 1;
-                    }
-                    else if (launches1.get(j).getLaunchOutcome().equals(Launch.LaunchOutcome.FAILED))
-                    {
-                        failed = failed + 1;
-                    }
-                    launches1.remove(j);
-                }
-                else
-                    j ++;
-            }
-            DecimalFormat df = new DecimalFormat("#.##");
-            Double reliable1 = success / (success + failed);
-            reliable = Double.parseDouble(df.format(reliable1));
-            launchServiceProviderDoubleMap.put(launchServiceProvider,reliable);
-        }
-        if (k>launchServiceProviderDoubleMap.size()|| k < 0)
-            throw new IllegalArgumentException("k beyond the data boundary");
-        Comparator<Map.Entry<LaunchServiceProvider,Double>> entryComparator = new Comparator<Map.Entry<LaunchServiceProvider, Double>>() {
-            @Override
-            public int compare(Map.Entry<LaunchServiceProvider, Double> o1, Map.Entry<LaunchServiceProvider, Double> o2) {
-                if ((o2.getValue() - o1.getValue())>0)
-                    return 1;
-                else if((o2.getValue() - o1.getValue())==0)
-                    return 0;
-                else
-                    return -1;
-            }
-        };
-        List<Map.Entry<LaunchServiceProvider, Double>> entryList = new ArrayList<Map.Entry<LaunchServiceProvider, Double>>(launchServiceProviderDoubleMap.entrySet());
-        List<Map.Entry<LaunchServiceProvider,Double>> entryList1 = entryList.stream().sorted(entryComparator).limit(k).collect(Collectors.toList());
-        for (Map.Entry<LaunchServiceProvider,Double> lsp : entryList1)
-        {
-            launchServiceProviders.add(lsp.getKey());
-        }
-        return launchServiceProviders;
+        if (leaderboards != null)
+            return leaderboards.mostReliableLaunchServiceProviders(k);
+        if (pushdown != null)
+            return pushdown.mostReliableLaunchServiceProviders(k);
+        return getSnapshot().mostReliableLaunchServiceProviders(k);
     }
 
     /**
@@ -145,17 +253,32 @@ public class RocketMiner {
      */
     public List<Launch> mostRecentLaunches(int k) {
         logger.info("find most recent " + k + " launches");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        if (launches == null)
-            throw new NullPointerException("no launches in database");
-        if (k>launches.size()|| k < 0)
-            throw new IllegalArgumentException("k beyond the data boundary");
-        Comparator<Launch> launchDateComparator = (a, b) -> -a.getLaunchDate().compareTo(b.getLaunchDate());
-        return launches.stream().sorted(launchDateComparator).limit(k).collect(Collectors.toList());
+        if (leaderboards != null)
+            return leaderboards.mostRecentLaunches(k);
+        if (pushdown != null)
+            return pushdown.mostRecentLaunches(k);
+        return getSnapshot().mostRecentLaunches(k);
+    }
+
+    /**
+     * <p>
+     * Returns the launches between two dates, both inclusive, most recent first.
+     *
+     * @param from the first date.
+     * @param to   the last date.
+     * @return the launches in the date range.
+     */
+    public List<Launch> launchesBetween(LocalDate from, LocalDate to) {
+        notNull(from, "from date cannot be null");
+        notNull(to, "to date cannot be null");
+        isTrue(!to.isBefore(from), "from date cannot be after to date");
+        logger.info("find launches between " + from + " and " + to);
+        if (leaderboards != null)
+            return leaderboards.launchesBetween(from, to);
+        return getSnapshot().launchesBetween(from, to);
     }
 
     /**
-     * TODO: to be implemented & tested!
      * <p>
      * Returns the dominant country who has the most launched rockets in an orbit.
      *
@@ -165,33 +288,28 @@ public class RocketMiner {
     public String dominantCountry(String orbit) {
         notBlank(orbit, "orbit cannot be null or empty");
         logger.info("find dominant country");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        if (launches == null)
-            throw new NullPointerException("no launches in database");
-        Map<String,Integer> stringIntegerMap = new HashMap<>();
-        for (Launch launch : launches)
-        {
-            if (launch.getOrbit().equals(orbit))
-            {
-                if (stringIntegerMap.containsKey(launch.getLaunchVehicle().getCountry()))
-                {
-                    int count = stringIntegerMap.get(launch.getLaunchVehicle().getCountry()) + launch.getPayload().size();
-                    stringIntegerMap.replace(launch.getLaunchVehicle().getCountry(),count);
-                }
-                else
-                    stringIntegerMap.put(launch.getLaunchVehicle().getCountry(),1);
-            }
-        }
-        List<Map.Entry<String,Integer>> entryList = new ArrayList<>(stringIntegerMap.entrySet());
-        List<Map.Entry<String,Integer>> entryList1 = entryList.stream().sorted((a,b)->-a.getValue()-b.getValue()).limit(1).collect(Collectors.toList());
-        if (entryList1.size() != 1)
-            throw new IllegalArgumentException("passed orbit not found");
-        String country = entryList1.get(0).getKey();
-        return country;
+        if (leaderboards != null)
+            return leaderboards.dominantCountry(orbit);
+        if (pushdown != null)
+            return pushdown.dominantCountry(orbit);
+        return snapshotOf(Query.of(Launch.class).eq("orbit", orbit)).dominantCountry(orbit);
+    }
+
+    /**
+     * <p>
+     * Returns the dominant country of every orbit, computed together instead
+     * of one orbit at a time.
+     *
+     * @return the country who sends the most payload to each orbit.
+     */
+    public Map<String, String> dominantCountryByOrbit() {
+        logger.info("find dominant country by orbit");
+        if (leaderboards != null)
+            return leaderboards.dominantCountryByOrbit();
+        return getSnapshot().dominantCountryByOrbit();
     }
 
     /**
-     * TODO: to be implemented & tested!
      * <p>
      * Returns the top-k most expensive launches.
      *
@@ -199,19 +317,13 @@ public class RocketMiner {
      * @return the list of k most expensive launches.
      */
     public List<Launch> mostExpensiveLaunches(int k) {
-        logger.info("find most Expensive " + k + "Launches");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        if (launches == null)
-            throw new NullPointerException("no launches in database");
-        if (k>launches.size()|| k < 0)
-            throw new IllegalArgumentException("k beyond the data boundary");
-        Comparator<Launch> launchComparator = (a,b) -> -a.getPrice().compareTo(b.getPrice());
-        List<Launch> launchList = launches.stream().sorted(launchComparator).limit(k).collect(Collectors.toList());
-        return launchList;
+        logger.info("find most Expensive " + k + " Launches");
+        if (pushdown != null)
+            return pushdown.mostExpensiveLaunches(k);
+        return getSnapshot().mostExpensiveLaunches(k);
     }
 
     /**
-     * TODO: to be implemented & tested!
      * <p>
      * Returns a list of launch service provider that has the top-k highest
      * sales revenue in a year.
@@ -222,37 +334,35 @@ public class RocketMiner {
      */
     public List<LaunchServiceProvider> highestRevenueLaunchServiceProviders(int k, int year) {
         logger.info("find highest Revenue " + k + " launch service providers");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        if (launches == null)
-            throw new NullPointerException("no launches in database");
-        List<LaunchServiceProvider> launchServiceProviderList = new ArrayList<>();
-        Map<LaunchServiceProvider,Integer> launchServiceProviderIntegerMap = new HashMap<>();
-        for (Launch launch : launches)
-        {
-            LocalDate date = launch.getLaunchDate();
-            if (year == date.getYear())
-            {
-                if (launchServiceProviderIntegerMap.containsKey(launch.getLaunchVehicle().getManufacturer()))
-                {
-                    int count = launchServiceProviderIntegerMap.get(launch.getLaunchVehicle().getManufacturer()) + 1;
-                    launchServiceProviderIntegerMap.replace(launch.getLaunchVehicle().getManufacturer(),count);
-                }
-                else
-                {
-                    launchServiceProviderIntegerMap.put(launch.getLaunchVehicle().getManufacturer(),1);
-                }
-            }
-        }
-        if (launchServiceProviderIntegerMap.size() == 0)
-            throw new IllegalArgumentException("Launch service provide not found in this year");
-        if (k>launchServiceProviderIntegerMap.size()|| k < 0)
-            throw new IllegalArgumentException("k beyond the data boundary");
-        List<Map.Entry<LaunchServiceProvider,Integer>> entryList = new ArrayList<>(launchServiceProviderIntegerMap.entrySet());
-        List<Map.Entry<LaunchServiceProvider,Integer>> entryList1 = entryList.stream().sorted((a,b) -> -a.getValue() - b.getValue()).limit(k).collect(Collectors.toList());
-        for (Map.Entry<LaunchServiceProvider,Integer> map : entryList1)
-        {
-            launchServiceProviderList.add(map.getKey());
-        }
-        return launchServiceProviderList;
+        if (leaderboards != null)
+            return leaderboards.highestRevenueLaunchServiceProviders(k, year);
+        if (pushdown != null)
+            return pushdown.highestRevenueLaunchServiceProviders(k, year);
+        return snapshotOf(launchesIn(year)).highestRevenueLaunchServiceProviders(k, year);
+    }
+
+    /**
+     * <p>
+     * Returns the exact sales revenue of every launch service provider with
+     * launches in a year.
+     *
+     * @param year the year in request
+     * @return the revenue by launch service provider.
+     */
+    public Map<LaunchServiceProvider, BigDecimal> revenueIn(int year) {
+        logger.info("find revenue in " + year);
+        return snapshotOf(launchesIn(year)).revenueIn(year);
+    }
+
+    /**
+     * <p>
+     * Returns the exact sales revenue of every launch service provider for
+     * every year, in ascending year order.
+     *
+     * @return the revenue by launch service provider, by year.
+     */
+    public SortedMap<Integer, Map<LaunchServiceProvider, BigDecimal>> revenueByYear() {
+        logger.info("find revenue by year");
+        return getSnapshot().revenueByYear();
     }
 }
@@ -0,0 +1,447 @@
+package rockets.mining;
+
+import rockets.dataaccess.DAO;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Payload;
+import rockets.model.Rocket;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * A binary file holding the launch history, with its rockets, providers and
+ * payloads, in the column layout of a {@link LaunchTable}, so that a miner
+ * can start from the file instead of loading every launch from the database.
+ * <p>
+ * All strings are stored once, in a string table, and referred to by their
+ * index in it. Everything else is fixed width: the table columns are arrays
+ * of ints and longs, and providers, rockets and payloads are records of a
+ * fixed size. The file starts with a magic number and a format version, and
+ * files of any other version are refused.
+ * <p>
+ * Files are opened read-only through {@link FileChannel#map}. The columns
+ * are copied out of the mapping in bulk, which takes milliseconds even for
+ * millions of rows. Launches are only decoded when a query returns their row,
+ * and their payloads are read from the mapping then. Rows decode to new
+ * launch objects on each call, but they share the rockets and providers
+ * of the table.
+ */
+public final class SnapshotFile {
+    /**
+     * "RKTS".
+     */
+    static final int MAGIC = 0x524B5453;
+
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Launches are written with their rocket's manufacturer.
+     */
+    private static final int DEPTH = 2;
+
+    private static final byte SUCCESSFUL = 1;
+
+    private static final byte FAILED = 2;
+
+    /**
+     * Id, name, type, mass, mission and wikilink.
+     */
+    private static final int PAYLOAD_BYTES = Long.BYTES + 5 * Integer.BYTES;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes every launch of the DAO to a file, replacing it atomically once
+     * it is complete. Launches are streamed from the DAO a page at a time.
+     *
+     * @param dao  the DAO to read launches from.
+     * @param file the file to write.
+     * @return the number of launches written.
+     * @throws IllegalArgumentException if a rocket has no name, country or manufacturer.
+     */
+    public static int write(DAO dao, Path file) throws IOException {
+        Writer writer = new Writer();
+        dao.loadAll(Launch.class, DAO.DEFAULT_PAGE_SIZE, DEPTH, page -> page.forEach(writer::add));
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            writer.writeTo(out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return writer.table.size();
+    }
+
+    /**
+     * Accumulates launches into a table, and the launch attributes the table
+     * has no columns for alongside it.
+     */
+    private static final class Writer {
+        private final LaunchTable.Builder builder = new LaunchTable.Builder(DAO.DEFAULT_PAGE_SIZE, false);
+        private final Dictionary<String> strings = new Dictionary<>();
+        private final ByteArrayOutputStream functionBytes = new ByteArrayOutputStream();
+        private final DataOutputStream functions = new DataOutputStream(functionBytes);
+        private final ByteArrayOutputStream wikilinkBytes = new ByteArrayOutputStream();
+        private final DataOutputStream wikilinks = new DataOutputStream(wikilinkBytes);
+        private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        private final DataOutputStream payloads = new DataOutputStream(payloadBytes);
+        private int payloadCount;
+        private LaunchTable table;
+
+        private void add(Launch launch) {
+            builder.add(launch);
+            try {
+                functions.writeInt(strings.encode(launch.getFunction()));
+                wikilinks.writeInt(strings.encode(launch.getWikilink()));
+                if (launch.getPayload() != null) {
+                    for (Payload payload : launch.getPayload()) {
+                        payloads.writeLong(idOf(payload.getId()));
+                        payloads.writeInt(strings.encode(payload.getName()));
+                        payloads.writeInt(strings.encode(payload.getType()));
+                        payloads.writeInt(strings.encode(payload.getMass()));
+                        payloads.writeInt(strings.encode(payload.getMission()));
+                        payloads.writeInt(strings.encode(payload.getWikilink()));
+                        payloadCount++;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            table = builder.build(id -> null);
+            int size = table.size();
+            Dictionary<LaunchServiceProvider> providers = table.providerDictionary();
+            Dictionary<Rocket> rockets = table.rocketDictionary();
+            // encode every string before the string table is written
+            int[] orbits = encodeAll(table.orbitDictionary());
+            int[] sites = encodeAll(table.siteDictionary());
+            int[] countries = encodeAll(table.countryDictionary());
+            for (int i = 0; i < providers.size(); i++) {
+                LaunchServiceProvider provider = providers.decode(i);
+                strings.encode(provider.getName());
+                strings.encode(provider.getCountry());
+                strings.encode(provider.getHeadquarters());
+                strings.encode(provider.getWikilink());
+            }
+            for (int i = 0; i < rockets.size(); i++) {
+                Rocket rocket = rockets.decode(i);
+                if (rocket.getName() == null || rocket.getCountry() == null || rocket.getManufacturer() == null)
+                    throw new IllegalArgumentException("rocket cannot be written without name, country and manufacturer");
+                strings.encode(rocket.getName());
+                strings.encode(rocket.getCountry());
+                strings.encode(rocket.getMassToLEO());
+                strings.encode(rocket.getMassToGTO());
+                strings.encode(rocket.getMassToOther());
+                strings.encode(rocket.getWikilink());
+            }
+            Map<Integer, Integer> irregularPrices = new LinkedHashMap<>();
+            for (int row = 0; row < size; row++) {
+                BigDecimal price = table.price(row);
+                if (table.prices()[row] == LaunchTable.NO_PRICE && price != null)
+                    irregularPrices.put(row, strings.encode(price.toString()));
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(size);
+
+            out.writeInt(strings.size());
+            for (int i = 0; i < strings.size(); i++) {
+                byte[] bytes = strings.decode(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            writeInts(out, orbits);
+            writeInts(out, sites);
+            writeInts(out, countries);
+
+            out.writeInt(providers.size());
+            for (int i = 0; i < providers.size(); i++) {
+                LaunchServiceProvider provider = providers.decode(i);
+                out.writeLong(idOf(provider.getId()));
+                out.writeInt(strings.idOf(provider.getName()));
+                out.writeInt(provider.getYearFounded());
+                out.writeInt(strings.idOf(provider.getCountry()));
+                out.writeInt(strings.idOf(provider.getHeadquarters()));
+                out.writeInt(strings.idOf(provider.getWikilink()));
+            }
+            out.writeInt(rockets.size());
+            for (int i = 0; i < rockets.size(); i++) {
+                Rocket rocket = rockets.decode(i);
+                out.writeLong(idOf(rocket.getId()));
+                out.writeInt(strings.idOf(rocket.getName()));
+                out.writeInt(strings.idOf(rocket.getCountry()));
+                out.writeInt(providers.idOf(rocket.getManufacturer()));
+                out.writeInt(strings.idOf(rocket.getMassToLEO()));
+                out.writeInt(strings.idOf(rocket.getMassToGTO()));
+                out.writeInt(strings.idOf(rocket.getMassToOther()));
+                out.writeInt(strings.idOf(rocket.getWikilink()));
+            }
+
+            for (int row = 0; row < size; row++) {
+                out.writeLong(table.ids()[row]);
+            }
+            writeInts(out, table.epochDays(), size);
+            for (int row = 0; row < size; row++) {
+                out.writeLong(table.prices()[row]);
+            }
+            for (int row = 0; row < size; row++) {
+                out.writeByte(table.successful().get(row) ? SUCCESSFUL : table.failed().get(row) ? FAILED : 0);
+            }
+            writeInts(out, table.orbits(), size);
+            writeInts(out, table.sites(), size);
+            writeInts(out, table.countries(), size);
+            writeInts(out, table.rockets(), size);
+            writeInts(out, table.providers(), size);
+            writeInts(out, table.manufacturers(), size);
+            writeInts(out, table.payloadCounts(), size);
+            functionBytes.writeTo(out);
+            wikilinkBytes.writeTo(out);
+            out.writeInt(irregularPrices.size());
+            for (Map.Entry<Integer, Integer> price : irregularPrices.entrySet()) {
+                out.writeInt(price.getKey());
+                out.writeInt(price.getValue());
+            }
+
+            out.writeInt(payloadCount);
+            payloadBytes.writeTo(out);
+        }
+
+        private int[] encodeAll(Dictionary<String> dictionary) {
+            int[] ids = new int[dictionary.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = strings.encode(dictionary.decode(i));
+            }
+            return ids;
+        }
+    }
+
+    private static long idOf(Long id) {
+        return id == null ? LaunchTable.NO_ID : id;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        writeInts(out, values, values.length);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    /**
+     * Opens a snapshot file as a table.
+     *
+     * @param file the file written by {@link #write(DAO, Path)}.
+     * @return a table whose launches are decoded from the file.
+     * @throws IOException if the file cannot be read, is not a snapshot or has another format version.
+     */
+    public static LaunchTable open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("snapshot too large to map: " + file);
+            // the mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("truncated snapshot: " + file, e);
+        }
+    }
+
+    private static LaunchTable read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC)
+            throw new IOException("not a launch snapshot");
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("unsupported snapshot version " + version);
+        int size = buffer.getInt();
+
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        IntFunction<String> string = id -> id == Dictionary.NONE ? null : strings[id];
+        Dictionary<String> orbitDictionary = stringDictionary(buffer, string);
+        Dictionary<String> siteDictionary = stringDictionary(buffer, string);
+        Dictionary<String> countryDictionary = stringDictionary(buffer, string);
+
+        Dictionary<LaunchServiceProvider> providerDictionary = new Dictionary<>();
+        int providerCount = buffer.getInt();
+        for (int i = 0; i < providerCount; i++) {
+            long id = buffer.getLong();
+            LaunchServiceProvider provider = new LaunchServiceProvider(
+                    string.apply(buffer.getInt()), buffer.getInt(), string.apply(buffer.getInt()));
+            String headquarters = string.apply(buffer.getInt());
+            if (headquarters != null)
+                provider.setHeadquarters(headquarters);
+            provider.setWikilink(string.apply(buffer.getInt()));
+            provider.setId(entityId(id));
+            providerDictionary.encode(provider);
+        }
+        Dictionary<Rocket> rocketDictionary = new Dictionary<>();
+        int rocketCount = buffer.getInt();
+        for (int i = 0; i < rocketCount; i++) {
+            long id = buffer.getLong();
+            String name = string.apply(buffer.getInt());
+            String country = string.apply(buffer.getInt());
+            LaunchServiceProvider manufacturer = providerDictionary.decode(buffer.getInt());
+            Rocket rocket = new Rocket(name, country, manufacturer);
+            setMasses(rocket, string.apply(buffer.getInt()), string.apply(buffer.getInt()), string.apply(buffer.getInt()));
+            rocket.setWikilink(string.apply(buffer.getInt()));
+            rocket.setId(entityId(id));
+            manufacturer.getRockets().add(rocket);
+            rocketDictionary.encode(rocket);
+        }
+
+        long[] ids = longs(buffer, size);
+        int[] epochDays = ints(buffer, size);
+        long[] prices = longs(buffer, size);
+        BitSet successful = new BitSet(size);
+        BitSet failed = new BitSet(size);
+        for (int row = 0; row < size; row++) {
+            byte outcome = buffer.get();
+            if (outcome == SUCCESSFUL)
+                successful.set(row);
+            else if (outcome == FAILED)
+                failed.set(row);
+        }
+        int[] orbits = ints(buffer, size);
+        int[] sites = ints(buffer, size);
+        int[] countries = ints(buffer, size);
+        int[] rockets = ints(buffer, size);
+        int[] providers = ints(buffer, size);
+        int[] manufacturers = ints(buffer, size);
+        int[] payloadCounts = ints(buffer, size);
+        int[] functions = ints(buffer, size);
+        int[] wikilinks = ints(buffer, size);
+        Map<Integer, BigDecimal> irregularPrices = new HashMap<>();
+        int irregularCount = buffer.getInt();
+        for (int i = 0; i < irregularCount; i++) {
+            irregularPrices.put(buffer.getInt(), new BigDecimal(strings[buffer.getInt()]));
+        }
+
+        int payloadCount = buffer.getInt();
+        ByteBuffer payloads = buffer.slice();
+        if (payloads.remaining() != payloadCount * PAYLOAD_BYTES)
+            throw new IOException("snapshot payloads do not match their count");
+        int[] firstPayloads = new int[size];
+        for (int row = 1; row < size; row++) {
+            firstPayloads[row] = firstPayloads[row - 1] + payloadCounts[row - 1];
+        }
+
+        IntFunction<Launch> loader = row -> {
+            Launch launch = new Launch();
+            if (epochDays[row] != LaunchTable.NO_DATE)
+                launch.setLaunchDate(LocalDate.ofEpochDay(epochDays[row]));
+            if (rockets[row] != Dictionary.NONE)
+                launch.setLaunchVehicle(rocketDictionary.decode(rockets[row]));
+            if (providers[row] != Dictionary.NONE)
+                launch.setLaunchServiceProvider(providerDictionary.decode(providers[row]));
+            if (sites[row] != Dictionary.NONE)
+                launch.setLaunchSite(siteDictionary.decode(sites[row]));
+            if (orbits[row] != Dictionary.NONE)
+                launch.setOrbit(orbitDictionary.decode(orbits[row]));
+            if (functions[row] != Dictionary.NONE)
+                launch.setFunction(strings[functions[row]]);
+            if (prices[row] != LaunchTable.NO_PRICE)
+                launch.setPrice(BigDecimal.valueOf(prices[row], LaunchTable.PRICE_SCALE));
+            else if (irregularPrices.containsKey(row))
+                launch.setPrice(irregularPrices.get(row));
+            if (successful.get(row))
+                launch.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+            else if (failed.get(row))
+                launch.setLaunchOutcome(Launch.LaunchOutcome.FAILED);
+            Set<Payload> payloadSet = new LinkedHashSet<>();
+            for (int i = 0; i < payloadCounts[row]; i++) {
+                payloadSet.add(payload(payloads, (firstPayloads[row] + i) * PAYLOAD_BYTES, string));
+            }
+            launch.setPayload(payloadSet);
+            launch.setWikilink(string.apply(wikilinks[row]));
+            launch.setId(entityId(ids[row]));
+            return launch;
+        };
+        return new LaunchTable(size, null, loader, ids, epochDays, prices, successful, failed,
+                orbits, sites, countries, rockets, providers, manufacturers, payloadCounts, irregularPrices,
+                orbitDictionary, siteDictionary, countryDictionary, rocketDictionary, providerDictionary);
+    }
+
+    /**
+     * Reads a payload record with absolute gets, which leave the shared buffer's position alone.
+     */
+    private static Payload payload(ByteBuffer payloads, int offset, IntFunction<String> string) {
+        long id = payloads.getLong(offset);
+        offset += Long.BYTES;
+        Payload payload = new Payload(string.apply(payloads.getInt(offset)),
+                string.apply(payloads.getInt(offset + Integer.BYTES)));
+        String mass = string.apply(payloads.getInt(offset + 2 * Integer.BYTES));
+        if (mass != null)
+            payload.setMass(mass);
+        String mission = string.apply(payloads.getInt(offset + 3 * Integer.BYTES));
+        if (mission != null)
+            payload.setMission(mission);
+        payload.setWikilink(string.apply(payloads.getInt(offset + 4 * Integer.BYTES)));
+        payload.setId(entityId(id));
+        return payload;
+    }
+
+    private static void setMasses(Rocket rocket, String massToLEO, String massToGTO, String massToOther) {
+        try {
+            if (massToLEO != null)
+                rocket.setMassToLEO(massToLEO);
+            if (massToGTO != null)
+                rocket.setMassToGTO(massToGTO);
+            if (massToOther != null)
+                rocket.setMassToOther(massToOther);
+        } catch (Exception e) {
+            throw new IllegalStateException("invalid rocket mass in snapshot", e);
+        }
+    }
+
+    private static Long entityId(long id) {
+        return id == LaunchTable.NO_ID ? null : id;
+    }
+
+    private static Dictionary<String> stringDictionary(ByteBuffer buffer, IntFunction<String> string) {
+        Dictionary<String> dictionary = new Dictionary<>();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            dictionary.encode(string.apply(buffer.getInt()));
+        }
+        return dictionary;
+    }
+
+    private static int[] ints(ByteBuffer buffer, int size) {
+        int[] values = new int[size];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        return values;
+    }
+
+    private static long[] longs(ByteBuffer buffer, int size) {
+        long[] values = new long[size];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + size * Long.BYTES);
+        return values;
+    }
+}
@@ -0,0 +1,246 @@
+package rockets.mining;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Top-k selection used by every {@link RocketMiner} ranking.
+ * <p>
+ * The strategy depends on how k compares to the number of candidates n:
+ * a bounded heap of size k when k is small, quickselect followed by sorting
+ * the k winners when k is a sizeable fraction of n, and a plain full sort
+ * only when k is close to n. The crossover points were measured with
+ * {@code TopKBenchmark} in the test sources.
+ * <p>
+ * Candidates that compare equal are ordered by their position in the input,
+ * which makes the order total: every strategy returns exactly the same list,
+ * and the result matches a stable sort of the input.
+ */
+public final class TopK {
+    /**
+     * Heap selection is used while k * HEAP_RATIO <= n. On a million random
+     * candidates the heap and quickselect break even around k = n / 100.
+     */
+    static final int HEAP_RATIO = 100;
+
+    /**
+     * A full sort is used once k * SORT_RATIO >= n * (SORT_RATIO - 1); sorting
+     * the k winners after quickselect stops paying off at about k = 7n / 8.
+     */
+    static final int SORT_RATIO = 8;
+
+    public enum Strategy {
+        HEAP, QUICKSELECT, SORT
+    }
+
+    /**
+     * Orders candidate positions; negative when the candidate at {@code a}
+     * ranks before the candidate at {@code b}.
+     */
+    @FunctionalInterface
+    public interface IndexOrder {
+        int compare(int a, int b);
+    }
+
+    private TopK() {
+    }
+
+    /**
+     * Returns the strategy {@link #select(int, int, IndexOrder)} uses for n candidates.
+     */
+    public static Strategy strategyFor(int n, int k) {
+        if ((long) k * HEAP_RATIO <= n)
+            return Strategy.HEAP;
+        if ((long) k * SORT_RATIO >= (long) n * (SORT_RATIO - 1))
+            return Strategy.SORT;
+        return Strategy.QUICKSELECT;
+    }
+
+    /**
+     * Returns the k first items of a list under the given order, best first.
+     *
+     * @param items the candidates.
+     * @param k     the number of items to be returned.
+     * @param order the ranking order; items ranked first compare lower.
+     * @return the k best items.
+     */
+    public static <T> List<T> select(List<T> items, int k, Comparator<? super T> order) {
+        int[] top = select(items.size(), k, (a, b) -> order.compare(items.get(a), items.get(b)));
+        List<T> result = new ArrayList<>(top.length);
+        for (int index : top) {
+            result.add(items.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the positions of the k best candidates out of n, best first.
+     *
+     * @param n     the number of candidates, identified by position 0..n-1.
+     * @param k     the number of positions to be returned.
+     * @param order the ranking order between positions.
+     * @return the k best positions.
+     */
+    public static int[] select(int n, int k, IndexOrder order) {
+        return select(n, k, order, strategyFor(n, k));
+    }
+
+    /**
+     * Same as {@link #select(int, int, IndexOrder)} with an explicit strategy.
+     */
+    public static int[] select(int n, int k, IndexOrder order, Strategy strategy) {
+        if (k < 0 || k > n)
+            throw new IllegalArgumentException("k beyond the data boundary");
+        IndexOrder total = (a, b) -> {
+            int c = order.compare(a, b);
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+        if (k == 0)
+            return new int[0];
+        switch (strategy) {
+            case HEAP:
+                return heapSelect(n, k, total);
+            case QUICKSELECT:
+                return quickSelect(n, k, total);
+            default:
+                return fullSort(n, k, total);
+        }
+    }
+
+    /**
+     * Keeps the k best positions seen so far in a heap whose root is the
+     * worst of them, so each further candidate costs one comparison unless it
+     * displaces the root.
+     */
+    private static int[] heapSelect(int n, int k, IndexOrder order) {
+        int[] heap = new int[k];
+        for (int i = 0; i < k; i++) {
+            heap[i] = i;
+            siftUp(heap, i, order);
+        }
+        for (int i = k; i < n; i++) {
+            if (order.compare(i, heap[0]) < 0) {
+                heap[0] = i;
+                siftDown(heap, 0, k, order);
+            }
+        }
+        // pop the worst to the back until the heap is sorted best first
+        for (int size = k - 1; size > 0; size--) {
+            int worst = heap[0];
+            heap[0] = heap[size];
+            heap[size] = worst;
+            siftDown(heap, 0, size, order);
+        }
+        return heap;
+    }
+
+    private static void siftUp(int[] heap, int i, IndexOrder order) {
+        int item = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (order.compare(heap[parent], item) >= 0)
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = item;
+    }
+
+    private static void siftDown(int[] heap, int i, int size, IndexOrder order) {
+        int item = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && order.compare(heap[child + 1], heap[child]) > 0)
+                child++;
+            if (order.compare(item, heap[child]) >= 0)
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = item;
+    }
+
+    /**
+     * Partitions the positions around median-of-three pivots until the k best
+     * occupy the front of the array, then sorts only those.
+     */
+    private static int[] quickSelect(int n, int k, IndexOrder order) {
+        int[] positions = positions(n);
+        int lo = 0;
+        int hi = n - 1;
+        while (lo < hi) {
+            int p = partition(positions, lo, hi, order);
+            if (p == k - 1 || p == k)
+                break;
+            if (p < k)
+                lo = p + 1;
+            else
+                hi = p - 1;
+        }
+        int[] top = new int[k];
+        System.arraycopy(positions, 0, top, 0, k);
+        mergeSort(top, order);
+        return top;
+    }
+
+    private static int partition(int[] a, int lo, int hi, IndexOrder order) {
+        int mid = (lo + hi) >>> 1;
+        if (order.compare(a[mid], a[lo]) < 0) swap(a, mid, lo);
+        if (order.compare(a[hi], a[lo]) < 0) swap(a, hi, lo);
+        if (order.compare(a[hi], a[mid]) < 0) swap(a, hi, mid);
+        swap(a, mid, hi);
+        int pivot = a[hi];
+        int store = lo;
+        for (int i = lo; i < hi; i++) {
+            if (order.compare(a[i], pivot) < 0)
+                swap(a, i, store++);
+        }
+        swap(a, store, hi);
+        return store;
+    }
+
+    private static int[] fullSort(int n, int k, IndexOrder order) {
+        int[] positions = positions(n);
+        mergeSort(positions, order);
+        if (k == n)
+            return positions;
+        int[] top = new int[k];
+        System.arraycopy(positions, 0, top, 0, k);
+        return top;
+    }
+
+    private static int[] positions(int n) {
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = i;
+        }
+        return positions;
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private static void mergeSort(int[] a, IndexOrder order) {
+        if (a.length < 2)
+            return;
+        int[] buffer = new int[a.length];
+        for (int width = 1; width < a.length; width *= 2) {
+            for (int lo = 0; lo < a.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, a.length);
+                int hi = Math.min(lo + 2 * width, a.length);
+                int i = lo, j = mid, out = lo;
+                while (i < mid && j < hi) {
+                    buffer[out++] = order.compare(a[j], a[i]) < 0 ? a[j++] : a[i++];
+                }
+                while (i < mid) buffer[out++] = a[i++];
+                while (j < hi) buffer[out++] = a[j++];
+            }
+            System.arraycopy(buffer, 0, a, 0, a.length);
+        }
+    }
+}
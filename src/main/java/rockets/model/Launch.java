@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.apache.commons.lang3.Validate.notBlank;
 
@@ -30,6 +31,16 @@ public class Launch extends Entity {
 
     private LaunchOutcome launchOutcome;
 
+    /**
+     * Fetches the payloads on first access, for launches loaded without them.
+     */
+    private transient Supplier<Set<Payload>> payloadLoader;
+
+    /**
+     * The number of payloads the loader will fetch, or -1 if unknown.
+     */
+    private transient int deferredPayloadCount = -1;
+
     public LocalDate getLaunchDate() {
         return launchDate;
     }
@@ -68,9 +79,55 @@ public class Launch extends Entity {
     }
 
     public Set<Payload> getPayload() {
+        Supplier<Set<Payload>> loader = payloadLoader;
+        if (loader != null) {
+            payloadLoader = null;
+            Set<Payload> loaded = loader.get();
+            if (loaded != null)
+                payloads = loaded;
+        }
         return payloads;
     }
 
+    /**
+     * Defers loading the payloads until they are first asked for.
+     *
+     * @param payloadLoader fetches the payloads, or null to stop deferring.
+     */
+    public void setPayloadLoader(Supplier<Set<Payload>> payloadLoader) {
+        setPayloadLoader(payloadLoader, -1);
+    }
+
+    /**
+     * Defers loading the payloads, whose number is already known.
+     *
+     * @param payloadLoader fetches the payloads, or null to stop deferring.
+     * @param payloadCount  the number of payloads it will fetch, or -1 if unknown.
+     */
+    public void setPayloadLoader(Supplier<Set<Payload>> payloadLoader, int payloadCount) {
+        this.payloadLoader = payloadLoader;
+        this.deferredPayloadCount = payloadCount;
+    }
+
+    /**
+     * Returns whether the payloads are held by the launch, rather than
+     * deferred to be fetched on first access.
+     */
+    public boolean isPayloadLoaded() {
+        return payloadLoader == null;
+    }
+
+    /**
+     * Returns the number of payloads, without fetching deferred payloads
+     * when their number is known.
+     */
+    public int getPayloadCount() {
+        if (payloadLoader != null && deferredPayloadCount >= 0)
+            return deferredPayloadCount;
+        Set<Payload> payloads = getPayload();
+        return payloads == null ? 0 : payloads.size();
+    }
+
     public void setPayload(Set<Payload> payloads) {
         if (payloads == null)
             throw new NullPointerException("payloads cannot be null");
@@ -79,6 +136,7 @@ public class Launch extends Entity {
                 throw new IllegalArgumentException("payloads cannot contain null object");
         }
         this.payloads = payloads;
+        this.payloadLoader = null;
     }
 
     public String getLaunchSite() {
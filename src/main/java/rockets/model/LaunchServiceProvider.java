@@ -4,6 +4,7 @@ import com.google.common.collect.Sets;
 
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
 public class LaunchServiceProvider extends Entity {
     private String name;
@@ -16,6 +17,11 @@ public class LaunchServiceProvider extends Entity {
 
     private Set<Rocket> rockets;
 
+    /**
+     * Fetches the rockets on first access, for providers loaded without them.
+     */
+    private transient Supplier<Set<Rocket>> rocketLoader;
+
     public LaunchServiceProvider(){
         rockets = Sets.newLinkedHashSet();
     }
@@ -46,9 +52,33 @@ public class LaunchServiceProvider extends Entity {
     }
 
     public Set<Rocket> getRockets() {
+        Supplier<Set<Rocket>> loader = rocketLoader;
+        if (loader != null) {
+            rocketLoader = null;
+            Set<Rocket> loaded = loader.get();
+            if (loaded != null)
+                rockets = loaded;
+        }
         return rockets;
     }
 
+    /**
+     * Defers loading the rockets until they are first asked for.
+     *
+     * @param rocketLoader fetches the rockets, or null to stop deferring.
+     */
+    public void setRocketLoader(Supplier<Set<Rocket>> rocketLoader) {
+        this.rocketLoader = rocketLoader;
+    }
+
+    /**
+     * Returns whether the rockets are held by the provider, rather than
+     * deferred to be fetched on first access.
+     */
+    public boolean isRocketsLoaded() {
+        return rocketLoader == null;
+    }
+
     public void setName(String name) {
         if (name == null)
             throw new IllegalArgumentException("Null input");
@@ -89,6 +119,7 @@ public class LaunchServiceProvider extends Entity {
                 throw new IllegalArgumentException("Rockets cannot contain null object");
         }
         this.rockets = rockets;
+        this.rocketLoader = null;
     }
 
     @Override
@@ -12,6 +12,12 @@ public class Payload extends Entity {
     private  String mass;
     private  String mission;
 
+    /**
+     * Used by OGM to hydrate payloads loaded from the graph.
+     */
+    protected Payload() {
+    }
+
     public Payload(String name, String type){
         notNull(name);
         notNull(type);
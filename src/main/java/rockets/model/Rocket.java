@@ -22,6 +22,12 @@ public class Rocket extends Entity {
 
     private String massToOther;
 
+    /**
+     * Used by OGM to hydrate rockets loaded from the graph.
+     */
+    protected Rocket() {
+    }
+
     /**
      * All parameters shouldn't be null.
      *
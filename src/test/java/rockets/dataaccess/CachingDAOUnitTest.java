@@ -0,0 +1,197 @@
+package rockets.dataaccess;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class CachingDAOUnitTest {
+    private DAO dao;
+    private AtomicLong nanos;
+    private CachingDAO cachingDAO;
+    private LaunchServiceProvider spacex;
+    private Rocket falcon;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        cachingDAO = new CachingDAO(dao, "maximumSize=2,expireAfterWrite=1m", ticker);
+        spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        spacex.setId(1L);
+        falcon = new Rocket("F9", "USA", spacex);
+        falcon.setId(2L);
+        when(dao.load(LaunchServiceProvider.class, 1L)).thenReturn(spacex);
+        when(dao.load(Rocket.class, 2L)).thenReturn(falcon);
+    }
+
+    @Test
+    public void shouldLoadEachEntityOnceUntilItExpires() {
+        for (int i = 0; i < 10; i++) {
+            assertSame(falcon, cachingDAO.load(Rocket.class, 2L));
+        }
+        verify(dao, times(1)).load(Rocket.class, 2L);
+        assertEquals(9, cachingDAO.stats(Rocket.class).hitCount());
+        assertEquals(0.9, cachingDAO.stats().hitRate(), 1e-9);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        cachingDAO.load(Rocket.class, 2L);
+        verify(dao, times(2)).load(Rocket.class, 2L);
+    }
+
+    @Test
+    public void shouldLoadOnlyUncachedEntitiesInOneBatch() {
+        Rocket heavy = new Rocket("FH", "USA", spacex);
+        heavy.setId(3L);
+        when(dao.loadAll(eq(Rocket.class), anyCollection())).thenReturn(Arrays.asList(heavy, null));
+        cachingDAO.load(Rocket.class, 2L);
+
+        assertEquals(Arrays.asList(heavy, falcon, null, heavy), cachingDAO.loadAll(Rocket.class, Arrays.asList(3L, 2L, 4L, 3L)));
+        verify(dao).loadAll(Rocket.class, new LinkedHashSet<>(Arrays.asList(3L, 4L)));
+        assertSame(heavy, cachingDAO.load(Rocket.class, 3L));
+        verify(dao, never()).load(Rocket.class, 3L);
+    }
+
+    @Test
+    public void shouldNotCacheMissingEntities() {
+        assertNull(cachingDAO.load(Rocket.class, 3L));
+        assertNull(cachingDAO.load(Rocket.class, 3L));
+        verify(dao, times(2)).load(Rocket.class, 3L);
+    }
+
+    @Test
+    public void shouldEvictBeyondSizeAndConfigurePerType() {
+        cachingDAO.configure(LaunchServiceProvider.class, "maximumSize=0");
+        cachingDAO.load(LaunchServiceProvider.class, 1L);
+        cachingDAO.load(LaunchServiceProvider.class, 1L);
+        verify(dao, times(2)).load(LaunchServiceProvider.class, 1L);
+
+        when(dao.load(Rocket.class, 3L)).thenReturn(new Rocket("F5", "USA", spacex));
+        when(dao.load(Rocket.class, 4L)).thenReturn(new Rocket("BFR", "USA", spacex));
+        for (long id = 2; id <= 4; id++) {
+            cachingDAO.load(Rocket.class, id);
+        }
+        assertEquals(1, cachingDAO.stats(Rocket.class).evictionCount());
+        assertThrows(IllegalArgumentException.class, () -> cachingDAO.configure(Rocket.class, "maximumSize"));
+    }
+
+    @Test
+    public void shouldInvalidateOnWrites() {
+        when(dao.createOrUpdate(falcon)).thenReturn(falcon);
+        cachingDAO.load(Rocket.class, 2L);
+        cachingDAO.createOrUpdate(falcon);
+        cachingDAO.load(Rocket.class, 2L);
+        verify(dao, times(2)).load(Rocket.class, 2L);
+
+        cachingDAO.delete(falcon);
+        verify(dao).delete(falcon);
+        cachingDAO.load(Rocket.class, 2L);
+        verify(dao, times(3)).load(Rocket.class, 2L);
+    }
+
+    @Test
+    public void shouldInvalidateEntitiesSavedAlongWithOthers() {
+        Launch launch = new Launch();
+        launch.setLaunchVehicle(falcon);
+        launch.setLaunchServiceProvider(spacex);
+        when(dao.createOrUpdateAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        cachingDAO.load(Rocket.class, 2L);
+        cachingDAO.load(LaunchServiceProvider.class, 1L);
+
+        cachingDAO.createOrUpdateAll(Collections.singletonList(launch));
+        cachingDAO.load(Rocket.class, 2L);
+        cachingDAO.load(LaunchServiceProvider.class, 1L);
+        verify(dao, times(2)).load(Rocket.class, 2L);
+        verify(dao, times(2)).load(LaunchServiceProvider.class, 1L);
+    }
+
+    @Test
+    public void shouldDropCachedEntitiesHoldingASavedOne() {
+        Launch launch = new Launch();
+        launch.setId(5L);
+        launch.setLaunchVehicle(falcon);
+        launch.setLaunchServiceProvider(spacex);
+        when(dao.load(Launch.class, 5L)).thenReturn(launch);
+        when(dao.createOrUpdate(spacex)).thenReturn(spacex);
+        cachingDAO.load(Launch.class, 5L);
+        cachingDAO.load(Launch.class, 5L);
+        verify(dao, times(1)).load(Launch.class, 5L);
+
+        // the launch holds the provider both directly and as the manufacturer of its rocket
+        cachingDAO.createOrUpdate(spacex);
+        cachingDAO.load(Launch.class, 5L);
+        verify(dao, times(2)).load(Launch.class, 5L);
+        cachingDAO.delete(falcon);
+        cachingDAO.load(Launch.class, 5L);
+        verify(dao, times(3)).load(Launch.class, 5L);
+    }
+
+    @Test
+    public void shouldNotFetchDeferredRelationshipsWhenCachingOrInvalidating() {
+        AtomicInteger fetches = new AtomicInteger();
+        Launch launch = new Launch();
+        launch.setId(5L);
+        launch.setLaunchVehicle(falcon);
+        launch.setLaunchServiceProvider(spacex);
+        launch.setPayloadLoader(() -> {
+            fetches.incrementAndGet();
+            return Collections.emptySet();
+        });
+        spacex.setRocketLoader(() -> {
+            fetches.incrementAndGet();
+            return Collections.emptySet();
+        });
+        when(dao.load(Launch.class, 5L)).thenReturn(launch);
+        when(dao.createOrUpdate(launch)).thenReturn(launch);
+
+        cachingDAO.load(Launch.class, 5L);
+        cachingDAO.createOrUpdate(launch);
+        assertEquals(0, fetches.get());
+        assertFalse(launch.isPayloadLoaded());
+        assertFalse(spacex.isRocketsLoaded());
+    }
+
+    @Test
+    public void shouldNotCacheLoadsThatRaceWithWrites() {
+        when(dao.createOrUpdate(falcon)).thenReturn(falcon);
+        // the rocket is saved by another caller while it is being loaded
+        when(dao.load(Rocket.class, 2L)).thenAnswer(invocation -> {
+            cachingDAO.createOrUpdate(falcon);
+            return falcon;
+        }).thenReturn(falcon);
+        when(dao.loadAll(eq(Rocket.class), anyCollection())).thenAnswer(invocation -> {
+            cachingDAO.createOrUpdate(falcon);
+            return Collections.singletonList(falcon);
+        }).thenReturn(Collections.singletonList(falcon));
+
+        cachingDAO.load(Rocket.class, 2L);
+        cachingDAO.load(Rocket.class, 2L);
+        cachingDAO.load(Rocket.class, 2L);
+        verify(dao, times(2)).load(Rocket.class, 2L);
+
+        cachingDAO.invalidateAll();
+        cachingDAO.loadAll(Rocket.class, Collections.singletonList(2L));
+        cachingDAO.loadAll(Rocket.class, Collections.singletonList(2L));
+        cachingDAO.loadAll(Rocket.class, Collections.singletonList(2L));
+        verify(dao, times(2)).loadAll(eq(Rocket.class), anyCollection());
+    }
+}
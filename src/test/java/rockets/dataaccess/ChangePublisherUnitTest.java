@@ -0,0 +1,229 @@
+package rockets.dataaccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.memory.InMemoryDAO;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangePublisherUnitTest {
+    private ObservableDAO dao;
+    private ChangePublisher publisher;
+    private List<List<ChangeEvent>> batches;
+
+    @BeforeEach
+    public void setUp() {
+        dao = new ObservableDAO(new InMemoryDAO());
+        publisher = new ChangePublisher();
+        dao.addListener(publisher);
+        batches = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        publisher.close();
+    }
+
+    private List<ChangeEvent> events() {
+        List<ChangeEvent> events = new ArrayList<>();
+        batches.forEach(events::addAll);
+        return events;
+    }
+
+    @Test
+    public void shouldPublishTypedEventsInOrder() {
+        publisher.subscribe(batches::add, 10, 10);
+        LaunchServiceProvider spacex = dao.createOrUpdate(new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        spacex.setHeadquarters("Hawthorne");
+        dao.createOrUpdate(spacex);
+        Rocket falcon = dao.createOrUpdate(new Rocket("Falcon 9", "USA", spacex));
+        Long falconId = falcon.getId();
+        dao.delete(falcon);
+        publisher.close();
+
+        List<ChangeEvent> events = events();
+        assertEquals(4, events.size());
+        assertEquals(Arrays.asList(ChangeEvent.Type.CREATE, ChangeEvent.Type.UPDATE, ChangeEvent.Type.CREATE, ChangeEvent.Type.DELETE),
+                Arrays.asList(events.get(0).getType(), events.get(1).getType(), events.get(2).getType(), events.get(3).getType()));
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i + 1, events.get(i).getSequence());
+        }
+        assertEquals(LaunchServiceProvider.class, events.get(0).getEntityType());
+        assertEquals(spacex.getId(), events.get(0).getId());
+        assertEquals(NaturalKeys.keyOf(spacex), events.get(0).getNaturalKey());
+        assertEquals(Rocket.class, events.get(3).getEntityType());
+        assertEquals(falconId, events.get(3).getId());
+        assertEquals(NaturalKeys.keyOf(falcon), events.get(3).getNaturalKey());
+    }
+
+    @Test
+    public void shouldPublishUpdatesForDuplicatesAndCreatesForCascadedEntities() {
+        publisher.subscribe(batches::add, 10, 10);
+        LaunchServiceProvider spacex = dao.createOrUpdate(new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        LaunchServiceProvider duplicate = dao.createOrUpdate(new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        Launch launch = new Launch();
+        launch.setLaunchDate(LocalDate.of(2017, 1, 1));
+        launch.setLaunchSite("VAFB");
+        launch.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        launch.setLaunchVehicle(new Rocket("Falcon 9", "USA", new LaunchServiceProvider("SpaceX", 2002, "USA")));
+        launch.setLaunchServiceProvider(spacex);
+        dao.createOrUpdateAll(Arrays.asList(launch, launch));
+        publisher.close();
+
+        List<ChangeEvent> events = events();
+        assertEquals(4, events.size());
+        assertEquals(ChangeEvent.Type.UPDATE, events.get(1).getType());
+        assertEquals(spacex.getId(), duplicate.getId());
+        assertEquals(spacex.getId(), events.get(1).getId());
+        assertEquals(Arrays.asList(Launch.class, Rocket.class),
+                Arrays.asList(events.get(2).getEntityType(), events.get(3).getEntityType()));
+        assertEquals(Arrays.asList(ChangeEvent.Type.CREATE, ChangeEvent.Type.CREATE),
+                Arrays.asList(events.get(2).getType(), events.get(3).getType()));
+        assertEquals(launch.getLaunchVehicle().getId(), events.get(3).getId());
+    }
+
+    @Test
+    public void shouldDeliverInBatches() {
+        publisher.subscribe(batches::add, 100, 3);
+        List<LaunchServiceProvider> lsps = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lsps.add(new LaunchServiceProvider("lsp_" + i, 1950 + i, "USA"));
+        }
+        dao.createOrUpdateAll(lsps);
+        publisher.close();
+
+        assertEquals(10, events().size());
+        for (List<ChangeEvent> batch : batches) {
+            assertTrue(batch.size() <= 3);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ChangeEvent.Type.CREATE, events().get(i).getType());
+            assertEquals(lsps.get(i).getId(), events().get(i).getId());
+        }
+    }
+
+    @Test
+    public void shouldBlockWritersWhileASubscriberIsBehind() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ChangePublisher.Subscription subscription = publisher.subscribe(events -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batches.add(events);
+        }, 2, 1);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 5; i++) {
+                dao.createOrUpdate(new LaunchServiceProvider("lsp_" + i, 1950 + i, "USA"));
+            }
+        });
+        writer.start();
+        // one event is with the subscriber and two are buffered, so the third write waits
+        writer.join(200);
+        assertTrue(writer.isAlive());
+        assertEquals(2, subscription.getBuffered());
+
+        release.countDown();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(writer.isAlive());
+        publisher.close();
+        assertEquals(5, events().size());
+    }
+
+    @Test
+    public void shouldKeepDeliveringAfterASubscriberFails() {
+        publisher.subscribe(events -> {
+            if (events.get(0).getSequence() == 1)
+                throw new IllegalStateException("subscriber failed");
+            batches.add(events);
+        }, 10, 1);
+        dao.createOrUpdate(new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        dao.createOrUpdate(new LaunchServiceProvider("ESA", 1975, "Europe"));
+        publisher.close();
+
+        assertEquals(1, events().size());
+        assertEquals(2, events().get(0).getSequence());
+    }
+
+    @Test
+    public void shouldNotDeadlockWhenASubscriberWritesBack() throws InterruptedException {
+        CountDownLatch writtenBack = new CountDownLatch(20);
+        publisher.subscribe(events -> {
+            for (ChangeEvent event : events) {
+                if (event.getType() == ChangeEvent.Type.CREATE && event.getEntityType() == LaunchServiceProvider.class) {
+                    LaunchServiceProvider provider = dao.load(LaunchServiceProvider.class, event.getId());
+                    dao.createOrUpdate(new Rocket(provider.getName() + " rocket", "USA", provider));
+                    writtenBack.countDown();
+                }
+            }
+            batches.add(events);
+        }, 1, 1);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                dao.createOrUpdate(new LaunchServiceProvider("lsp_" + i, 1950 + i, "USA"));
+            }
+        });
+        writer.start();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(writer.isAlive());
+        assertTrue(writtenBack.await(5, TimeUnit.SECONDS));
+        publisher.close();
+
+        assertEquals(40, events().size());
+        for (int i = 0; i < events().size(); i++) {
+            assertEquals(i + 1, events().get(i).getSequence());
+        }
+    }
+
+    @Test
+    public void shouldReportDroppedEventsAndCancelWhenReportingFails() {
+        List<ChangeEvent> dropped = new CopyOnWriteArrayList<>();
+        ChangePublisher.Subscription subscription = publisher.subscribe(new ChangeSubscriber() {
+            @Override
+            public void onChanges(List<ChangeEvent> events) {
+                throw new IllegalStateException("subscriber failed");
+            }
+
+            @Override
+            public void onFailure(List<ChangeEvent> events, RuntimeException failure) {
+                assertEquals("subscriber failed", failure.getMessage());
+                dropped.addAll(events);
+                if (dropped.size() == 2)
+                    throw new IllegalStateException("cannot rebuild");
+            }
+        }, 10, 1);
+        dao.createOrUpdate(new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        dao.createOrUpdate(new LaunchServiceProvider("ESA", 1975, "Europe"));
+        dao.createOrUpdate(new LaunchServiceProvider("ULA", 2006, "USA"));
+        publisher.close();
+
+        assertEquals(2, dropped.size());
+        assertEquals(Arrays.asList(1L, 2L), Arrays.asList(dropped.get(0).getSequence(), dropped.get(1).getSequence()));
+        assertEquals(0, subscription.getBuffered());
+    }
+
+    @Test
+    public void shouldStopDeliveringWhenCancelled() {
+        ChangePublisher.Subscription subscription = publisher.subscribe(batches::add, 10, 10);
+        subscription.cancel();
+        dao.createOrUpdate(new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        publisher.close();
+
+        assertTrue(batches.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new ChangePublisher().subscribe(batches::add, 0, 1));
+        assertThrows(IllegalStateException.class, () -> publisher.subscribe(batches::add, 10, 10));
+    }
+}
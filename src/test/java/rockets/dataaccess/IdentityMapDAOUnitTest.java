@@ -0,0 +1,113 @@
+package rockets.dataaccess;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class IdentityMapDAOUnitTest {
+    private DAO dao;
+    private IdentityMapDAO identityMap;
+    private Map<Long, Rocket> rockets;
+    private List<Collection<Long>> batches;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        identityMap = new IdentityMapDAO(dao, 1);
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        rockets = new HashMap<>();
+        for (long id = 1; id <= 300; id++) {
+            Rocket rocket = new Rocket("rocket_" + id, "USA", spacex);
+            rocket.setId(id);
+            rockets.put(id, rocket);
+        }
+        batches = new ArrayList<>();
+        when(dao.loadAll(eq(Rocket.class), anyCollection(), anyInt())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(1);
+            batches.add(new ArrayList<>(ids));
+            List<Rocket> loaded = new ArrayList<>();
+            for (Long id : ids) {
+                loaded.add(rockets.get(id));
+            }
+            return loaded;
+        });
+    }
+
+    @Test
+    public void shouldResolveManyIdsInOneBatchInTheirOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 300; id >= 1; id--) {
+            ids.add(id);
+        }
+        ids.add(7L);
+        ids.add(999L);
+
+        List<Rocket> loaded = identityMap.loadAll(Rocket.class, ids);
+        assertEquals(1, batches.size());
+        assertEquals(301, batches.get(0).size());
+        assertEquals(ids.size(), loaded.size());
+        for (int i = 0; i < 300; i++) {
+            assertSame(rockets.get(ids.get(i)), loaded.get(i));
+        }
+        assertSame(rockets.get(7L), loaded.get(300));
+        assertNull(loaded.get(301));
+        assertEquals(301, identityMap.size(Rocket.class));
+    }
+
+    @Test
+    public void shouldFetchOnlyIdsNotLoadedYet() {
+        identityMap.loadAll(Rocket.class, Arrays.asList(1L, 2L, 999L));
+        assertSame(rockets.get(2L), identityMap.load(Rocket.class, 2L));
+        assertNull(identityMap.load(Rocket.class, 999L));
+
+        List<Rocket> loaded = identityMap.loadAll(Rocket.class, Arrays.asList(3L, 2L, 999L, 4L));
+        assertEquals(Arrays.asList(rockets.get(3L), rockets.get(2L), null, rockets.get(4L)), loaded);
+        assertEquals(Arrays.asList(Arrays.asList(1L, 2L, 999L), Arrays.asList(3L, 4L)), batches);
+        verify(dao, never()).load(any(), any());
+        verify(dao, never()).load(any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldLoadAgainWhenDeeperOrSaved() {
+        identityMap.loadAll(Rocket.class, Arrays.asList(1L, 2L), 0);
+        identityMap.loadAll(Rocket.class, Arrays.asList(1L, 2L));
+        identityMap.loadAll(Rocket.class, Arrays.asList(1L, 2L), 0);
+        assertEquals(2, batches.size());
+
+        when(dao.createOrUpdate(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        identityMap.createOrUpdate(rockets.get(1L));
+        identityMap.loadAll(Rocket.class, Arrays.asList(1L, 2L));
+        assertEquals(Arrays.asList(1L), batches.get(2));
+
+        identityMap.clear();
+        assertEquals(0, identityMap.size(Rocket.class));
+    }
+
+    @Test
+    public void shouldMergeDeeperLoadsIntoTheInstanceLoadedFirst() {
+        Rocket shallow = new Rocket("rocket_1", "USA", new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        shallow.setId(1L);
+        shallow.setWikilink(null);
+        when(dao.load(Rocket.class, 1L, 0)).thenReturn(shallow);
+        Rocket deep = rockets.get(1L);
+        deep.setWikilink("https://en.wikipedia.org/wiki/rocket_1");
+        when(dao.load(Rocket.class, 1L, 2)).thenReturn(deep);
+
+        Rocket first = identityMap.load(Rocket.class, 1L, 0);
+        Rocket deeper = identityMap.load(Rocket.class, 1L, 2);
+        assertSame(first, deeper);
+        assertSame(shallow, deeper);
+        assertEquals("https://en.wikipedia.org/wiki/rocket_1", deeper.getWikilink());
+        assertSame(deep.getManufacturer(), deeper.getManufacturer());
+        assertSame(first, identityMap.loadAll(Rocket.class, Arrays.asList(1L), 3).get(0));
+        assertSame(first, identityMap.load(Rocket.class, 1L, 1));
+    }
+}
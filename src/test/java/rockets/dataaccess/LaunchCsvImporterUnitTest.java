@@ -0,0 +1,141 @@
+package rockets.dataaccess;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.model.Launch;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class LaunchCsvImporterUnitTest {
+    private static final String HEADER = "launchDate,launchSite,orbit,function,price,launchOutcome," +
+            "rocket,rocketCountry,manufacturer,manufacturerYearFounded,manufacturerCountry," +
+            "provider,providerYearFounded,providerCountry,payloads\n";
+
+    private DAO dao;
+    private List<List<Launch>> batches;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        batches = new CopyOnWriteArrayList<>();
+        when(dao.createOrUpdateAll(any())).thenAnswer(invocation -> {
+            Collection<Launch> launches = invocation.getArgument(0);
+            batches.add(new ArrayList<>(launches));
+            return launches;
+        });
+    }
+
+    private static String row(String date, String price, String rocket, String payloads) {
+        return date + ",Cape Canaveral,LEO,Commercial," + price + ",SUCCESSFUL," +
+                rocket + ",USA,SpaceX,2002,USA,SpaceX,2002,USA," + payloads + "\n";
+    }
+
+    @Test
+    public void shouldImportRowsInBatches() throws IOException {
+        String csv = HEADER +
+                row("2018-02-06", "90000000", "Falcon Heavy", "Roadster:car") +
+                row("2018-03-30", "62000000", "Falcon 9", "Iridium NEXT:satellite;Iridium NEXT 2:satellite") +
+                row("2018-05-11", "62000000", "Falcon 9", "") +
+                row("2018-06-04", "62000000", "Falcon 9", "SES-12:satellite") +
+                row("2018-07-22", "62000000", "Falcon 9", "Telstar 19V:satellite");
+
+        LaunchCsvImporter.Report report = new LaunchCsvImporter(dao, 2, 2).importFrom(new StringReader(csv));
+
+        assertEquals(5, report.getRowsRead());
+        assertEquals(5, report.getImported());
+        assertEquals(0, report.getRejected());
+        assertTrue(report.rowsPerSecond() > 0);
+        assertEquals(3, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(1, batches.get(2).size());
+        assertEquals(LocalDate.of(2018, 2, 6), batches.get(0).get(0).getLaunchDate());
+        assertEquals(new BigDecimal("90000000"), batches.get(0).get(0).getPrice());
+        assertEquals(2, batches.get(0).get(1).getPayload().size());
+        assertTrue(batches.get(1).get(0).getPayload().isEmpty());
+    }
+
+    @Test
+    public void shouldShareRocketsAndProvidersWithTheSameNaturalKey() throws IOException {
+        String csv = HEADER +
+                row("2018-03-30", "62000000", "Falcon 9", "") +
+                row("2018-05-11", "62000000", "Falcon 9", "") +
+                row("2018-06-04", "62000000", " Falcon 9 ", "");
+
+        new LaunchCsvImporter(dao, 3, 1).importFrom(new StringReader(csv));
+
+        assertEquals(3, batches.size());
+        Launch first = batches.get(0).get(0);
+        for (List<Launch> batch : batches) {
+            Launch launch = batch.get(0);
+            assertSame(first.getLaunchVehicle(), launch.getLaunchVehicle());
+            assertSame(first.getLaunchServiceProvider(), launch.getLaunchServiceProvider());
+        }
+        assertSame(first.getLaunchServiceProvider(), first.getLaunchVehicle().getManufacturer());
+    }
+
+    @Test
+    public void shouldRejectInvalidRowsWithoutAbortingTheImport() throws IOException {
+        String csv = HEADER +
+                row("2018-02-06", "90000000", "Falcon Heavy", "Roadster:car") +
+                row("06/02/2018", "62000000", "Falcon 9", "") +
+                row("2018-05-11", "-1", "Falcon 9", "") +
+                row("2018-06-04", "62000000", "Falcon 9", "SES-12") +
+                "2018-07-22,Cape Canaveral\n" +
+                row("2018-07-22", "62000000", "Falcon 9", "Telstar 19V:satellite");
+
+        LaunchCsvImporter.Report report = new LaunchCsvImporter(dao, 2, 2).importFrom(new StringReader(csv));
+
+        assertEquals(6, report.getRowsRead());
+        assertEquals(2, report.getImported());
+        assertEquals(4, report.getRejected());
+        List<LaunchCsvImporter.Rejection> rejections = report.getRejections();
+        assertEquals(4, rejections.size());
+        assertEquals(2, rejections.get(0).getRecordNumber());
+        assertEquals("price cannot be negative", rejections.get(1).getReason());
+        assertEquals(5, rejections.get(3).getRecordNumber());
+        assertEquals(2, batches.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    public void shouldReportRowsWrittenBeforeAFailedWrite() {
+        RuntimeException failure = new IllegalStateException("database unavailable");
+        doAnswer(invocation -> {
+            if (batches.size() == 2)
+                throw failure;
+            batches.add(new ArrayList<>(invocation.getArgument(0)));
+            return invocation.getArgument(0);
+        }).when(dao).createOrUpdateAll(any());
+        String csv = HEADER +
+                row("2018-02-06", "90000000", "Falcon Heavy", "Roadster:car") +
+                row("2018-03-30", "62000000", "Falcon 9", "") +
+                row("2018-05-11", "62000000", "", "") +
+                row("2018-06-04", "62000000", "Falcon 9", "SES-12:satellite") +
+                row("2018-07-22", "62000000", "Falcon 9", "Telstar 19V:satellite");
+
+        LaunchCsvImporter.ImportException exception = assertThrows(LaunchCsvImporter.ImportException.class,
+                () -> new LaunchCsvImporter(dao, 1, 2).importFrom(new StringReader(csv)));
+
+        assertSame(failure, exception.getCause());
+        assertEquals(4, exception.getReport().getRowsRead());
+        assertEquals(3, exception.getReport().getImported());
+        assertEquals("rocket name cannot be null or empty", exception.getReport().getRejections().get(0).getReason());
+    }
+
+    @Test
+    public void shouldRejectNonPositiveBatchSize() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> new LaunchCsvImporter(dao, 1, 0));
+        assertEquals("batch size must be positive", exception.getMessage());
+    }
+}
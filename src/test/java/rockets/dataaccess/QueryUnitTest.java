@@ -0,0 +1,108 @@
+package rockets.dataaccess;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.memory.InMemoryDAO;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryUnitTest {
+    private InMemoryDAO dao;
+    private LaunchServiceProvider spacex;
+    private LaunchServiceProvider esa;
+    private List<Launch> launches;
+
+    @BeforeEach
+    public void setUp() {
+        dao = new InMemoryDAO();
+        spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        esa = new LaunchServiceProvider("ESA", 1975, "Europe");
+        Rocket falcon = new Rocket("Falcon 9", "USA", spacex);
+        Rocket ariane = new Rocket("Ariane 5", "Europe", esa);
+        String[] orbits = {"LEO", "GTO", "LEO", "SSO"};
+        launches = new ArrayList<>();
+        for (int i = 0; i < orbits.length; i++) {
+            Launch launch = new Launch();
+            launch.setLaunchDate(LocalDate.of(2016 + i, 1, 1));
+            launch.setLaunchVehicle(i < 2 ? falcon : ariane);
+            launch.setLaunchServiceProvider(i < 2 ? spacex : esa);
+            launch.setLaunchSite("site_" + i);
+            launch.setOrbit(orbits[i]);
+            if (i < 3)
+                launch.setPrice(new BigDecimal(100 * (i + 1)));
+            launches.add(launch);
+        }
+        dao.createOrUpdateAll(launches);
+    }
+
+    private List<Launch> find(Query<Launch> query) {
+        return dao.find(query);
+    }
+
+    @Test
+    public void shouldFindStoredEntitiesByNaturalKey() {
+        launches.get(1).setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        dao.createOrUpdate(launches.get(1));
+        Launch copy = new Launch();
+        copy.setLaunchDate(LocalDate.of(2017, 1, 1));
+        copy.setLaunchVehicle(new Rocket("Falcon 9", "USA", new LaunchServiceProvider("SpaceX", 2002, "USA")));
+        copy.setLaunchSite("site_1");
+        copy.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+
+        assertEquals(launches.subList(1, 2), find(NaturalKeys.query(copy)));
+        copy.setLaunchOutcome(Launch.LaunchOutcome.FAILED);
+        assertTrue(find(NaturalKeys.query(copy)).isEmpty());
+        assertNull(NaturalKeys.query(launches.get(0)));
+    }
+
+    @Test
+    public void shouldMatchEqualityRangesAndSets() {
+        assertEquals(Arrays.asList(launches.get(0), launches.get(2)), find(Query.of(Launch.class).eq("orbit", "LEO")));
+        assertEquals(launches.subList(1, 3), find(Query.of(Launch.class)
+                .between("launchDate", LocalDate.of(2017, 1, 1), LocalDate.of(2018, 12, 31))));
+        assertEquals(launches.subList(1, 3), find(Query.of(Launch.class).between("price", new BigDecimal("150.5"), null)));
+        assertEquals(launches.subList(1, 2), find(Query.of(Launch.class).eq("price", new BigDecimal("200.00"))));
+        assertEquals(launches.subList(3, 4), find(Query.of(Launch.class).eq("price", null)));
+        assertEquals(Arrays.asList(launches.get(1), launches.get(3)), find(Query.of(Launch.class)
+                .in("orbit", new HashSet<>(Arrays.asList("GTO", "SSO")))));
+        assertEquals(launches.subList(2, 3), find(Query.of(Launch.class).eq("orbit", "LEO").between("launchDate", LocalDate.of(2017, 1, 1), null)));
+        assertTrue(find(Query.of(Launch.class).eq("orbit", "MEO")).isEmpty());
+        assertEquals(launches, find(Query.of(Launch.class)));
+    }
+
+    @Test
+    public void shouldMatchRelatedEntitiesAndTheirProperties() {
+        assertEquals(launches.subList(0, 2), find(Query.of(Launch.class).eq("launchServiceProvider", spacex)));
+        assertEquals(launches.subList(2, 4), find(Query.of(Launch.class).in("launchVehicle", Collections.singleton(launches.get(3).getLaunchVehicle()))));
+        assertEquals(launches.subList(2, 4), find(Query.of(Launch.class).eq("launchVehicle.country", "Europe")));
+        assertEquals(launches.subList(0, 2), find(Query.of(Launch.class).eq("launchVehicle.manufacturer.yearFounded", 2002)));
+        assertEquals(Collections.singletonList(spacex), dao.find(Query.of(LaunchServiceProvider.class).between("yearFounded", 2000, null)));
+    }
+
+    @Test
+    public void shouldRejectInvalidConditions() {
+        Query<Launch> query = Query.of(Launch.class);
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> query.eq("destination", "Mars"));
+        assertEquals("unknown property destination of Launch", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> query.eq("payloads", null));
+        assertEquals("cannot filter on collection payloads of Launch", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> query.eq("orbit.name", "LEO"));
+        assertEquals("orbit.name goes past a property", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> query.eq("launchServiceProvider", new LaunchServiceProvider("ULA", 2006, "USA")));
+        assertEquals("launchServiceProvider can only be compared with saved entities", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> query.eq("price", "100"));
+        assertEquals("price cannot be compared with 100", exception.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> query.between("launchServiceProvider", spacex.getId(), null));
+        assertThrows(IllegalArgumentException.class, () -> query.between("launchDate", LocalDate.of(2018, 1, 1), LocalDate.of(2017, 1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> query.in("orbit", Arrays.asList("LEO", null)));
+        assertThrows(IllegalArgumentException.class, () -> query.between("price", null, null));
+        assertTrue(query.getConditions().isEmpty());
+    }
+}
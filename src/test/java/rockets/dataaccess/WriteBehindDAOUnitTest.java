@@ -0,0 +1,173 @@
+package rockets.dataaccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import rockets.model.Entity;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindDAOUnitTest {
+    private DAO dao;
+    private List<List<Entity>> batches;
+    private Answer<Collection<Entity>> write;
+    private WriteBehindDAO writeBehind;
+    private LaunchServiceProvider spacex;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        batches = new CopyOnWriteArrayList<>();
+        AtomicLong ids = new AtomicLong();
+        write = invocation -> {
+            Collection<Entity> entities = invocation.getArgument(0);
+            for (Entity entity : entities) {
+                entity.setId(ids.incrementAndGet());
+            }
+            batches.add(new ArrayList<>(entities));
+            return entities;
+        };
+        when(dao.createOrUpdateAll(any())).thenAnswer(write);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (writeBehind != null)
+            writeBehind.close();
+    }
+
+    @Test
+    public void shouldCoalesceWritesOfTheSameNaturalKey() {
+        writeBehind = new WriteBehindDAO(dao, 100, 100, 1, TimeUnit.HOURS);
+        List<LaunchServiceProvider> copies = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            LaunchServiceProvider copy = new LaunchServiceProvider("SpaceX", 2002, "USA");
+            copy.setHeadquarters("HQ" + i);
+            copies.add(writeBehind.createOrUpdate(copy));
+        }
+        writeBehind.createOrUpdate(new LaunchServiceProvider("ESA", 1975, "Europe"));
+        assertTrue(batches.isEmpty());
+        assertNull(copies.get(0).getId());
+
+        writeBehind.flush();
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals("HQ4", ((LaunchServiceProvider) batches.get(0).get(0)).getHeadquarters());
+        for (LaunchServiceProvider copy : copies) {
+            assertEquals(copies.get(4).getId(), copy.getId());
+        }
+    }
+
+    @Test
+    public void shouldFlushOnBatchSizeAndInterval() {
+        writeBehind = new WriteBehindDAO(dao, 2, 10, 1, TimeUnit.HOURS);
+        writeBehind.createOrUpdate(new Rocket("F9", "USA", spacex));
+        writeBehind.createOrUpdate(new Rocket("FH", "USA", spacex));
+        verify(dao, timeout(5000)).createOrUpdateAll(any());
+        writeBehind.close();
+
+        writeBehind = new WriteBehindDAO(dao, 100, 100, 20, TimeUnit.MILLISECONDS);
+        writeBehind.createOrUpdate(new Rocket("BFR", "USA", spacex));
+        verify(dao, timeout(5000).times(2)).createOrUpdateAll(any());
+    }
+
+    @Test
+    public void shouldBlockSavesWhileBufferIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return invocation.getArgument(0);
+        }).when(dao).createOrUpdateAll(any());
+        writeBehind = new WriteBehindDAO(dao, 2, 2, 1, TimeUnit.HOURS);
+        writeBehind.createOrUpdate(new Rocket("F9", "USA", spacex));
+        writeBehind.createOrUpdate(new Rocket("FH", "USA", spacex));
+        verify(dao, timeout(5000)).createOrUpdateAll(any());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Rocket> blocked = executor.submit(() -> writeBehind.createOrUpdate(new Rocket("BFR", "USA", spacex)));
+        assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertEquals("BFR", blocked.get(5, TimeUnit.SECONDS).getName());
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldFlushBeforeReadsAndOnClose() {
+        writeBehind = new WriteBehindDAO(dao, 100, 100, 1, TimeUnit.HOURS);
+        Rocket falcon = writeBehind.createOrUpdate(new Rocket("F9", "USA", spacex));
+        writeBehind.loadAll(Rocket.class);
+        assertNotNull(falcon.getId());
+
+        writeBehind.createOrUpdate(new Rocket("FH", "USA", spacex));
+        writeBehind.close();
+        assertEquals(2, batches.size());
+        assertThrows(IllegalStateException.class, () -> writeBehind.createOrUpdate(new Rocket("BFR", "USA", spacex)));
+        writeBehind = null;
+    }
+
+    @Test
+    public void shouldRethrowFailedFlush() {
+        doThrow(new IllegalArgumentException("bad rocket")).when(dao).createOrUpdateAll(any());
+        writeBehind = new WriteBehindDAO(dao, 100, 100, 1, TimeUnit.HOURS);
+        writeBehind.createOrUpdate(new Rocket("F9", "USA", spacex));
+        assertThrows(IllegalArgumentException.class, writeBehind::flush);
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> writeBehind.createOrUpdate(new Rocket("FH", "USA", spacex)));
+        assertEquals("bad rocket", exception.getCause().getMessage());
+        writeBehind = null;
+    }
+
+    @Test
+    public void shouldWriteFailedBatchAgainWithNewerWrites() {
+        doThrow(new IllegalArgumentException("database down")).doAnswer(write)
+                .when(dao).createOrUpdateAll(any());
+        writeBehind = new WriteBehindDAO(dao, 100, 100, 1, TimeUnit.HOURS);
+        Rocket falcon = writeBehind.createOrUpdate(new Rocket("F9", "USA", spacex));
+        Rocket heavy = writeBehind.createOrUpdate(new Rocket("FH", "USA", spacex));
+        assertThrows(IllegalArgumentException.class, writeBehind::flush);
+
+        Rocket heavier = new Rocket("FH", "USA", spacex);
+        Rocket starship = new Rocket("BFR", "USA", spacex);
+        assertThrows(IllegalStateException.class, () -> writeBehind.createOrUpdate(heavier));
+        writeBehind.createOrUpdate(heavier);
+        writeBehind.createOrUpdate(starship);
+        writeBehind.flush();
+
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList(falcon, heavier, starship), batches.get(0));
+        assertNotNull(falcon.getId());
+        assertEquals(heavier.getId(), heavy.getId());
+        assertNotNull(starship.getId());
+    }
+
+    @Test
+    public void shouldWriteRequeuedBatchOnCloseAfterABackgroundFailure() {
+        doThrow(new IllegalArgumentException("database down")).doAnswer(write)
+                .when(dao).createOrUpdateAll(any());
+        writeBehind = new WriteBehindDAO(dao, 2, 10, 1, TimeUnit.HOURS);
+        Rocket falcon = writeBehind.createOrUpdate(new Rocket("F9", "USA", spacex));
+        Rocket heavy = writeBehind.createOrUpdate(new Rocket("FH", "USA", spacex));
+        verify(dao, timeout(5000)).createOrUpdateAll(any());
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, writeBehind::close);
+        assertEquals("database down", exception.getCause().getMessage());
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList(falcon, heavy), batches.get(0));
+        assertNotNull(falcon.getId());
+        assertNotNull(heavy.getId());
+        writeBehind = null;
+    }
+}
@@ -0,0 +1,154 @@
+package rockets.dataaccess.memory;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Payload;
+import rockets.model.Rocket;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryDAOUnitTest {
+    private InMemoryDAO dao;
+    private LaunchServiceProvider esa;
+    private Rocket rocket;
+
+    @BeforeEach
+    public void setUp() {
+        dao = new InMemoryDAO();
+        esa = new LaunchServiceProvider("ESA", 1970, "Europe");
+        rocket = new Rocket("F9", "USA", esa);
+    }
+
+    private Launch launchOf(Rocket vehicle, LocalDate date) {
+        Launch launch = new Launch();
+        launch.setLaunchDate(date);
+        launch.setLaunchVehicle(vehicle);
+        launch.setLaunchServiceProvider(vehicle.getManufacturer());
+        launch.setLaunchSite("VAFB");
+        launch.setOrbit("LEO");
+        launch.setPrice(BigDecimal.valueOf(100));
+        launch.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        launch.setPayload(new LinkedHashSet<>(Collections.singletonList(new Payload("Sat", "satellite"))));
+        return launch;
+    }
+
+    @Test
+    public void shouldSaveReachableEntitiesWithIds() {
+        Launch launch = dao.createOrUpdate(launchOf(rocket, LocalDate.of(2017, 1, 1)));
+
+        assertNotNull(launch.getId());
+        assertNotNull(rocket.getId());
+        assertNotNull(esa.getId());
+        assertNotNull(launch.getPayload().iterator().next().getId());
+        assertSame(launch, dao.load(Launch.class, launch.getId()));
+        assertSame(rocket, dao.load(Rocket.class, rocket.getId()));
+        assertNull(dao.load(Launch.class, rocket.getId()));
+        assertEquals(1, dao.count(Rocket.class));
+        assertEquals(1, dao.count(LaunchServiceProvider.class));
+    }
+
+    @Test
+    public void shouldUpdateEntityWithTheSameNaturalKey() {
+        dao.createOrUpdate(rocket);
+        Rocket copy = new Rocket("F9", "USA", new LaunchServiceProvider("ESA", 1970, "Europe"));
+
+        dao.createOrUpdate(copy);
+
+        assertEquals(rocket.getId(), copy.getId());
+        assertEquals(esa.getId(), copy.getManufacturer().getId());
+        assertEquals(Collections.singletonList(copy), new ArrayList<>(dao.loadAll(Rocket.class)));
+        assertSame(copy, dao.findByNaturalKey(new Rocket("F9", "USA", esa)));
+        assertEquals(1, dao.count(LaunchServiceProvider.class));
+    }
+
+    @Test
+    public void shouldReindexLaunchesWhenTheirVehicleIsRenamed() {
+        Launch launch = dao.createOrUpdate(launchOf(rocket, LocalDate.of(2017, 1, 1)));
+        rocket.setName("Falcon 9");
+        dao.createOrUpdate(rocket);
+
+        assertNull(dao.findByNaturalKey(new Rocket("F9", "USA", esa)));
+        Launch relaunch = launchOf(new Rocket("Falcon 9", "USA", esa), LocalDate.of(2017, 1, 1));
+        assertSame(launch, dao.findByNaturalKey(relaunch));
+        dao.createOrUpdate(relaunch);
+        assertEquals(launch.getId(), relaunch.getId());
+        assertEquals(rocket.getId(), relaunch.getLaunchVehicle().getId());
+    }
+
+    @Test
+    public void shouldReindexOnlyTheLaunchesOfTheRenamedVehicleEachTime() {
+        Rocket heavy = new Rocket("FH", "USA", esa);
+        Launch launch = dao.createOrUpdate(launchOf(rocket, LocalDate.of(2017, 1, 1)));
+        Launch other = dao.createOrUpdate(launchOf(heavy, LocalDate.of(2017, 1, 1)));
+        rocket.setName("Falcon 9");
+        dao.createOrUpdate(rocket);
+        rocket.setName("Falcon 9 v1.2");
+        dao.createOrUpdate(rocket);
+
+        assertNull(dao.findByNaturalKey(launchOf(new Rocket("Falcon 9", "USA", esa), LocalDate.of(2017, 1, 1))));
+        assertSame(launch, dao.findByNaturalKey(launchOf(new Rocket("Falcon 9 v1.2", "USA", esa), LocalDate.of(2017, 1, 1))));
+        assertSame(other, dao.findByNaturalKey(launchOf(new Rocket("FH", "USA", esa), LocalDate.of(2017, 1, 1))));
+
+        dao.delete(launch);
+        rocket.setName("Falcon 9 FT");
+        dao.createOrUpdate(rocket);
+        assertNull(dao.findByNaturalKey(launchOf(new Rocket("Falcon 9 FT", "USA", esa), LocalDate.of(2017, 1, 1))));
+    }
+
+    @Test
+    public void shouldIterateInCreationOrder() {
+        List<Rocket> rockets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rockets.add(new Rocket("R" + i, "USA", esa));
+        }
+        dao.createOrUpdateAll(rockets);
+
+        assertEquals(rockets, Lists.newArrayList(dao.iterate(Rocket.class, 3, 1)));
+        assertFalse(dao.iterate(Launch.class, 3, 1).hasNext());
+        assertThrows(IllegalArgumentException.class, () -> dao.iterate(Rocket.class, 0, 1));
+    }
+
+    @Test
+    public void shouldDeleteFromAllIndexes() {
+        dao.createOrUpdate(rocket);
+        Long id = rocket.getId();
+
+        dao.delete(rocket);
+
+        assertNull(dao.load(Rocket.class, id));
+        assertTrue(dao.loadAll(Rocket.class).isEmpty());
+        assertNull(dao.findByNaturalKey(rocket));
+        Rocket recreated = dao.createOrUpdate(new Rocket("F9", "USA", esa));
+        assertNotEquals(id, recreated.getId());
+    }
+
+    @Test
+    public void shouldCreateEqualEntitiesOnceAcrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Rocket>> saved = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int n = i % 20;
+                saved.add(executor.submit(() -> dao.createOrUpdate(
+                        new Rocket("R" + n, "USA", new LaunchServiceProvider("ESA", 1970, "Europe")))));
+            }
+            Map<String, Long> ids = new HashMap<>();
+            for (Future<Rocket> future : saved) {
+                Rocket result = future.get(10, TimeUnit.SECONDS);
+                assertEquals(ids.computeIfAbsent(result.getName(), name -> result.getId()), result.getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(20, dao.count(Rocket.class));
+        assertEquals(1, dao.count(LaunchServiceProvider.class));
+    }
+}
@@ -0,0 +1,111 @@
+package rockets.dataaccess.neo4j;
+
+import org.junit.jupiter.api.*;
+import org.neo4j.harness.ServerControls;
+import org.neo4j.harness.TestServerBuilders;
+import org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver;
+import org.neo4j.ogm.session.SessionFactory;
+import rockets.model.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ConcurrentNeo4jDAOUnitTest {
+    private static final int THREADS = 8;
+
+    private ServerControls server;
+    private SessionFactory sessionFactory;
+    private ConcurrentNeo4jDAO dao;
+
+    @BeforeAll
+    public void initializeNeo4j() {
+        server = TestServerBuilders.newInProcessBuilder().newServer();
+        sessionFactory = new SessionFactory(new EmbeddedDriver(server.graph()), User.class.getPackage().getName());
+        dao = new ConcurrentNeo4jDAO(sessionFactory);
+    }
+
+    @Test
+    public void shouldSaveAndLoadFromManyThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<Rocket>>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                LaunchServiceProvider provider = new LaunchServiceProvider("lsp_" + thread, 2000 + thread, "USA");
+                List<Rocket> rockets = new ArrayList<>();
+                for (int i = 0; i < 25; i++) {
+                    Rocket rocket = dao.createOrUpdate(new Rocket("rocket_" + thread + "_" + i, "USA", provider));
+                    assertEquals(rocket.getName(), dao.load(Rocket.class, rocket.getId()).getName());
+                    rockets.add(rocket);
+                }
+                return rockets;
+            }));
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Future<List<Rocket>> future : futures) {
+            for (Rocket rocket : future.get(1, TimeUnit.MINUTES)) {
+                ids.add(rocket.getId());
+            }
+        }
+        executor.shutdown();
+        assertEquals(THREADS * 25, ids.size());
+        assertEquals(THREADS * 25, dao.loadAll(Rocket.class).size());
+        assertEquals(THREADS, dao.loadAll(LaunchServiceProvider.class).size());
+    }
+
+    @Test
+    public void shouldRollBackFailedUnitOfWork() {
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        assertThrows(IllegalStateException.class, () -> dao.inTransaction(unit -> {
+            unit.createOrUpdate(new Rocket("F9", "USA", spacex));
+            throw new IllegalStateException("abort");
+        }));
+        assertTrue(dao.loadAll(Rocket.class).isEmpty());
+
+        Rocket rocket = dao.inTransaction(unit -> unit.createOrUpdate(new Rocket("F9", "USA", spacex)));
+        assertNotNull(rocket.getId());
+        assertEquals(1, dao.loadAll(Rocket.class).size());
+        dao.delete(rocket);
+        assertTrue(dao.loadAll(Rocket.class).isEmpty());
+    }
+
+    @Test
+    public void shouldShareCachedIdsOnlyAfterCommit() {
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        dao.createOrUpdate(new Rocket("F9", "USA", spacex));
+        assertThrows(IllegalStateException.class, () -> dao.inTransaction(unit -> {
+            Rocket heavy = unit.createOrUpdate(new Rocket("FH", "USA", spacex));
+            assertEquals(heavy.getId(), unit.createOrUpdate(new Rocket("FH", "USA", spacex)).getId());
+            throw new IllegalStateException("abort");
+        }));
+        long hits = dao.getIdentityCacheStats().hitCount();
+
+        // the committed rocket is still cached, the rolled back one never was
+        dao.createOrUpdate(new Rocket("F9", "USA", spacex));
+        assertEquals(hits + 1, dao.getIdentityCacheStats().hitCount());
+        Rocket heavy = dao.createOrUpdate(new Rocket("FH", "USA", spacex));
+        assertEquals(hits + 1, dao.getIdentityCacheStats().hitCount());
+        assertEquals(2, dao.loadAll(Rocket.class).size());
+
+        dao.inTransaction(unit -> unit.createOrUpdate(new Rocket("BFR", "USA", spacex)));
+        hits = dao.getIdentityCacheStats().hitCount();
+        dao.createOrUpdate(new Rocket("BFR", "USA", spacex));
+        assertEquals(hits + 1, dao.getIdentityCacheStats().hitCount());
+        assertNotNull(heavy.getId());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sessionFactory.openSession().purgeDatabase();
+        dao.clearIdentityCache();
+    }
+
+    @AfterAll
+    public void closeNeo4j() {
+        sessionFactory.close();
+        server.close();
+    }
+}
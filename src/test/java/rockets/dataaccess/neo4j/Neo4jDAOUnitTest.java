@@ -9,13 +9,18 @@ import org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver;
 import org.neo4j.ogm.session.Session;
 import org.neo4j.ogm.session.SessionFactory;
 import rockets.dataaccess.DAO;
+import rockets.dataaccess.IdentityMapDAO;
+import rockets.dataaccess.Query;
+import rockets.mining.LaunchTable;
 import rockets.model.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.Collection;
-import java.util.Set;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.spy;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class Neo4jDAOUnitTest {
@@ -383,9 +388,414 @@ public class Neo4jDAOUnitTest {
         assertTrue(dao.loadAll(Payload.class).isEmpty());
     }
 
+    @Test
+    public void shouldLoadAllEntitiesPageByPage() {
+        for (int i = 0; i < 25; i++) {
+            dao.createOrUpdate(new Payload("Payload" + i, "satellite"));
+        }
+        List<Integer> pageSizes = new ArrayList<>();
+        List<Payload> paged = new ArrayList<>();
+        dao.loadAll(Payload.class, 7, 1, page -> {
+            pageSizes.add(page.size());
+            paged.addAll(page);
+        });
+        assertEquals(Arrays.asList(7, 7, 7, 4), pageSizes);
+        assertEquals(new HashSet<>(dao.loadAll(Payload.class)), new HashSet<>(paged));
+        for (int i = 1; i < paged.size(); i++) {
+            assertTrue(paged.get(i - 1).getId() < paged.get(i).getId());
+        }
+        assertEquals(25, dao.stream(Payload.class, 10, 1).map(Payload::getName).distinct().count());
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> dao.iterate(Payload.class, 0, 1));
+        assertEquals("page size must be positive", exception.getMessage());
+    }
+
+    @Test
+    public void shouldCreateOrUpdateAllInBatches() {
+        Neo4jDAO neo4jDAO = new Neo4jDAO(session);
+        neo4jDAO.setBatchSize(2);
+        Rocket falconHeavy = new Rocket("FH", "USA", spacex);
+        Rocket ariane = new Rocket("Ariane5", "France", esa);
+        List<Launch> launches = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Launch launch = new Launch();
+            launch.setLaunchDate(LocalDate.of(2018, 1, 1 + i));
+            launch.setLaunchVehicle(i % 2 == 0 ? falconHeavy : ariane);
+            launch.setLaunchServiceProvider(i % 2 == 0 ? spacex : esa);
+            launch.setLaunchSite("KSC");
+            launch.setOrbit("LEO");
+            launch.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+            launch.setPayload(Sets.newHashSet(new Payload("Payload" + i, "satellite")));
+            launches.add(launch);
+        }
+        // an equal rocket in another object graph is the same node
+        launches.get(4).setLaunchVehicle(new Rocket("FH", "USA", new LaunchServiceProvider("SpaceX", 2002, "USA")));
+
+        neo4jDAO.createOrUpdateAll(launches);
+        for (Launch launch : launches) {
+            assertNotNull(launch.getId());
+            assertNotNull(launch.getLaunchVehicle().getId());
+        }
+        assertEquals(falconHeavy.getId(), launches.get(4).getLaunchVehicle().getId());
+        assertEquals(5, dao.loadAll(Launch.class).size());
+        assertEquals(2, dao.loadAll(Rocket.class).size());
+        assertEquals(2, dao.loadAll(LaunchServiceProvider.class).size());
+        assertEquals(5, dao.loadAll(Payload.class).size());
+        assertEquals(3, neo4jDAO.countLaunchesByRocket().get(0).getLaunches());
+
+        launches.get(0).setFunction("communications");
+        launches.get(0).setLaunchServiceProvider(esa);
+        neo4jDAO.createOrUpdateAll(launches);
+        assertEquals(5, dao.loadAll(Launch.class).size());
+        assertEquals(2, dao.loadAll(LaunchServiceProvider.class).size());
+        session.clear();
+        Launch loaded = dao.load(Launch.class, launches.get(0).getId());
+        assertEquals("communications", loaded.getFunction());
+        assertEquals(esa, loaded.getLaunchServiceProvider());
+        assertEquals(1, loaded.getPayload().size());
+        assertEquals(falconHeavy.getId(), loaded.getLaunchVehicle().getId());
+        assertEquals(spacex, dao.load(Rocket.class, falconHeavy.getId()).getManufacturer());
+
+        Rocket single = new Rocket("FH", "USA", spacex);
+        dao.createOrUpdate(single);
+        assertEquals(falconHeavy.getId(), single.getId());
+        assertEquals(2, dao.loadAll(Rocket.class).size());
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> neo4jDAO.setBatchSize(0));
+        assertEquals("batch size must be positive", exception.getMessage());
+    }
+
+    @Test
+    public void shouldNarrowMostExpensiveLaunchesToTiedCandidates() {
+        // the first two prices round to the same double
+        String[] prices = {"90000000000000000.01", "90000000000000000.02", "5", "7", null};
+        List<Launch> launches = new ArrayList<>();
+        for (int i = 0; i < prices.length; i++) {
+            Launch launch = new Launch();
+            launch.setLaunchDate(LocalDate.of(2017, 1, 1 + i));
+            launch.setLaunchVehicle(rocket);
+            launch.setLaunchServiceProvider(spacex);
+            launch.setLaunchSite("VAFB");
+            if (prices[i] != null)
+                launch.setPrice(new BigDecimal(prices[i]));
+            launches.add(launch);
+        }
+        dao.createOrUpdateAll(launches);
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+
+        Map<Long, BigDecimal> candidates = neo4jDAO.findMostExpensiveLaunchPrices(1);
+        // node ids are reused after a purge, so they need not follow the order of the launches
+        assertEquals(Sets.newHashSet(launches.get(0).getId(), launches.get(1).getId()), candidates.keySet());
+        assertEquals(new BigDecimal(prices[1]), candidates.get(launches.get(1).getId()));
+        assertEquals(3, neo4jDAO.findMostExpensiveLaunchPrices(3).size());
+        candidates = neo4jDAO.findMostExpensiveLaunchPrices(5);
+        assertEquals(5, candidates.size());
+        assertNull(candidates.get(launches.get(4).getId()));
+        assertTrue(neo4jDAO.findMostExpensiveLaunchPrices(0).isEmpty());
+
+        List<LaunchGroup<Long>> revenues = neo4jDAO.sumRevenueByManufacturer(2017);
+        assertEquals(1, revenues.size());
+        assertEquals(5, revenues.get(0).getLaunches());
+        assertEquals(0, new BigDecimal("180000000000000012.03").compareTo(revenues.get(0).getRevenue()));
+    }
+
+    @Test
+    public void shouldMatchExistingEntitiesByNaturalKeyWithoutCache() {
+        Launch launch = new Launch();
+        launch.setLaunchDate(LocalDate.of(2017, 1, 1));
+        launch.setLaunchVehicle(rocket);
+        launch.setLaunchSite("VAFB");
+        launch.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        dao.createOrUpdate(launch);
+
+        Launch equal = new Launch();
+        equal.setLaunchDate(launch.getLaunchDate());
+        equal.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        equal.setLaunchVehicle(new Rocket("F9", "USA", new LaunchServiceProvider("SpaceX", 2002, "USA")));
+        equal.setLaunchServiceProvider(new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        equal.setLaunchSite(launch.getLaunchSite());
+        equal.setOrbit("GTO");
+        Neo4jDAO fresh = new Neo4jDAO(sessionFactory.openSession());
+        assertEquals(launch.getId(), fresh.findIdByNaturalKey(equal));
+        fresh.createOrUpdate(equal);
+        assertEquals(launch.getId(), equal.getId());
+        assertEquals(1, dao.loadAll(Launch.class).size());
+
+        Launch otherVehicle = new Launch();
+        otherVehicle.setLaunchDate(launch.getLaunchDate());
+        otherVehicle.setLaunchVehicle(new Rocket("FH", "USA", spacex));
+        otherVehicle.setLaunchSite(launch.getLaunchSite());
+        otherVehicle.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        new Neo4jDAO(sessionFactory.openSession()).createOrUpdate(otherVehicle);
+        assertNotEquals(launch.getId(), otherVehicle.getId());
+        assertEquals(2, dao.loadAll(Launch.class).size());
+
+        User user = new User();
+        user.setEmail("elon@spacex.com");
+        dao.createOrUpdate(user);
+        User sameEmail = new User();
+        sameEmail.setEmail("elon@spacex.com");
+        new Neo4jDAO(sessionFactory.openSession()).createOrUpdate(sameEmail);
+        assertEquals(user.getId(), sameEmail.getId());
+    }
+
+    @Test
+    public void shouldFindSavedEntitiesInIdentityCache() {
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        long hits = neo4jDAO.getIdentityCacheStats().hitCount();
+        long misses = neo4jDAO.getIdentityCacheStats().missCount();
+        dao.createOrUpdate(rocket);
+        assertEquals(misses + 1, neo4jDAO.getIdentityCacheStats().missCount());
+
+        Rocket again = new Rocket("F9", "USA", spacex);
+        dao.createOrUpdate(again);
+        assertEquals(hits + 1, neo4jDAO.getIdentityCacheStats().hitCount());
+        assertEquals(rocket.getId(), again.getId());
+        assertEquals(1, dao.loadAll(Rocket.class).size());
+
+        // a renamed rocket no longer answers to its old key
+        again.setName("F9 FT");
+        dao.createOrUpdate(again);
+        Rocket old = new Rocket("F9", "USA", spacex);
+        dao.createOrUpdate(old);
+        assertNotEquals(again.getId(), old.getId());
+        assertEquals(2, dao.loadAll(Rocket.class).size());
+
+        Launch launch = new Launch();
+        launch.setLaunchDate(LocalDate.of(2017, 1, 1));
+        launch.setLaunchVehicle(old);
+        launch.setLaunchSite("VAFB");
+        launch.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        dao.createOrUpdate(launch);
+        dao.delete(old);
+        Rocket recreated = new Rocket("F9", "USA", spacex);
+        dao.createOrUpdate(recreated);
+        assertEquals(2, dao.loadAll(Rocket.class).size());
+
+        // deleting the rocket also forgets the launch keyed on it
+        misses = neo4jDAO.getIdentityCacheStats().missCount();
+        Launch relaunch = new Launch();
+        relaunch.setLaunchDate(LocalDate.of(2017, 1, 1));
+        relaunch.setLaunchVehicle(recreated);
+        relaunch.setLaunchSite("VAFB");
+        relaunch.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        dao.createOrUpdate(relaunch);
+        assertEquals(misses + 1, neo4jDAO.getIdentityCacheStats().missCount());
+    }
+
+    @Test
+    public void shouldInstallNaturalKeySchemaOnce() {
+        Neo4jDAO dao = Neo4jDAO.open(sessionFactory);
+        NaturalKeySchema.verify(session);
+        assertEquals(Collections.singletonMap("description", "CONSTRAINT ON ( user:User ) ASSERT user.email IS UNIQUE"),
+                session.query("CALL db.constraints()", Collections.emptyMap()).queryResults().iterator().next());
+
+        User user = new User();
+        user.setEmail("user@example.com");
+        dao.createOrUpdate(user);
+        assertThrows(RuntimeException.class, () -> session.query("CREATE (:User {email: 'user@example.com'})", Collections.emptyMap()));
+
+        session.query("DROP INDEX ON :Rocket(name, country)", Collections.emptyMap());
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> NaturalKeySchema.verify(session));
+        assertEquals("natural key index is not online: INDEX ON :Rocket(name, country)", exception.getMessage());
+        NaturalKeySchema.install(sessionFactory);
+        NaturalKeySchema.verify(session);
+    }
+
+    private Launch saveLaunchWithPayload() {
+        Launch launch = new Launch();
+        launch.setLaunchDate(LocalDate.of(2017, 1, 1));
+        launch.setLaunchVehicle(rocket);
+        launch.setLaunchServiceProvider(spacex);
+        launch.setLaunchSite("VAFB");
+        launch.setOrbit("LEO");
+        launch.setPayload(Sets.newHashSet(new Payload("Iridium", "satellite")));
+        dao.createOrUpdate(launch);
+        // saving a provider with its rockets would make a cycle through their manufacturer
+        session.query("MATCH (p:LaunchServiceProvider), (r:Rocket) CREATE (p)-[:ROCKETS]->(r)", Collections.emptyMap());
+        return launch;
+    }
+
+    @Test
+    public void shouldLoadAtRequestedDepth() {
+        Long id = saveLaunchWithPayload().getId();
+
+        Neo4jDAO fresh = new Neo4jDAO(sessionFactory.openSession());
+        Launch shallow = fresh.load(Launch.class, id, 0);
+        assertNull(shallow.getLaunchVehicle());
+        assertNull(shallow.getPayload());
+
+        fresh = new Neo4jDAO(sessionFactory.openSession());
+        Launch deep = fresh.load(Launch.class, id, 2);
+        assertEquals(rocket, deep.getLaunchVehicle());
+        assertEquals(spacex, deep.getLaunchVehicle().getManufacturer());
+        assertEquals(1, deep.getPayload().size());
+
+        fresh = new Neo4jDAO(sessionFactory.openSession());
+        assertNull(fresh.loadAll(Rocket.class, 0).iterator().next().getManufacturer());
+    }
+
+    @Test
+    public void shouldFetchPayloadsAndRocketsOnFirstAccessWhenLazy() {
+        Long id = saveLaunchWithPayload().getId();
+        Neo4jDAO lazy = new Neo4jDAO(sessionFactory.openSession());
+        lazy.setLazy(true);
+
+        Launch launch = lazy.load(Launch.class, id);
+        Collection<LaunchServiceProvider> providers = lazy.loadAll(LaunchServiceProvider.class);
+        assertEquals(rocket, launch.getLaunchVehicle());
+        assertEquals(spacex, launch.getLaunchServiceProvider());
+        assertEquals(1, providers.size());
+        // only fetched now, so they see a payload and a rocket added after the load
+        session.query("MATCH (l:Launch) CREATE (l)-[:PAYLOADS]->(:Payload {name: 'NEXT', type: 'satellite'})", Collections.emptyMap());
+        session.query("MATCH (p:LaunchServiceProvider {name: 'SpaceX'}) CREATE (p)-[:ROCKETS]->(:Rocket {name: 'FH', country: 'USA'})", Collections.emptyMap());
+
+        assertEquals(Sets.newHashSet(new Payload("Iridium", "satellite"), new Payload("NEXT", "satellite")), launch.getPayload());
+        assertEquals(2, providers.iterator().next().getRockets().size());
+        assertSame(launch, lazy.load(Launch.class, id));
+
+        Launch eager = new Neo4jDAO(sessionFactory.openSession()).load(Launch.class, id);
+        assertEquals(2, eager.getPayload().size());
+    }
+
+    @Test
+    public void shouldCountPayloadsWithoutFetchingThemWhenLazy() {
+        saveLaunchWithPayload();
+        Launch second = new Launch();
+        second.setLaunchDate(LocalDate.of(2018, 2, 6));
+        second.setLaunchVehicle(rocket);
+        second.setLaunchServiceProvider(spacex);
+        second.setLaunchSite("KSC");
+        second.setOrbit("GTO");
+        second.setPayload(Sets.newHashSet(new Payload("Roadster", "car"), new Payload("Starman", "mannequin")));
+        dao.createOrUpdate(second);
+        Session counted = spy(sessionFactory.openSession());
+        Neo4jDAO lazy = new Neo4jDAO(counted);
+        lazy.setLazy(true);
+
+        LaunchTable table = LaunchTable.of(lazy.loadAll(Launch.class));
+        Map<Long, Integer> payloadCounts = new HashMap<>();
+        for (int row = 0; row < table.size(); row++) {
+            payloadCounts.put(table.ids()[row], table.payloadCounts()[row]);
+        }
+        assertEquals(2, payloadCounts.size());
+        assertEquals(2, (int) payloadCounts.get(second.getId()));
+        // one query for the launches and one for their payload counts, however many launches
+        long queries = mockingDetails(counted).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("query"))
+                .count();
+        assertEquals(2, queries);
+    }
+
+    @Test
+    public void shouldKeepMergedPayloadsOfLazyLoadsInTheIdentityMap() {
+        Long id = saveLaunchWithPayload().getId();
+        ConcurrentNeo4jDAO lazy = new ConcurrentNeo4jDAO(sessionFactory);
+        lazy.setLazy(true);
+        IdentityMapDAO identityMap = new IdentityMapDAO(lazy, 1);
+
+        Launch launch = identityMap.load(Launch.class, id, 1);
+        assertFalse(launch.isPayloadLoaded());
+        lazy.setLazy(false);
+        assertSame(launch, identityMap.load(Launch.class, id, 2));
+        assertTrue(launch.isPayloadLoaded());
+        Set<Payload> payloads = launch.getPayload();
+        assertEquals(1, payloads.size());
+
+        lazy.setLazy(true);
+        assertSame(launch, identityMap.load(Launch.class, id, 3));
+        assertTrue(launch.isPayloadLoaded());
+        assertSame(payloads, launch.getPayload());
+    }
+
+    @Test
+    public void shouldIterateLazily() {
+        Long id = saveLaunchWithPayload().getId();
+        Neo4jDAO lazy = new Neo4jDAO(sessionFactory.openSession());
+        lazy.setLazy(true);
+
+        Iterator<Launch> launches = lazy.iterate(Launch.class, 10, 1);
+        Launch launch = launches.next();
+        assertFalse(launches.hasNext());
+        assertEquals(id, launch.getId());
+        assertEquals(rocket.getName(), launch.getLaunchVehicle().getName());
+        assertEquals(1, launch.getPayload().size());
+    }
+
+    @Test
+    public void shouldLoadAllByIdsInTheirOrder() {
+        List<Rocket> rockets = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rockets.add(new Rocket("rocket_" + i, "USA", spacex));
+        }
+        dao.createOrUpdateAll(rockets);
+        Neo4jDAO fresh = new Neo4jDAO(sessionFactory.openSession());
+        fresh.setBatchSize(2);
+        List<Long> ids = Arrays.asList(rockets.get(4).getId(), rockets.get(0).getId(), -1L,
+                rockets.get(2).getId(), rockets.get(4).getId(), rockets.get(3).getId());
+
+        List<Rocket> loaded = fresh.loadAll(Rocket.class, ids);
+        assertEquals(Arrays.asList(rockets.get(4), rockets.get(0), null, rockets.get(2), rockets.get(4), rockets.get(3)), loaded);
+        assertSame(loaded.get(0), loaded.get(4));
+        assertEquals(spacex, loaded.get(1).getManufacturer());
+        assertNull(new Neo4jDAO(sessionFactory.openSession()).loadAll(Rocket.class, ids, 0).get(1).getManufacturer());
+        assertTrue(fresh.loadAll(Rocket.class, Collections.emptyList()).isEmpty());
+    }
+
+    private static Set<LocalDate> launchDates(Collection<Launch> launches) {
+        Set<LocalDate> dates = new HashSet<>();
+        launches.forEach(launch -> dates.add(launch.getLaunchDate()));
+        return dates;
+    }
+
+    @Test
+    public void shouldFindOnlyMatchingLaunches() {
+        Rocket ariane = new Rocket("Ariane5", "Europe", esa);
+        String[] orbits = {"LEO", "GTO", "LEO", "SSO"};
+        String[] sites = {"VAFB", "CCAFS", "Kourou", "Kourou"};
+        String[] prices = {"100.10", "200", "100.1", null};
+        List<Launch> launches = new ArrayList<>();
+        for (int i = 0; i < orbits.length; i++) {
+            Launch launch = new Launch();
+            launch.setLaunchDate(LocalDate.of(2016 + i, 1 + i, 1));
+            launch.setLaunchVehicle(i < 2 ? rocket : ariane);
+            launch.setLaunchServiceProvider(i < 2 ? spacex : esa);
+            launch.setLaunchSite(sites[i]);
+            launch.setOrbit(orbits[i]);
+            if (prices[i] != null)
+                launch.setPrice(new BigDecimal(prices[i]));
+            launches.add(launch);
+        }
+        dao.createOrUpdateAll(launches);
+        Set<LocalDate> first = launchDates(launches.subList(0, 1));
+        Set<LocalDate> second = launchDates(launches.subList(1, 2));
+        Set<LocalDate> third = launchDates(launches.subList(2, 3));
+        Set<LocalDate> fourth = launchDates(launches.subList(3, 4));
+
+        assertEquals(Sets.union(first, third), launchDates(dao.find(Query.of(Launch.class).eq("orbit", "LEO"))));
+        assertEquals(Sets.union(second, third), launchDates(dao.find(Query.of(Launch.class)
+                .between("launchDate", LocalDate.of(2017, 1, 1), LocalDate.of(2018, 12, 31)))));
+        assertEquals(Sets.union(first, third), launchDates(dao.find(Query.of(Launch.class)
+                .between("price", new BigDecimal("100.1"), new BigDecimal("150")))));
+        assertEquals(Sets.union(first, third), launchDates(dao.find(Query.of(Launch.class).eq("price", new BigDecimal("100.100")))));
+        assertEquals(fourth, launchDates(dao.find(Query.of(Launch.class).eq("price", null))));
+        assertEquals(Sets.union(first, Sets.union(third, fourth)), launchDates(dao.find(Query.of(Launch.class)
+                .in("launchSite", Arrays.asList("VAFB", "Kourou")))));
+        assertEquals(Sets.union(first, second), launchDates(dao.find(Query.of(Launch.class).eq("launchServiceProvider", spacex))));
+        assertEquals(Sets.union(third, fourth), launchDates(dao.find(Query.of(Launch.class).in("launchVehicle", Collections.singleton(ariane)))));
+        assertEquals(third, launchDates(dao.find(Query.of(Launch.class).eq("launchVehicle.country", "Europe").eq("orbit", "LEO"))));
+        assertEquals(Sets.union(first, second), launchDates(dao.find(Query.of(Launch.class).eq("launchVehicle.manufacturer.name", "SpaceX"))));
+        assertTrue(dao.find(Query.of(Launch.class).eq("orbit", "MEO")).isEmpty());
+
+        List<Launch> found = dao.find(Query.of(Launch.class).eq("launchVehicle.country", "USA"), 0);
+        assertEquals(2, found.size());
+        assertTrue(found.get(0).getId() < found.get(1).getId());
+        assertEquals(Query.of(Rocket.class).filter(dao.loadAll(Rocket.class)).size(), dao.find(Query.of(Rocket.class)).size());
+    }
+
     @AfterEach
     public void tearDown() {
         session.purgeDatabase();
+        ((Neo4jDAO) dao).clearIdentityCache();
     }
 
     @AfterAll
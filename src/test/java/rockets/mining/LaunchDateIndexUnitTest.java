@@ -0,0 +1,43 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.Test;
+import rockets.model.Launch;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LaunchDateIndexUnitTest {
+    private LaunchDateIndex index(LocalDate... dates) {
+        List<Launch> launches = new ArrayList<>();
+        for (LocalDate date : dates) {
+            Launch launch = new Launch();
+            if (date != null)
+                launch.setLaunchDate(date);
+            launches.add(launch);
+        }
+        return LaunchDateIndex.of(LaunchTable.of(launches));
+    }
+
+    @Test
+    public void shouldReadMostRecentFromTailWithTiesInRowOrder() {
+        LaunchDateIndex index = index(LocalDate.of(2017, 5, 1), null, LocalDate.of(2018, 1, 1),
+                LocalDate.of(2017, 5, 1), LocalDate.of(2016, 2, 29));
+        assertArrayEquals(new int[]{2, 0, 3, 4, 1}, index.mostRecent(5));
+        assertArrayEquals(new int[0], index.mostRecent(0));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> index.mostRecent(6));
+        assertEquals("k beyond the data boundary", exception.getMessage());
+    }
+
+    @Test
+    public void shouldSliceDateRangeInclusively() {
+        LaunchDateIndex index = index(LocalDate.of(2017, 5, 1), null, LocalDate.of(2018, 1, 1),
+                LocalDate.of(2017, 5, 1), LocalDate.of(2016, 2, 29));
+        assertArrayEquals(new int[]{0, 3}, index.between(LocalDate.of(2017, 5, 1), LocalDate.of(2017, 5, 1)));
+        assertArrayEquals(new int[]{2, 0, 3, 4}, index.between(LocalDate.of(2016, 1, 1), LocalDate.of(2018, 1, 1)));
+        assertArrayEquals(new int[0], index.between(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 12, 31)));
+        assertArrayEquals(new int[0], index.between(LocalDate.of(2018, 1, 1), LocalDate.of(2017, 1, 1)));
+    }
+}
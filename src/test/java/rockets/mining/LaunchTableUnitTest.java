@@ -0,0 +1,105 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.model.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LaunchTableUnitTest {
+    private LaunchServiceProvider spacex;
+    private Rocket falcon;
+    private List<Launch> launches;
+
+    @BeforeEach
+    public void setUp() {
+        spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        falcon = new Rocket("F9", "USA", spacex);
+        Launch first = new Launch();
+        first.setLaunchDate(LocalDate.of(2017, 1, 1));
+        first.setLaunchVehicle(falcon);
+        first.setLaunchServiceProvider(spacex);
+        first.setLaunchSite("VAFB");
+        first.setOrbit("LEO");
+        first.setPrice(new BigDecimal("6200.50"));
+        first.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        first.setPayload(Collections.singleton(new Payload("Iridium", "satellite")));
+        Launch second = new Launch();
+        second.setLaunchDate(LocalDate.of(2018, 2, 28));
+        second.setLaunchVehicle(falcon);
+        second.setOrbit("GTO");
+        second.setPrice(new BigDecimal("0.001"));
+        second.setLaunchOutcome(Launch.LaunchOutcome.FAILED);
+        launches = Arrays.asList(first, second, new Launch());
+    }
+
+    @Test
+    public void shouldStoreLaunchesAsColumns() {
+        LaunchTable table = LaunchTable.of(launches);
+        assertEquals(3, table.size());
+        assertEquals((int) LocalDate.of(2017, 1, 1).toEpochDay(), table.epochDays()[0]);
+        assertEquals(LaunchTable.NO_DATE, table.epochDays()[2]);
+        assertEquals(620050L, table.prices()[0]);
+        assertTrue(table.successful().get(0));
+        assertTrue(table.failed().get(1));
+        assertFalse(table.successful().get(2) || table.failed().get(2));
+        assertEquals(1, table.payloadCounts()[0]);
+        assertEquals(0, table.payloadCounts()[1]);
+        assertSame(launches.get(1), table.launch(1));
+    }
+
+    @Test
+    public void shouldDictionaryEncodeRepeatedValues() {
+        LaunchTable table = LaunchTable.of(launches);
+        assertEquals(table.rockets()[0], table.rockets()[1]);
+        assertEquals(falcon, table.rocketDictionary().decode(table.rockets()[0]));
+        assertNotEquals(table.orbits()[0], table.orbits()[1]);
+        assertEquals("GTO", table.orbitDictionary().decode(table.orbits()[1]));
+        assertEquals(Dictionary.NONE, table.providers()[1]);
+        assertEquals(Dictionary.NONE, table.rockets()[2]);
+        assertEquals(table.providers()[0], table.manufacturers()[0]);
+    }
+
+    @Test
+    public void shouldKeepPricesThatDoNotFitMinorUnitsExact() {
+        LaunchTable table = LaunchTable.of(launches);
+        assertEquals(LaunchTable.NO_PRICE, table.prices()[1]);
+        assertEquals(new BigDecimal("0.001"), table.price(1));
+        assertNull(table.price(2));
+        assertTrue(table.comparePrices(1, 2) > 0);
+        assertTrue(table.comparePrices(1, 0) < 0);
+    }
+
+    @Test
+    public void shouldComputeYearOfEpochDay() {
+        for (LocalDate date = LocalDate.of(1899, 1, 1); date.getYear() < 2030; date = date.plusDays(1)) {
+            assertEquals(date.getYear(), LaunchTable.yearOf((int) date.toEpochDay()), date.toString());
+        }
+    }
+
+    @Test
+    public void shouldLoadLaunchesByIdWhenNotRetained() {
+        launches.get(0).setId(7L);
+        launches.get(1).setId(8L);
+        LaunchTable.Builder builder = new LaunchTable.Builder(1, false);
+        launches.forEach(builder::add);
+        assertThrows(IllegalStateException.class, builder::build);
+        LaunchTable table = builder.build(id -> launches.get((int) id - 7));
+        assertArrayEquals(new long[]{7L, 8L, LaunchTable.NO_ID}, Arrays.copyOf(table.ids(), 3));
+        assertSame(launches.get(1), table.launch(1));
+        assertEquals(launches.subList(0, 2), table.launches().subList(0, 2));
+        assertEquals(620050L, table.prices()[0]);
+    }
+
+    @Test
+    public void shouldThrowExceptionWhenNoLaunches() {
+        NullPointerException exception = assertThrows(NullPointerException.class, () -> LaunchTable.of(null));
+        assertEquals("no launches in database", exception.getMessage());
+    }
+}
@@ -0,0 +1,161 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.ObservableDAO;
+import rockets.model.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class MinerLeaderboardsUnitTest {
+    private ObservableDAO dao;
+    private MinerLeaderboards leaderboards;
+    private List<LaunchServiceProvider> lsps;
+    private List<Rocket> rockets;
+    private List<Launch> launches;
+
+    @BeforeEach
+    public void setUp() {
+        DAO backend = mock(DAO.class);
+        AtomicLong ids = new AtomicLong();
+        when(backend.createOrUpdate(any(Entity.class))).thenAnswer(invocation -> {
+            Entity entity = invocation.getArgument(0);
+            if (entity.getId() == null)
+                entity.setId(ids.incrementAndGet());
+            return entity;
+        });
+        when(backend.loadAll(Launch.class)).thenReturn(new ArrayList<>());
+        dao = new ObservableDAO(backend);
+        leaderboards = MinerLeaderboards.attach(dao);
+
+        lsps = Arrays.asList(
+                new LaunchServiceProvider("ULA", 1990, "USA"),
+                new LaunchServiceProvider("SpaceX", 2002, "USA"),
+                new LaunchServiceProvider("ESA", 1975, "Europe")
+        );
+        rockets = Arrays.asList(
+                new Rocket("rocket_0", "CHINA", lsps.get(0)),
+                new Rocket("rocket_1", "CHINA", lsps.get(0)),
+                new Rocket("rocket_2", "USA", lsps.get(1))
+        );
+        int[] rocketIndex = new int[]{0, 0, 0, 1, 1, 2};
+        int[] lspIndex = new int[]{0, 0, 1, 1, 2, 2};
+        int[] outcomes = new int[]{1, 1, 1, 0, 0, 0};
+        int[] payloadCounts = new int[]{1, 1, 1, 1, 1, 6};
+        launches = new ArrayList<>();
+        for (int i = 0; i < rocketIndex.length; i++) {
+            Launch launch = new Launch();
+            launch.setLaunchDate(LocalDate.of(2017, i + 1, 1));
+            launch.setLaunchVehicle(rockets.get(rocketIndex[i]));
+            launch.setLaunchServiceProvider(lsps.get(lspIndex[i]));
+            launch.setLaunchOutcome(outcomes[i] == 1 ? Launch.LaunchOutcome.SUCCESSFUL : Launch.LaunchOutcome.FAILED);
+            launch.setOrbit("LEO");
+            launch.setPrice(new BigDecimal(1000 * (i + 1)));
+            Set<Payload> payloads = new HashSet<>();
+            for (int j = 0; j < payloadCounts[i]; j++) {
+                payloads.add(new Payload("payload" + i + j, "satellite"));
+            }
+            launch.setPayload(payloads);
+            launches.add(launch);
+        }
+    }
+
+    private void saveAll() {
+        for (Launch launch : launches) {
+            dao.createOrUpdate(launch);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3})
+    public void shouldMatchSnapshotRankings(int k) {
+        saveAll();
+        MinerSnapshot snapshot = MinerSnapshot.of(launches);
+        assertEquals(snapshot.mostLaunchedRockets(k), leaderboards.mostLaunchedRockets(k));
+        assertEquals(snapshot.mostReliableLaunchServiceProviders(k), leaderboards.mostReliableLaunchServiceProviders(k));
+        assertEquals(snapshot.dominantCountry("LEO"), leaderboards.dominantCountry("LEO"));
+        assertEquals(snapshot.dominantCountryByOrbit(), leaderboards.dominantCountryByOrbit());
+        assertEquals(snapshot.mostRecentLaunches(k), leaderboards.mostRecentLaunches(k));
+        int providers = Math.min(k, 2);
+        assertEquals(snapshot.highestRevenueLaunchServiceProviders(providers, 2017),
+                leaderboards.highestRevenueLaunchServiceProviders(providers, 2017));
+    }
+
+    @Test
+    public void shouldMoveProviderWhenLaunchIsUpdated() {
+        saveAll();
+        assertEquals(Arrays.asList(lsps.get(0), lsps.get(1), lsps.get(2)), leaderboards.mostReliableLaunchServiceProviders(3));
+        Launch launch = launches.get(5);
+        launch.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        dao.createOrUpdate(launch);
+        launch = launches.get(4);
+        launch.setLaunchOutcome(Launch.LaunchOutcome.SUCCESSFUL);
+        dao.createOrUpdate(launch);
+        assertEquals(Arrays.asList(lsps.get(0), lsps.get(2), lsps.get(1)), leaderboards.mostReliableLaunchServiceProviders(3));
+    }
+
+    @Test
+    public void shouldKeepDateOrderWhenLaunchIsUpdated() {
+        saveAll();
+        Launch launch = launches.get(0);
+        launch.setLaunchDate(LocalDate.of(2018, 1, 1));
+        dao.createOrUpdate(launch);
+        assertEquals(Arrays.asList(launch, launches.get(5)), leaderboards.mostRecentLaunches(2));
+        assertEquals(Arrays.asList(launches.get(2), launches.get(1)),
+                leaderboards.launchesBetween(LocalDate.of(2017, 1, 1), LocalDate.of(2017, 3, 1)));
+        dao.delete(launch);
+        assertEquals(Collections.singletonList(launches.get(5)), leaderboards.mostRecentLaunches(1));
+        assertEquals(MinerSnapshot.of(launches.subList(1, 6)).launchesBetween(LocalDate.of(2017, 1, 1), LocalDate.of(2017, 12, 31)),
+                leaderboards.launchesBetween(LocalDate.of(2017, 1, 1), LocalDate.of(2017, 12, 31)));
+    }
+
+    @Test
+    public void shouldDropLaunchWhenItIsDeleted() {
+        saveAll();
+        assertEquals("USA", leaderboards.dominantCountry("LEO"));
+        dao.delete(launches.get(5));
+        assertEquals("CHINA", leaderboards.dominantCountry("LEO"));
+        dao.delete(launches.get(4));
+        dao.delete(launches.get(3));
+        assertEquals(Collections.singletonList(rockets.get(0)), leaderboards.mostLaunchedRockets(1));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> leaderboards.mostLaunchedRockets(2));
+        assertEquals("k beyond the data boundary", exception.getMessage());
+    }
+
+    @Test
+    public void shouldRankRevenueBeyondLongMinorUnits() {
+        // minor units of 6e18 each, so two of them overflow a long
+        launches.get(0).setPrice(new BigDecimal("60000000000000000"));
+        launches.get(1).setPrice(new BigDecimal("60000000000000000"));
+        launches.get(5).setPrice(new BigDecimal("100000000000000000"));
+        saveAll();
+        assertEquals(Arrays.asList(lsps.get(0), lsps.get(1)), leaderboards.highestRevenueLaunchServiceProviders(2, 2017));
+
+        dao.delete(launches.get(0));
+        assertEquals(Arrays.asList(lsps.get(1), lsps.get(0)), leaderboards.highestRevenueLaunchServiceProviders(2, 2017));
+        launches.get(5).setPrice(new BigDecimal("1000000000000000000"));
+        dao.createOrUpdate(launches.get(5));
+        launches.get(1).setPrice(new BigDecimal("2000000000000000000"));
+        dao.createOrUpdate(launches.get(1));
+        assertEquals(Arrays.asList(lsps.get(0), lsps.get(1)), leaderboards.highestRevenueLaunchServiceProviders(2, 2017));
+    }
+
+    @Test
+    public void shouldThrowExceptionWhenOrbitOrYearNotFound() {
+        saveAll();
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> leaderboards.dominantCountry("GTO"));
+        assertEquals("passed orbit not found", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> leaderboards.highestRevenueLaunchServiceProviders(1, 2016));
+        assertEquals("Launch service provide not found in this year", exception.getMessage());
+    }
+}
@@ -0,0 +1,111 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import rockets.model.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MinerSnapshotUnitTest {
+    private static final String[] ORBITS = {"LEO", "GTO", "SSO", "MEO"};
+    private static final String[] COUNTRIES = {"USA", "CHINA", "RUSSIA", "INDIA", "JAPAN"};
+
+    private ForkJoinPool pool;
+    private LaunchTable table;
+    private List<LaunchServiceProvider> lsps;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+        Random random = new Random(5171);
+        lsps = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lsps.add(new LaunchServiceProvider("lsp_" + i, 1950 + i, COUNTRIES[i % COUNTRIES.length]));
+        }
+        List<Rocket> rockets = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            rockets.add(new Rocket("rocket_" + i, COUNTRIES[i % COUNTRIES.length], lsps.get(i % lsps.size())));
+        }
+        List<Launch> launches = new ArrayList<>();
+        for (int i = 0; i < 5 * MinerSnapshot.MIN_ROWS_PER_TASK; i++) {
+            Launch launch = new Launch();
+            // few distinct dates and prices, so rankings are full of ties
+            launch.setLaunchDate(LocalDate.of(2000 + random.nextInt(20), 1 + random.nextInt(12), 1));
+            launch.setLaunchVehicle(rockets.get(random.nextInt(rockets.size())));
+            launch.setLaunchServiceProvider(lsps.get(random.nextInt(lsps.size())));
+            launch.setOrbit(ORBITS[random.nextInt(ORBITS.length)]);
+            launch.setPrice(new BigDecimal(100 * random.nextInt(50)));
+            launch.setLaunchOutcome(random.nextInt(3) == 0 ? Launch.LaunchOutcome.FAILED : Launch.LaunchOutcome.SUCCESSFUL);
+            launches.add(launch);
+        }
+        table = LaunchTable.of(launches);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100, 5000})
+    public void shouldRankLaunchesInParallelLikeSerially(int k) {
+        MinerSnapshot serial = MinerSnapshot.of(table);
+        MinerSnapshot parallel = MinerSnapshot.of(table, pool);
+        assertEquals(serial.mostRecentLaunches(k), parallel.mostRecentLaunches(k));
+        assertEquals(serial.mostExpensiveLaunches(k), parallel.mostExpensiveLaunches(k));
+    }
+
+    @Test
+    public void shouldAggregateInParallelLikeSerially() {
+        MinerSnapshot serial = MinerSnapshot.of(table);
+        MinerSnapshot parallel = MinerSnapshot.of(table, pool);
+        assertEquals(serial.mostLaunchedRockets(60), parallel.mostLaunchedRockets(60));
+        assertEquals(serial.mostReliableLaunchServiceProviders(lsps.size()), parallel.mostReliableLaunchServiceProviders(lsps.size()));
+        for (String orbit : ORBITS) {
+            assertEquals(serial.dominantCountry(orbit), parallel.dominantCountry(orbit));
+        }
+        for (int year = 2000; year < 2020; year++) {
+            assertEquals(serial.highestRevenueLaunchServiceProviders(5, year), parallel.highestRevenueLaunchServiceProviders(5, year));
+        }
+    }
+
+    @Test
+    public void shouldFindDominantCountryOfEveryOrbitAtOnce() {
+        MinerSnapshot snapshot = MinerSnapshot.of(table, pool);
+        Map<String, String> dominant = snapshot.dominantCountryByOrbit();
+        assertEquals(ORBITS.length, dominant.size());
+        for (String orbit : ORBITS) {
+            assertEquals(snapshot.dominantCountry(orbit), dominant.get(orbit));
+        }
+    }
+
+    @Test
+    public void shouldListLaunchesOfAnOrbitInLoadOrder() {
+        MinerSnapshot snapshot = MinerSnapshot.of(table);
+        for (String orbit : ORBITS) {
+            List<Launch> expected = new ArrayList<>();
+            for (Launch launch : table.launches()) {
+                if (orbit.equals(launch.getOrbit()))
+                    expected.add(launch);
+            }
+            assertEquals(expected, snapshot.launchesInOrbit(orbit));
+            assertEquals(expected.size(), snapshot.getOrbitIndex().count(table.orbitDictionary().idOf(orbit)));
+        }
+        assertTrue(snapshot.launchesInOrbit("HEO").isEmpty());
+    }
+
+    @Test
+    public void shouldStaySerialForSmallTables() {
+        assertTrue(MinerSnapshot.rowsPerTask(MinerSnapshot.MIN_ROWS_PER_TASK, pool) >= MinerSnapshot.MIN_ROWS_PER_TASK);
+        assertEquals(1000, MinerSnapshot.rowsPerTask(1000, null));
+        assertTrue(MinerSnapshot.rowsPerTask(table.size(), pool) < table.size());
+    }
+}
@@ -0,0 +1,72 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.Test;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrimitiveMapsUnitTest {
+    @Test
+    public void shouldCountLikeHashMap() {
+        Random random = new Random(11);
+        ObjectIntMap<String> counts = new ObjectIntMap<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            String key = "key" + random.nextInt(700);
+            counts.addTo(key, 1);
+            expected.merge(key, 1, Integer::sum);
+        }
+        assertEquals(expected.size(), counts.size());
+        expected.forEach((key, count) -> assertEquals((int) count, counts.get(key, -1)));
+        assertEquals(-1, counts.get("missing", -1));
+        assertFalse(counts.containsKey("missing"));
+    }
+
+    @Test
+    public void shouldKeepFirstValueOnPutIfAbsent() {
+        ObjectIntMap<String> ids = new ObjectIntMap<>(0);
+        assertEquals(0, ids.putIfAbsent("LEO", 0));
+        assertEquals(1, ids.putIfAbsent("GTO", 1));
+        assertEquals(0, ids.putIfAbsent("LEO", 2));
+        ids.put("LEO", 5);
+        assertEquals(5, ids.get("LEO", -1));
+        ids.clear();
+        assertEquals(0, ids.size());
+        assertFalse(ids.containsKey("GTO"));
+    }
+
+    @Test
+    public void shouldCountByEntityId() {
+        IdIntMap counts = new IdIntMap();
+        for (long id = 0; id < 5000; id++) {
+            counts.addTo(id << 32, 1);
+            counts.addTo(id << 32, 2);
+        }
+        assertEquals(5000, counts.size());
+        assertEquals(3, counts.get(42L << 32, 0));
+        assertEquals(0, counts.get(1, 0));
+        counts.put(1, 7);
+        assertTrue(counts.containsKey(1));
+        assertEquals(7, counts.get(1, 0));
+    }
+
+    @Test
+    public void shouldEncodeSavedEntitiesByIdAndUnsavedOnesByValue() {
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        Rocket saved = new Rocket("F9", "USA", spacex);
+        saved.setId(9L);
+        Rocket copy = new Rocket("F9", "USA", spacex);
+        Dictionary<Rocket> dictionary = new Dictionary<>();
+        int id = dictionary.encode(saved);
+        assertEquals(id, dictionary.encode(saved));
+        assertEquals(id, dictionary.encode(copy));
+        assertEquals(id, dictionary.idOf(copy));
+        assertEquals(1, dictionary.size());
+        assertSame(saved, dictionary.decode(id));
+    }
+}
@@ -0,0 +1,85 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProviderReliabilityUnitTest {
+    private ProviderReliability reliability;
+    private LaunchServiceProvider ula;
+    private LaunchServiceProvider spacex;
+    private LaunchServiceProvider esa;
+
+    @BeforeEach
+    public void setUp() {
+        reliability = new ProviderReliability();
+        ula = new LaunchServiceProvider("ULA", 1990, "USA");
+        spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        esa = new LaunchServiceProvider("ESA", 1975, "Europe");
+    }
+
+    private void launch(LaunchServiceProvider provider, Launch.LaunchOutcome outcome) {
+        Launch launch = new Launch();
+        launch.setLaunchServiceProvider(provider);
+        launch.setLaunchOutcome(outcome);
+        reliability.accept(launch);
+    }
+
+    @Test
+    public void shouldCountSuccessesAndFailuresPerProvider() {
+        launch(ula, Launch.LaunchOutcome.SUCCESSFUL);
+        launch(ula, Launch.LaunchOutcome.FAILED);
+        launch(ula, Launch.LaunchOutcome.SUCCESSFUL);
+        launch(spacex, Launch.LaunchOutcome.FAILED);
+        assertEquals(2, reliability.getSuccesses(ula));
+        assertEquals(1, reliability.getFailures(ula));
+        assertEquals(0, reliability.getSuccesses(spacex));
+        assertEquals(1, reliability.getFailures(spacex));
+        assertEquals(2, reliability.size());
+    }
+
+    @Test
+    public void shouldKeepExactRatiosAndRoundOnlyForPresentation() {
+        launch(ula, Launch.LaunchOutcome.SUCCESSFUL);
+        launch(ula, Launch.LaunchOutcome.SUCCESSFUL);
+        launch(ula, Launch.LaunchOutcome.FAILED);
+        assertEquals(2.0 / 3, reliability.reliability(ula));
+        assertEquals(new BigDecimal("0.67"), reliability.roundedReliability(ula, 2));
+    }
+
+    @Test
+    public void shouldRankByExactRatioWhenRoundedRatiosTie() {
+        // 667/1000 and 2/3 both round to 0.67
+        for (int i = 0; i < 1000; i++) {
+            launch(spacex, i < 667 ? Launch.LaunchOutcome.SUCCESSFUL : Launch.LaunchOutcome.FAILED);
+        }
+        launch(ula, Launch.LaunchOutcome.SUCCESSFUL);
+        launch(ula, Launch.LaunchOutcome.SUCCESSFUL);
+        launch(ula, Launch.LaunchOutcome.FAILED);
+        assertEquals(Arrays.asList(spacex, ula), reliability.mostReliable(2));
+    }
+
+    @Test
+    public void shouldBreakTiesByFirstAppearance() {
+        launch(esa, Launch.LaunchOutcome.SUCCESSFUL);
+        launch(ula, Launch.LaunchOutcome.SUCCESSFUL);
+        launch(spacex, Launch.LaunchOutcome.SUCCESSFUL);
+        assertEquals(Arrays.asList(esa, ula, spacex), reliability.mostReliable(3));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 10, -1})
+    public void shouldThrowExceptionWhenKBeyondBoundary(int k) {
+        launch(ula, Launch.LaunchOutcome.SUCCESSFUL);
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> reliability.mostReliable(k));
+        assertEquals("k beyond the data boundary", exception.getMessage());
+    }
+}
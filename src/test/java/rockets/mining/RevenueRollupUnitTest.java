@@ -0,0 +1,91 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RevenueRollupUnitTest {
+    private LaunchServiceProvider ula;
+    private LaunchServiceProvider spacex;
+    private List<Launch> launches;
+
+    @BeforeEach
+    public void setUp() {
+        ula = new LaunchServiceProvider("ULA", 1990, "USA");
+        spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        launches = new ArrayList<>();
+    }
+
+    private void launch(LaunchServiceProvider manufacturer, int year, String price) {
+        Launch launch = new Launch();
+        launch.setLaunchDate(LocalDate.of(year, 6, 1));
+        launch.setLaunchVehicle(new Rocket("rocket", "USA", manufacturer));
+        if (price != null)
+            launch.setPrice(new BigDecimal(price));
+        launches.add(launch);
+    }
+
+    private int id(LaunchTable table, LaunchServiceProvider provider) {
+        return table.providerDictionary().idOf(provider);
+    }
+
+    @Test
+    public void shouldSumPricesPerManufacturerAndYear() {
+        launch(ula, 2017, "100.25");
+        launch(ula, 2017, "0.75");
+        launch(spacex, 2017, null);
+        launch(spacex, 2018, "62000000");
+        LaunchTable table = LaunchTable.of(launches);
+        RevenueRollup rollup = RevenueRollup.of(table);
+        assertArrayEquals(new int[]{2017, 2018}, rollup.years());
+        assertEquals(new BigDecimal("101.00"), rollup.revenue(2017, id(table, ula)));
+        assertEquals(new BigDecimal("0.00"), rollup.revenue(2017, id(table, spacex)));
+        assertEquals(1, rollup.launches(2017, id(table, spacex)));
+        assertArrayEquals(new int[]{id(table, spacex)}, rollup.providers(2018));
+        assertArrayEquals(new int[0], rollup.providers(2019));
+    }
+
+    @Test
+    public void shouldStayExactBeyondLongMinorUnits() {
+        String large = String.valueOf(Long.MAX_VALUE / 100);
+        launch(ula, 2017, large);
+        launch(ula, 2017, large);
+        launch(ula, 2017, "0.001");
+        launch(spacex, 2017, large);
+        LaunchTable table = LaunchTable.of(launches);
+        RevenueRollup rollup = RevenueRollup.of(table);
+        BigDecimal expected = new BigDecimal(large).multiply(BigDecimal.valueOf(2)).add(new BigDecimal("0.001"));
+        assertEquals(0, expected.compareTo(rollup.revenue(2017, id(table, ula))));
+        assertTrue(rollup.compare(2017, id(table, ula), id(table, spacex)) > 0);
+    }
+
+    @Test
+    public void shouldMergeRollupsOfRowRanges() {
+        for (int i = 0; i < 100; i++) {
+            launch(i % 3 == 0 ? spacex : ula, 2000 + i % 7, (i * 1000) + ".5" + (i % 2 == 0 ? "" : "5"));
+        }
+        LaunchTable table = LaunchTable.of(launches);
+        RevenueRollup whole = RevenueRollup.of(table);
+        RevenueRollup merged = new RevenueRollup(table.providerDictionary().size());
+        merged.add(table, 0, 40);
+        RevenueRollup rest = new RevenueRollup(table.providerDictionary().size());
+        rest.add(table, 40, table.size());
+        merged.merge(rest);
+        assertArrayEquals(whole.years(), merged.years());
+        for (int year : whole.years()) {
+            for (int provider : whole.providers(year)) {
+                assertEquals(whole.revenue(year, provider), merged.revenue(year, provider));
+                assertEquals(whole.launches(year, provider), merged.launches(year, provider));
+            }
+        }
+    }
+}
@@ -14,6 +14,8 @@ import org.neo4j.ogm.session.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rockets.dataaccess.DAO;
+import rockets.dataaccess.Query;
+import rockets.dataaccess.memory.InMemoryDAO;
 import rockets.dataaccess.neo4j.Neo4jDAO;
 import rockets.model.*;
 
@@ -24,7 +26,12 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 public class RocketMinerUnitTest {
@@ -311,6 +318,109 @@ public class RocketMinerUnitTest {
         assertEquals("Launch service provide not found in this year",exception.getMessage());
     }
 
+    @Test
+    public void shouldLoadLaunchesOnceForAllQueries()
+    {
+        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        miner.mostLaunchedRockets(1);
+        miner.mostReliableLaunchServiceProviders(1);
+        miner.mostRecentLaunches(1);
+        miner.dominantCountry("LEO");
+        miner.mostExpensiveLaunches(1);
+        miner.highestRevenueLaunchServiceProviders(1,2017);
+        verify(dao, times(1)).loadAll(Launch.class);
+    }
+
+    @Test
+    public void shouldReportStaleSnapshotVersionAfterRefresh()
+    {
+        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        long version = miner.getSnapshot().getVersion();
+        assertTrue(miner.isCurrent(version));
+        MinerSnapshot refreshed = miner.refresh();
+        assertTrue(refreshed.getVersion() > version);
+        assertFalse(miner.isCurrent(version));
+        miner.invalidate();
+        assertFalse(miner.isCurrent(refreshed.getVersion()));
+        verify(dao, times(2)).loadAll(Launch.class);
+    }
+
+    @Test
+    public void shouldSumRevenueOfManufacturersPerYear()
+    {
+        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        Map<LaunchServiceProvider, BigDecimal> revenue = miner.revenueIn(2017);
+        assertEquals(2, revenue.size());
+        assertEquals(new BigDecimal("47500.00"), revenue.get(lsps.get(0)));
+        assertEquals(new BigDecimal("2000.00"), revenue.get(lsps.get(1)));
+        SortedMap<Integer, Map<LaunchServiceProvider, BigDecimal>> series = miner.revenueByYear();
+        assertEquals(Collections.singleton(2017), series.keySet());
+        assertEquals(revenue, series.get(2017));
+    }
+
+    @Test
+    public void shouldLoadOnlyMatchingLaunchesWhenScoped()
+    {
+        launches.get(9).setOrbit("GTO");
+        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        DAO scopedDAO = mock(Neo4jDAO.class);
+        List<Query<Launch>> queries = new ArrayList<>();
+        when(scopedDAO.find(any(), anyInt())).thenAnswer(invocation -> {
+            Query<Launch> query = invocation.getArgument(0);
+            queries.add(query);
+            return query.filter(launches);
+        });
+        RocketMiner scoped = new RocketMiner(scopedDAO);
+        scoped.setScoped(true);
+
+        assertEquals(miner.dominantCountry("LEO"), scoped.dominantCountry("LEO"));
+        assertEquals(miner.dominantCountry("GTO"), scoped.dominantCountry("GTO"));
+        assertEquals(miner.revenueIn(2017), scoped.revenueIn(2017));
+        assertEquals(miner.highestRevenueLaunchServiceProviders(2, 2017), scoped.highestRevenueLaunchServiceProviders(2, 2017));
+        assertThrows(IllegalArgumentException.class, () -> scoped.dominantCountry("SSO"));
+        assertEquals(5, queries.size());
+        assertEquals(1, queries.get(1).filter(launches).size());
+        verify(scopedDAO, never()).loadAll(Launch.class);
+
+        // a loaded snapshot answers everything
+        when(scopedDAO.loadAll(Launch.class)).thenReturn(launches);
+        scoped.getSnapshot();
+        scoped.dominantCountry("LEO");
+        assertEquals(5, queries.size());
+    }
+
+    @Test
+    public void shouldReturnLaunchesBetweenDatesMostRecentFirst()
+    {
+        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        List<Launch> expected = launches.stream()
+                .filter(l -> l.getLaunchDate().getMonthValue() >= 4 && l.getLaunchDate().getMonthValue() <= 6)
+                .sorted((a, b) -> -a.getLaunchDate().compareTo(b.getLaunchDate()))
+                .collect(Collectors.toList());
+        assertEquals(expected, miner.launchesBetween(LocalDate.of(2017, 4, 1), LocalDate.of(2017, 6, 30)));
+        assertEquals(new ArrayList<>(), miner.launchesBetween(LocalDate.of(2018, 1, 1), LocalDate.of(2018, 12, 31)));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> miner.launchesBetween(LocalDate.of(2017, 6, 30), LocalDate.of(2017, 4, 1)));
+        assertEquals("from date cannot be after to date", exception.getMessage());
+    }
+
+    @Test
+    public void shouldLoadReturnedLaunchesInOneBatchWhenStreaming()
+    {
+        InMemoryDAO memory = spy(new InMemoryDAO());
+        memory.createOrUpdateAll(launches);
+        miner = new RocketMiner(memory);
+        miner.setPageSize(3);
+
+        List<Launch> sortedLaunches = new ArrayList<>(launches);
+        sortedLaunches.sort((a, b) -> -a.getLaunchDate().compareTo(b.getLaunchDate()));
+        assertEquals(sortedLaunches.subList(0, 5), miner.mostRecentLaunches(5));
+        verify(memory, times(1)).loadAll(eq(Launch.class), anyCollection(), anyInt());
+
+        assertEquals(launches, new ArrayList<>(miner.getSnapshot().getLaunches()));
+        verify(memory, times(2)).loadAll(eq(Launch.class), anyCollection(), anyInt());
+    }
+
     public Session integrationSetUp()
     {
         ServerControls embeddedDatabaseServer = TestServerBuilders.newInProcessBuilder().newServer();
@@ -422,4 +532,48 @@ public class RocketMinerUnitTest {
         String testCountry = miner.dominantCountry("LEO");
         assertEquals(realCountry,testCountry);
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2})
+    public void pushdownQueriesIntegrationTest(int k)
+    {
+        Session session = integrationSetUp();
+        Neo4jDAO neo4jDAO = new Neo4jDAO(session);
+        for (Launch launch : launches) {
+            neo4jDAO.createOrUpdate(launch);
+        }
+        RocketMiner loading = new RocketMiner(neo4jDAO);
+        miner = new RocketMiner(neo4jDAO, new PushdownQueries(neo4jDAO));
+        assertEquals(loading.mostLaunchedRockets(k), miner.mostLaunchedRockets(k));
+        assertEquals(loading.mostReliableLaunchServiceProviders(k), miner.mostReliableLaunchServiceProviders(k));
+        assertEquals(loading.mostRecentLaunches(k), miner.mostRecentLaunches(k));
+        assertEquals(loading.dominantCountry("LEO"), miner.dominantCountry("LEO"));
+        assertEquals(loading.mostExpensiveLaunches(k), miner.mostExpensiveLaunches(k));
+        assertEquals(loading.highestRevenueLaunchServiceProviders(k, 2017), miner.highestRevenueLaunchServiceProviders(k, 2017));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> miner.dominantCountry("GTO"));
+        assertEquals("passed orbit not found", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> miner.highestRevenueLaunchServiceProviders(1, 2016));
+        assertEquals("Launch service provide not found in this year", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> miner.mostRecentLaunches(11));
+        assertEquals("k beyond the data boundary", exception.getMessage());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 20})
+    public void streamingIntegrationTest(int pageSize)
+    {
+        Session session = integrationSetUp();
+        for (Launch launch : launches) {
+            dao.createOrUpdate(launch);
+        }
+        RocketMiner loading = new RocketMiner(dao);
+        miner = new RocketMiner(dao);
+        miner.setPageSize(pageSize);
+        assertEquals(loading.mostLaunchedRockets(3), miner.mostLaunchedRockets(3));
+        assertEquals(loading.mostReliableLaunchServiceProviders(3), miner.mostReliableLaunchServiceProviders(3));
+        assertEquals(loading.mostRecentLaunches(9), miner.mostRecentLaunches(9));
+        assertEquals(loading.dominantCountry("LEO"), miner.dominantCountry("LEO"));
+        assertEquals(loading.mostExpensiveLaunches(9), miner.mostExpensiveLaunches(9));
+        assertEquals(loading.highestRevenueLaunchServiceProviders(2, 2017), miner.highestRevenueLaunchServiceProviders(2, 2017));
+    }
+}
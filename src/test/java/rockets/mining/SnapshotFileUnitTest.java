@@ -0,0 +1,137 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.memory.InMemoryDAO;
+import rockets.model.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotFileUnitTest {
+    private static final String[] ORBITS = {"LEO", "GTO", "SSO"};
+    private static final String[] COUNTRIES = {"USA", "CHINA", "RUSSIA"};
+
+    private InMemoryDAO dao;
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dao = new InMemoryDAO();
+        file = Files.createTempFile("launches", ".snapshot");
+        Random random = new Random(5171);
+        List<LaunchServiceProvider> lsps = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            LaunchServiceProvider lsp = new LaunchServiceProvider("lsp_" + i, 1950 + i, COUNTRIES[i % COUNTRIES.length]);
+            lsp.setHeadquarters("HQ " + i);
+            lsps.add(lsp);
+        }
+        List<Rocket> rockets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Rocket rocket = new Rocket("rocket_" + i, COUNTRIES[i % COUNTRIES.length], lsps.get(i % lsps.size()));
+            rocket.setMassToLEO(String.valueOf(1000 * i));
+            rockets.add(rocket);
+        }
+        List<Launch> launches = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Launch launch = new Launch();
+            launch.setLaunchDate(LocalDate.of(2000 + i % 18, 1 + random.nextInt(12), 1 + i % 28));
+            launch.setLaunchVehicle(rockets.get(random.nextInt(rockets.size())));
+            launch.setLaunchServiceProvider(lsps.get(random.nextInt(lsps.size())));
+            launch.setLaunchSite("site_" + i % 4);
+            launch.setOrbit(ORBITS[random.nextInt(ORBITS.length)]);
+            launch.setFunction("function_" + i % 3);
+            launch.setPrice(new BigDecimal(100 * random.nextInt(50)).add(new BigDecimal("0.25")));
+            launch.setLaunchOutcome(random.nextInt(3) == 0 ? Launch.LaunchOutcome.FAILED : Launch.LaunchOutcome.SUCCESSFUL);
+            Set<Payload> payloads = new LinkedHashSet<>();
+            for (int p = 0; p < i % 3; p++) {
+                Payload payload = new Payload("payload_" + i + "_" + p, "satellite");
+                payload.setMass(String.valueOf(10 * (p + 1)));
+                payloads.add(payload);
+            }
+            launch.setPayload(payloads);
+            launches.add(launch);
+        }
+        // one price too large for the long column
+        launches.get(7).setPrice(new BigDecimal("1e30"));
+        dao.createOrUpdateAll(launches);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void shouldAnswerQueriesLikeTheDAO() throws IOException {
+        assertEquals(200, SnapshotFile.write(dao, file));
+
+        MinerSnapshot loaded = new RocketMiner(dao).getSnapshot();
+        MinerSnapshot opened = new RocketMiner(dao).open(file);
+
+        assertEquals(loaded.mostExpensiveLaunches(20), opened.mostExpensiveLaunches(20));
+        assertEquals(loaded.mostRecentLaunches(20), opened.mostRecentLaunches(20));
+        assertEquals(loaded.mostLaunchedRockets(5), opened.mostLaunchedRockets(5));
+        assertEquals(loaded.mostReliableLaunchServiceProviders(3), opened.mostReliableLaunchServiceProviders(3));
+        assertEquals(loaded.dominantCountryByOrbit(), opened.dominantCountryByOrbit());
+        assertEquals(loaded.revenueByYear(), opened.revenueByYear());
+        assertEquals(loaded.getTable().price(7), opened.getTable().price(7));
+    }
+
+    @Test
+    public void shouldDecodeLaunchesWithTheirRelatedEntities() throws IOException {
+        SnapshotFile.write(dao, file);
+        LaunchTable table = SnapshotFile.open(file);
+
+        assertEquals(200, table.size());
+        for (int row = 0; row < table.size(); row++) {
+            Launch expected = dao.load(Launch.class, table.ids()[row]);
+            Launch actual = table.launch(row);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getLaunchDate(), actual.getLaunchDate());
+            assertEquals(expected.getLaunchSite(), actual.getLaunchSite());
+            assertEquals(expected.getOrbit(), actual.getOrbit());
+            assertEquals(expected.getFunction(), actual.getFunction());
+            assertEquals(0, expected.getPrice().compareTo(actual.getPrice()));
+            assertEquals(expected.getLaunchOutcome(), actual.getLaunchOutcome());
+            assertEquals(expected.getLaunchVehicle(), actual.getLaunchVehicle());
+            assertEquals(expected.getLaunchVehicle().getId(), actual.getLaunchVehicle().getId());
+            assertEquals(expected.getLaunchVehicle().getMassToLEO(), actual.getLaunchVehicle().getMassToLEO());
+            assertEquals(expected.getLaunchServiceProvider().getHeadquarters(), actual.getLaunchServiceProvider().getHeadquarters());
+            assertEquals(expected.getPayload(), actual.getPayload());
+        }
+        Rocket rocket = table.launch(0).getLaunchVehicle();
+        assertSame(rocket.getManufacturer(), table.providerDictionary().decode(table.providerDictionary().idOf(rocket.getManufacturer())));
+        assertTrue(rocket.getManufacturer().getRockets().contains(rocket));
+    }
+
+    @Test
+    public void shouldRefuseOtherFormatVersions() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(SnapshotFile.MAGIC);
+            out.writeInt(SnapshotFile.FORMAT_VERSION + 1);
+        }
+        IOException exception = assertThrows(IOException.class, () -> SnapshotFile.open(file));
+        assertEquals("unsupported snapshot version " + (SnapshotFile.FORMAT_VERSION + 1), exception.getMessage());
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> SnapshotFile.open(file));
+    }
+
+    @Test
+    public void shouldRefuseTruncatedFiles() throws IOException {
+        SnapshotFile.write(dao, file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertThrows(IOException.class, () -> SnapshotFile.open(file));
+    }
+}
@@ -0,0 +1,52 @@
+package rockets.mining;
+
+import java.util.Random;
+
+/**
+ * Measures the three {@link TopK} strategies against each other over a range
+ * of k / n ratios, to locate the crossover points used by
+ * {@link TopK#strategyFor(int, int)}. Run it with
+ * {@code java rockets.mining.TopKBenchmark [n]}; it is not part of the unit tests.
+ */
+public class TopKBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long[] keys = new long[n];
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            // plenty of duplicates, so the position tie-break is exercised
+            keys[i] = random.nextInt(n / 4 + 1);
+        }
+        TopK.IndexOrder descending = (a, b) -> Long.compare(keys[b], keys[a]);
+
+        System.out.printf("n = %d%n%10s %10s %12s %12s %12s   %s%n",
+                n, "k", "k/n", "heap ms", "qselect ms", "sort ms", "chosen");
+        double[] fractions = {0.00001, 0.0001, 0.001, 0.01, 0.05, 0.1, 0.125, 0.2, 0.3, 0.5, 0.7, 0.8, 0.875, 0.9, 1.0};
+        for (double fraction : fractions) {
+            int k = Math.max(1, (int) (n * fraction));
+            double heap = time(n, k, descending, TopK.Strategy.HEAP);
+            double quickselect = time(n, k, descending, TopK.Strategy.QUICKSELECT);
+            double sort = time(n, k, descending, TopK.Strategy.SORT);
+            System.out.printf("%10d %10.5f %12.2f %12.2f %12.2f   %s%n",
+                    k, fraction, heap, quickselect, sort, TopK.strategyFor(n, k));
+        }
+    }
+
+    private static double time(int n, int k, TopK.IndexOrder order, TopK.Strategy strategy) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += TopK.select(n, k, order, strategy)[0];
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += TopK.select(n, k, order, strategy)[0];
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == Long.MIN_VALUE)
+            System.out.println(sink);
+        return elapsed / 1e6 / MEASURED_ROUNDS;
+    }
+}
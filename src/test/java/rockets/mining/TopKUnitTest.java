@@ -0,0 +1,76 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopKUnitTest {
+    private static final int N = 1000;
+
+    private int[] keys() {
+        Random random = new Random(7);
+        int[] keys = new int[N];
+        for (int i = 0; i < N; i++) {
+            keys[i] = random.nextInt(50);
+        }
+        return keys;
+    }
+
+    private int[] expected(int[] keys, int k) {
+        Integer[] order = new Integer[N];
+        for (int i = 0; i < N; i++) {
+            order[i] = i;
+        }
+        // a stable sort keeps equal keys in input order
+        Arrays.sort(order, (a, b) -> Integer.compare(keys[b], keys[a]));
+        int[] top = new int[k];
+        for (int i = 0; i < k; i++) {
+            top[i] = order[i];
+        }
+        return top;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 5, 100, 125, 500, 900, 999, 1000})
+    public void shouldReturnSameResultForEveryStrategy(int k) {
+        int[] keys = keys();
+        TopK.IndexOrder descending = (a, b) -> Integer.compare(keys[b], keys[a]);
+        int[] expected = expected(keys, k);
+        for (TopK.Strategy strategy : TopK.Strategy.values()) {
+            assertArrayEquals(expected, TopK.select(N, k, descending, strategy), strategy.name());
+        }
+        assertArrayEquals(expected, TopK.select(N, k, descending));
+    }
+
+    @Test
+    public void shouldBreakTiesByInputPosition() {
+        List<String> items = Arrays.asList("b", "a", "b", "c", "a");
+        List<String> top = TopK.select(items, 4, Comparator.naturalOrder());
+        assertEquals(Arrays.asList("a", "a", "b", "b"), top);
+        List<Integer> positions = Arrays.asList(10, 20, 10, 20);
+        List<Integer> same = TopK.select(positions, 2, (a, b) -> 0);
+        assertSame(positions.get(0), same.get(0));
+        assertSame(positions.get(1), same.get(1));
+    }
+
+    @Test
+    public void shouldChooseStrategyByRatioOfKToN() {
+        assertEquals(TopK.Strategy.HEAP, TopK.strategyFor(1_000_000, 5));
+        assertEquals(TopK.Strategy.QUICKSELECT, TopK.strategyFor(1_000_000, 500_000));
+        assertEquals(TopK.Strategy.SORT, TopK.strategyFor(1_000_000, 1_000_000));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 11})
+    public void shouldThrowExceptionWhenKBeyondBoundary(int k) {
+        List<Integer> items = Arrays.stream(new int[10]).boxed().collect(Collectors.toList());
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> TopK.select(items, k, Comparator.naturalOrder()));
+        assertEquals("k beyond the data boundary", exception.getMessage());
+    }
+}